@@ -1,5 +1,6 @@
 package com.jeffreyxu.kafka.common.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
@@ -86,6 +87,20 @@ public class SystemEvent extends BaseEvent {
         return "SYSTEM_EVENT";
     }
     
+    /**
+     * The system event type (METRIC_UPDATE, ALERT, ...) on the wire; {@code eventType} itself
+     * carries the polymorphic type name in JSON
+     */
+    @JsonProperty("systemEventType")
+    public String getSystemEventType() {
+        return eventType;
+    }
+    
+    @JsonProperty("systemEventType")
+    public void setSystemEventType(String systemEventType) {
+        this.eventType = systemEventType;
+    }
+    
     @Override
     public boolean isValid() {
         return serviceId != null && !serviceId.trim().isEmpty() &&
@@ -114,6 +129,13 @@ public class SystemEvent extends BaseEvent {
         return "ERROR".equals(eventType) || "CRITICAL".equals(severity);
     }
     
+    /**
+     * Check if this is a periodic metric update
+     */
+    public boolean isMetricUpdate() {
+        return "METRIC_UPDATE".equals(eventType);
+    }
+    
     /**
      * Builder pattern with fluent API for easy event creation
      */
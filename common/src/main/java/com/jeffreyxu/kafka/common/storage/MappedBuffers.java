@@ -0,0 +1,56 @@
+package com.jeffreyxu.kafka.common.storage;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Explicit release of memory mappings.
+ *
+ * A {@link MappedByteBuffer} stays mapped until it is garbage collected, and while it is mapped
+ * the blocks of its file stay allocated even after the file is deleted. {@link #unmap} releases
+ * the mapping at once through the JDK's buffer cleaner. The buffer must not be touched again
+ * afterwards: an access to an unmapped buffer crashes the JVM.
+ */
+public final class MappedBuffers {
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available; mappings are then released by the garbage collector
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * Release a mapping now rather than when it is collected
+     *
+     * @return false if the JDK does not allow it and the mapping is left to the garbage collector
+     */
+    public static boolean unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return false;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.jeffreyxu.kafka.common.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable append-only record log on memory-mapped segment files.
+ *
+ * Records are appended to fixed-size segments ({@code 00000000000000000000.seg}, ...) as
+ * {@code [length][crc32c][payload]}; a zero length marks the end of written data, since new
+ * segments are zero-filled. Readers consume in append order from a persisted cursor: {@link #read}
+ * returns records without consuming them, and {@link #commit} moves the cursor past them and
+ * deletes segments that are fully consumed, unmapping them so that their disk space is freed at
+ * once rather than when the mapping is collected. On open, the tail segment is scanned and a torn
+ * record (crash mid-append) is discarded by its checksum.
+ *
+ * Appended records survive a process crash once written to the mapping, and a machine crash
+ * once {@link #force()} returns. Thread-safe.
+ */
+public class MappedSegmentLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE = "cursor";
+    private static final int HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private Position readCursor;
+    private long pendingRecords;
+    private long pendingBytes;
+    private boolean dirty;
+
+    /**
+     * Open or create a log in a directory
+     *
+     * @param segmentSize bytes per segment file; bounds the largest record
+     * @param maxSegments segments kept at most, consumed or not; appends beyond fail with {@link LogFullException}
+     */
+    public MappedSegmentLog(Path directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize <= HEADER_SIZE * 2) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("Max segments must be positive: " + maxSegments);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long index = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(index, new Segment(index, file, segmentSize));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, new Segment(0, segmentPath(0), segmentSize));
+        }
+        active = segments.lastEntry().getValue();
+        active.recoverTail();
+
+        readCursor = loadCursor();
+        recountPending();
+    }
+
+    /**
+     * Append a record
+     *
+     * @throws LogFullException if {@code maxSegments} segments are in use
+     * @throws IllegalArgumentException if the record cannot fit in a segment
+     */
+    public synchronized void append(byte[] payload) throws IOException {
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes exceeds segment size " + segmentSize);
+        }
+        // Keep room for a terminating zero length after every record
+        if (active.writePosition + recordSize + HEADER_SIZE > segmentSize) {
+            roll();
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.writePosition;
+        // Write the payload before the length, so a reader never sees a length without its data
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.putInt(position, payload.length);
+        active.writePosition += recordSize;
+
+        pendingRecords++;
+        pendingBytes += recordSize;
+        dirty = true;
+    }
+
+    private void roll() throws IOException {
+        if (segments.size() >= maxSegments) {
+            throw new LogFullException("Log " + directory + " is full (" + maxSegments + " segments of " + segmentSize + " bytes)");
+        }
+        // Flush the finished segment; later forces only cover the new active one
+        active.buffer.force();
+        long index = active.index + 1;
+        active = new Segment(index, segmentPath(index), segmentSize);
+        segments.put(index, active);
+    }
+
+    /**
+     * Flush appended records to the storage device
+     */
+    public synchronized void force() {
+        if (dirty) {
+            active.buffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Read up to {@code maxRecords} unconsumed records in append order, without consuming them
+     */
+    public synchronized Batch read(int maxRecords) {
+        List<byte[]> records = new ArrayList<>();
+        Position position = readCursor;
+        while (records.size() < maxRecords) {
+            Segment segment = segments.get(position.segment());
+            if (segment == null) {
+                break;
+            }
+            int length = position.offset() + HEADER_SIZE <= segmentSize ? segment.buffer.getInt(position.offset()) : 0;
+            if (length == 0) {
+                if (segment == active) {
+                    break;
+                }
+                // End of a rolled segment; continue with the next one
+                Long next = segments.higherKey(position.segment());
+                if (next == null) {
+                    break;
+                }
+                position = new Position(next, 0);
+                continue;
+            }
+            byte[] payload = new byte[length];
+            segment.buffer.get(position.offset() + HEADER_SIZE, payload);
+            records.add(payload);
+            position = new Position(position.segment(), position.offset() + HEADER_SIZE + length);
+        }
+        return new Batch(records, position);
+    }
+
+    /**
+     * Consume every record before {@code next}, as returned by {@link #read}, and delete
+     * segments that no longer hold unconsumed records
+     */
+    public synchronized void commit(Position next) throws IOException {
+        if (next.compareTo(readCursor) <= 0) {
+            return;
+        }
+        Position position = readCursor;
+        while (position.compareTo(next) < 0) {
+            Segment segment = segments.get(position.segment());
+            int length = segment != null && position.offset() + HEADER_SIZE <= segmentSize
+                ? segment.buffer.getInt(position.offset()) : 0;
+            if (length == 0) {
+                Long nextSegment = segments.higherKey(position.segment());
+                if (nextSegment == null) {
+                    break;
+                }
+                position = new Position(nextSegment, 0);
+                continue;
+            }
+            pendingRecords--;
+            pendingBytes -= HEADER_SIZE + length;
+            position = new Position(position.segment(), position.offset() + HEADER_SIZE + length);
+        }
+        // Past the last record of a rolled segment, so that segment can be deleted
+        next = skipSegmentEnds(next);
+        readCursor = next;
+        storeCursor(next);
+
+        for (Map.Entry<Long, Segment> entry : new ArrayList<>(segments.headMap(next.segment()).entrySet())) {
+            entry.getValue().delete();
+            segments.remove(entry.getKey());
+        }
+    }
+
+    private Position skipSegmentEnds(Position position) {
+        while (true) {
+            Segment segment = segments.get(position.segment());
+            Long nextSegment = segments.higherKey(position.segment());
+            if (segment == null || segment == active || nextSegment == null
+                    || (position.offset() + HEADER_SIZE <= segmentSize && segment.buffer.getInt(position.offset()) != 0)) {
+                return position;
+            }
+            position = new Position(nextSegment, 0);
+        }
+    }
+
+    public synchronized long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    public synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%020d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private Position loadCursor() throws IOException {
+        Path file = directory.resolve(CURSOR_FILE);
+        Position first = new Position(segments.firstKey(), 0);
+        if (!Files.exists(file)) {
+            return first;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 12) {
+            return first;
+        }
+        Position stored = new Position(buffer.getLong(), buffer.getInt());
+        // Segments before the cursor may not have been deleted before a crash
+        return stored.compareTo(first) < 0 ? first : stored;
+    }
+
+    private void storeCursor(Position position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12).putLong(position.segment()).putInt(position.offset());
+        Path temp = directory.resolve(CURSOR_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(buffer.flip());
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(CURSOR_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void recountPending() {
+        pendingRecords = 0;
+        pendingBytes = 0;
+        Position position = readCursor;
+        while (true) {
+            Batch batch = read(1024);
+            if (batch.records().isEmpty()) {
+                break;
+            }
+            pendingRecords += batch.records().size();
+            for (byte[] record : batch.records()) {
+                pendingBytes += HEADER_SIZE + record.length;
+            }
+            readCursor = batch.next();
+        }
+        readCursor = position;
+    }
+
+    /**
+     * A location in the log: segment index and byte offset within it
+     */
+    public record Position(long segment, int offset) implements Comparable<Position> {
+
+        @Override
+        public int compareTo(Position other) {
+            int bySegment = Long.compare(segment, other.segment);
+            return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+        }
+    }
+
+    /**
+     * Records returned by {@link #read} and the position after the last of them
+     */
+    public record Batch(List<byte[]> records, Position next) {
+    }
+
+    /**
+     * Thrown when an append needs a segment beyond the configured maximum
+     */
+    public static class LogFullException extends IOException {
+
+        public LogFullException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * One memory-mapped segment file
+     */
+    private static final class Segment {
+        final long index;
+        final Path file;
+        final FileChannel channel;
+        MappedByteBuffer buffer;
+        int writePosition;
+
+        Segment(long index, Path file, int size) throws IOException {
+            this.index = index;
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Find the end of valid records and clear anything after it
+         */
+        void recoverTail() {
+            int position = 0;
+            int limit = buffer.capacity();
+            while (position + HEADER_SIZE <= limit) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER_SIZE + length > limit || !checksumMatches(position, length)) {
+                    break;
+                }
+                position += HEADER_SIZE + length;
+            }
+            writePosition = position;
+
+            // Zero the torn remainder: an append there could otherwise end just before stale bytes
+            // that read as a length
+            for (int offset = position; offset < limit; offset++) {
+                if (buffer.get(offset) != 0) {
+                    buffer.put(offset, (byte) 0);
+                }
+            }
+            buffer.force();
+        }
+
+        private boolean checksumMatches(int position, int length) {
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            return (int) crc.getValue() == buffer.getInt(position + 4);
+        }
+
+        /**
+         * Unmap and delete; only once no reader can reach the segment any more
+         */
+        void delete() throws IOException {
+            MappedByteBuffer mapped = buffer;
+            buffer = null;
+            channel.close();
+            MappedBuffers.unmap(mapped);
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.jeffreyxu.kafka.common.model;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.junit.jupiter.api.Test;
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
@@ -57,4 +60,43 @@ class EventModelTests {
         assertThat(event.isCritical()).isTrue();
         assertThat(event.getDescription()).contains("error");
     }
+
+    @Test
+    void testSystemEventTypeSurvivesJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        SystemEvent event = SystemEvent.builder()
+            .serviceId("service123")
+            .eventType("METRIC_UPDATE")
+            .severity("INFO")
+            .message("metrics")
+            .build();
+
+        BaseEvent read = objectMapper.readValue(objectMapper.writeValueAsString(event), BaseEvent.class);
+
+        assertThat(read).isInstanceOf(SystemEvent.class);
+        assertThat(((SystemEvent) read).getSystemEventType()).isEqualTo("METRIC_UPDATE");
+        assertThat(((SystemEvent) read).isMetricUpdate()).isTrue();
+    }
+
+    @Test
+    void testMetricUpdateFromRestRequestBody() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // eventType names the event class; the system event type travels as systemEventType
+        String body = """
+            {"eventType": "SYSTEM_EVENT", "systemEventType": "METRIC_UPDATE", "serviceId": "billing",
+             "severity": "INFO", "message": "metrics", "component": "jvm", "metadata": {"cpu": 0.5}}
+            """;
+
+        SystemEvent single = objectMapper.readValue(body, SystemEvent.class);
+        BaseEvent[] batch = objectMapper.readValue("[" + body + "]", BaseEvent[].class);
+
+        assertThat(single.isMetricUpdate()).isTrue();
+        assertThat(single.isValid()).isTrue();
+        assertThat(batch[0]).isInstanceOf(SystemEvent.class);
+        assertThat(((SystemEvent) batch[0]).isMetricUpdate()).isTrue();
+    }
 }
@@ -0,0 +1,154 @@
+package com.jeffreyxu.kafka.common.storage;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the memory-mapped segment log.
+ */
+class MappedSegmentLogTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReadsInAppendOrderAcrossSegments() throws IOException {
+        try (MappedSegmentLog log = new MappedSegmentLog(directory, 256, 100)) {
+            for (int i = 0; i < 50; i++) {
+                log.append(bytes("record-" + i));
+            }
+            assertThat(log.getSegmentCount()).isGreaterThan(1);
+            assertThat(log.getPendingRecords()).isEqualTo(50);
+
+            MappedSegmentLog.Batch first = log.read(20);
+            assertThat(first.records()).hasSize(20);
+            assertThat(text(first.records().get(0))).isEqualTo("record-0");
+
+            // Reading does not consume
+            assertThat(text(log.read(1).records().get(0))).isEqualTo("record-0");
+
+            log.commit(first.next());
+            MappedSegmentLog.Batch rest = log.read(100);
+            assertThat(rest.records()).hasSize(30);
+            assertThat(text(rest.records().get(0))).isEqualTo("record-20");
+            assertThat(text(rest.records().get(29))).isEqualTo("record-49");
+
+            log.commit(rest.next());
+            assertThat(log.isEmpty()).isTrue();
+            assertThat(log.getPendingBytes()).isZero();
+            assertThat(log.getSegmentCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testCommittedSegmentsAreUnmapped() throws IOException {
+        Path maps = Path.of("/proc/self/maps");
+        Assumptions.assumeTrue(Files.isReadable(maps), "needs /proc/self/maps");
+        try (MappedSegmentLog log = new MappedSegmentLog(directory, 4096, 100)) {
+            for (int i = 0; i < 100; i++) {
+                log.append(new byte[200]);
+            }
+            assertThat(log.getSegmentCount()).isGreaterThan(3);
+            assertThat(mappedSegments(maps)).isEqualTo(log.getSegmentCount());
+
+            log.commit(log.read(100).next());
+
+            // Deleted and unmapped, so their blocks are free; only the active segment is left
+            assertThat(log.getSegmentCount()).isEqualTo(1);
+            assertThat(mappedSegments(maps)).isEqualTo(1);
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.filter(f -> f.toString().endsWith(".seg")).count()).isEqualTo(1);
+            }
+        }
+    }
+
+    private long mappedSegments(Path maps) throws IOException {
+        return Files.readAllLines(maps).stream()
+            .filter(line -> line.contains(directory.toString()) && line.contains(".seg"))
+            .map(line -> line.substring(line.indexOf(directory.toString())))
+            .distinct()
+            .count();
+    }
+
+    @Test
+    void testReopenResumesFromCommittedCursor() throws IOException {
+        try (MappedSegmentLog log = new MappedSegmentLog(directory, 256, 100)) {
+            for (int i = 0; i < 30; i++) {
+                log.append(bytes("record-" + i));
+            }
+            log.commit(log.read(10).next());
+        }
+
+        try (MappedSegmentLog log = new MappedSegmentLog(directory, 256, 100)) {
+            assertThat(log.getPendingRecords()).isEqualTo(20);
+            assertThat(text(log.read(1).records().get(0))).isEqualTo("record-10");
+
+            log.append(bytes("after-reopen"));
+            List<byte[]> records = log.read(100).records();
+            assertThat(records).hasSize(21);
+            assertThat(text(records.get(20))).isEqualTo("after-reopen");
+        }
+    }
+
+    @Test
+    void testTornTailIsDiscardedOnReopen() throws IOException {
+        try (MappedSegmentLog log = new MappedSegmentLog(directory, 4096, 10)) {
+            log.append(bytes("complete"));
+            log.append(bytes("torn-record"));
+        }
+
+        // Corrupt the last record's payload, as if the crash hit mid-append
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            int tornPayload = 8 + "complete".length() + 8;
+            channel.write(ByteBuffer.wrap(bytes("XXXX")), tornPayload);
+        }
+
+        try (MappedSegmentLog log = new MappedSegmentLog(directory, 4096, 10)) {
+            assertThat(log.getPendingRecords()).isEqualTo(1);
+            log.append(bytes("next"));
+            assertThat(log.read(10).records()).extracting(MappedSegmentLogTests::text)
+                .containsExactly("complete", "next");
+        }
+    }
+
+    @Test
+    void testRejectsAppendsWhenFull() throws IOException {
+        try (MappedSegmentLog log = new MappedSegmentLog(directory, 64, 2)) {
+            log.append(new byte[40]);
+            log.append(new byte[40]);
+            assertThatThrownBy(() -> log.append(new byte[40])).isInstanceOf(MappedSegmentLog.LogFullException.class);
+            assertThatThrownBy(() -> log.append(new byte[60])).isInstanceOf(IllegalArgumentException.class);
+
+            // Consuming frees a segment
+            log.commit(log.read(1).next());
+            log.append(new byte[40]);
+            assertThat(log.getPendingRecords()).isEqualTo(2);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
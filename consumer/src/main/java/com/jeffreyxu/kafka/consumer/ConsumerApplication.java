@@ -6,6 +6,7 @@ import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 /**
@@ -20,6 +21,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 })
 @EnableKafka
 @EnableAsync
+@EnableScheduling
 @EnableTransactionManagement
 @EnableJpaRepositories(basePackages = "com.jeffreyxu.kafka.consumer.repository")
 @EntityScan(basePackages = "com.jeffreyxu.kafka.consumer.entity")
@@ -0,0 +1,36 @@
+package com.jeffreyxu.kafka.consumer.actuator;
+
+import com.jeffreyxu.kafka.consumer.service.ConsumerLagService;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint exposing consumer group lag at /actuator/consumerlag
+ */
+@Component
+@Endpoint(id = "consumerlag")
+@RequiredArgsConstructor
+public class ConsumerLagEndpoint {
+
+    private final ConsumerLagService consumerLagService;
+
+    @ReadOperation
+    public Map<String, Object> lag() {
+        return consumerLagService.getLagReport();
+    }
+
+    /**
+     * Lag of a single group; a missing group is reported as 404
+     */
+    @ReadOperation
+    public Map<String, Object> groupLag(@Selector String group) {
+        return consumerLagService.getGroupLag(group);
+    }
+}
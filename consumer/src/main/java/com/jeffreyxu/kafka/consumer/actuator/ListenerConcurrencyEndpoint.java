@@ -0,0 +1,50 @@
+package com.jeffreyxu.kafka.consumer.actuator;
+
+import com.jeffreyxu.kafka.consumer.service.ListenerConcurrencyService;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint for listener concurrency at /actuator/listenerconcurrency.
+ * POST {"concurrency": 3} to /actuator/listenerconcurrency/{listenerId} to scale one listener.
+ */
+@Component
+@Endpoint(id = "listenerconcurrency")
+@RequiredArgsConstructor
+public class ListenerConcurrencyEndpoint {
+
+    private final ListenerConcurrencyService listenerConcurrencyService;
+
+    @ReadOperation
+    public Map<String, Object> concurrency() {
+        return listenerConcurrencyService.getStatus();
+    }
+
+    @ReadOperation
+    public Map<String, Object> listenerConcurrency(@Selector String listenerId) {
+        try {
+            return listenerConcurrencyService.describe(listenerId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @WriteOperation
+    public Map<String, Object> setConcurrency(@Selector String listenerId, int concurrency) {
+        try {
+            listenerConcurrencyService.setConcurrency(listenerId, concurrency);
+            return listenerConcurrencyService.describe(listenerId);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), "Cannot change concurrency");
+        }
+    }
+}
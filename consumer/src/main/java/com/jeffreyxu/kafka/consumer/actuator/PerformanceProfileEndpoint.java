@@ -0,0 +1,39 @@
+package com.jeffreyxu.kafka.consumer.actuator;
+
+import com.jeffreyxu.kafka.consumer.service.PerformanceProfileService;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint for the consumer performance profile at /actuator/performanceprofile.
+ * POST {"profile": "bulk-throughput"} to switch.
+ */
+@Component
+@Endpoint(id = "performanceprofile")
+@RequiredArgsConstructor
+public class PerformanceProfileEndpoint {
+
+    private final PerformanceProfileService performanceProfileService;
+
+    @ReadOperation
+    public Map<String, Object> profile() {
+        return performanceProfileService.getStatus();
+    }
+
+    @WriteOperation
+    public Map<String, Object> switchProfile(String profile) {
+        try {
+            return performanceProfileService.switchTo(profile);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), "Invalid profile");
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.jeffreyxu.kafka.consumer.analytics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog distinct-count sketch with a sparse representation for small sets.
+ *
+ * A sketch with precision p uses m = 2^p registers and has a relative standard error of
+ * about 1.04 / sqrt(m) (0.81% at p = 14). Small cardinalities are kept as a sorted list of
+ * (register, rank) pairs, so the many per-customer sketches that only ever see a handful
+ * of values cost a few bytes instead of m. Sketches with the same precision merge losslessly,
+ * which lets every consumer replica contribute to the same persisted sketch.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public class HyperLogLog {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+
+    private final int precision;
+    private final int registerCount;
+    private final int sparseLimit;
+
+    // Sparse form: sorted (index << 8 | rank) entries; null once dense
+    private int[] sparse = new int[4];
+    private int sparseSize = 0;
+
+    // Dense form: one byte per register; null while sparse
+    private byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16: " + precision);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        // Beyond m/4 entries the sparse list is as large as the dense registers
+        this.sparseLimit = registerCount / 4;
+    }
+
+    /**
+     * Add a value to the sketch
+     */
+    public void add(String value) {
+        if (value == null) {
+            return;
+        }
+        addHash(hash(value));
+    }
+
+    void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        int rank = Long.numberOfLeadingZeros(remaining) + 1;
+        update(index, rank);
+    }
+
+    private void update(int index, int rank) {
+        if (registers != null) {
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int position = findSparse(index);
+        if (position >= 0) {
+            int existing = sparse[position] & 0xFF;
+            if (existing < rank) {
+                sparse[position] = (index << 8) | rank;
+            }
+            return;
+        }
+
+        if (sparseSize >= sparseLimit) {
+            toDense();
+            update(index, rank);
+            return;
+        }
+
+        int insertAt = -position - 1;
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(sparseLimit, sparse.length * 2));
+        }
+        System.arraycopy(sparse, insertAt, sparse, insertAt + 1, sparseSize - insertAt);
+        sparse[insertAt] = (index << 8) | rank;
+        sparseSize++;
+    }
+
+    private int findSparse(int index) {
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midIndex = sparse[mid] >>> 8;
+            if (midIndex < index) {
+                low = mid + 1;
+            } else if (midIndex > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void toDense() {
+        registers = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    /**
+     * Merge another sketch of the same precision into this one
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with precision " + other.precision
+                + " into precision " + precision);
+        }
+
+        if (other.registers != null) {
+            if (registers == null) {
+                toDense();
+            }
+            for (int i = 0; i < registerCount; i++) {
+                if (registers[i] < other.registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                update(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Estimated number of distinct values added.
+     *
+     * Uses Ertl's improved estimator ("New cardinality estimation algorithms for HyperLogLog
+     * sketches", 2017), which stays unbiased through the small and mid ranges where the
+     * original estimator needs linear counting and empirical bias tables.
+     */
+    public long estimate() {
+        int maxRank = 64 - precision + 1;
+        int[] histogram = new int[maxRank + 1];
+        if (registers == null) {
+            histogram[0] = registerCount - sparseSize;
+            for (int i = 0; i < sparseSize; i++) {
+                histogram[sparse[i] & 0xFF]++;
+            }
+        } else {
+            for (byte register : registers) {
+                histogram[register]++;
+            }
+        }
+
+        double m = registerCount;
+        double z = m * tau(1 - histogram[maxRank] / m);
+        for (int k = maxRank - 1; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma(histogram[0] / m);
+
+        return Math.round(m * m / (2 * Math.log(2)) / z);
+    }
+
+    private static double sigma(double x) {
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= Math.pow(1 - x, 2) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+
+    /**
+     * Relative standard error of estimates from a sketch with this precision
+     */
+    public double standardError() {
+        return standardError(precision);
+    }
+
+    public static double standardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public boolean isSparse() {
+        return registers == null;
+    }
+
+    /**
+     * Serialize to a compact byte array
+     */
+    public byte[] toBytes() {
+        if (registers == null) {
+            ByteBuffer buffer = ByteBuffer.allocate(7 + sparseSize * 4);
+            buffer.put(FORMAT_VERSION).put((byte) precision).put(SPARSE).putInt(sparseSize);
+            for (int i = 0; i < sparseSize; i++) {
+                buffer.putInt(sparse[i]);
+            }
+            return buffer.array();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(3 + registerCount);
+        buffer.put(FORMAT_VERSION).put((byte) precision).put(DENSE).put(registers);
+        return buffer.array();
+    }
+
+    /**
+     * Deserialize a sketch written by {@link #toBytes()}
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch format version: " + version);
+        }
+
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        byte format = buffer.get();
+        if (format == DENSE) {
+            sketch.sparse = null;
+            sketch.registers = new byte[sketch.registerCount];
+            buffer.get(sketch.registers);
+        } else {
+            int size = buffer.getInt();
+            sketch.sparse = new int[Math.max(4, size)];
+            for (int i = 0; i < size; i++) {
+                sketch.sparse[i] = buffer.getInt();
+            }
+            sketch.sparseSize = size;
+        }
+        return sketch;
+    }
+
+    /**
+     * First 64 bits of MurmurHash3 x64_128 (seed 0) over the UTF-8 bytes
+     */
+    static long hash(String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = 0;
+        long h2 = 0;
+
+        int blocks = data.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            h1 ^= mixK1(buffer.getLong(i * 16));
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(buffer.getLong(i * 16 + 8));
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks * 16;
+        for (int i = data.length - tail - 1; i >= 0; i--) {
+            long b = data[tail + i] & 0xFFL;
+            if (i >= 8) {
+                k2 |= b << ((i - 8) * 8);
+            } else {
+                k1 |= b << (i * 8);
+            }
+        }
+        h2 ^= mixK2(k2);
+        h1 ^= mixK1(k1);
+
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        return h1 + h2;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= 0x87c37b91114253d5L;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * 0x4cf5ad432745937fL;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= 0x4cf5ad432745937fL;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * 0x87c37b91114253d5L;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,211 @@
+package com.jeffreyxu.kafka.consumer.analytics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Weighted Space-Saving summary (Metwally et al.) for the heaviest keys of a stream.
+ *
+ * Keeps at most {@code capacity} counters. An unmonitored key takes over the smallest
+ * counter and inherits its count as error, so every reported count overestimates the true
+ * weight by at most its error, and that error is at most total weight / capacity. Counters
+ * sit in an indexed min-heap, so each update is O(log K) and the top N is read in O(K).
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final Counter[] heap;
+    private int size = 0;
+    private double totalWeight = 0;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Add weight to a key
+     */
+    public void offer(String key, double weight) {
+        if (key == null || weight <= 0) {
+            return;
+        }
+        totalWeight += weight;
+
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.heapIndex);
+            return;
+        }
+
+        if (size < capacity) {
+            counter = new Counter(key, weight, 0);
+            counter.heapIndex = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.heapIndex);
+            return;
+        }
+
+        // Evict the smallest counter; its count bounds what the new key may have had before
+        Counter smallest = heap[0];
+        counters.remove(smallest.key);
+        smallest.error = smallest.count;
+        smallest.count += weight;
+        smallest.key = key;
+        counters.put(key, smallest);
+        siftDown(0);
+    }
+
+    /**
+     * Heaviest keys, largest count first
+     */
+    public List<Entry> top(int limit) {
+        List<Entry> entries = entries();
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    /**
+     * All monitored keys, largest count first
+     */
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(heap[i].key, heap[i].count, heap[i].error));
+        }
+        entries.sort(Comparator.comparingDouble(Entry::count).reversed());
+        return entries;
+    }
+
+    /**
+     * Smallest monitored count, the most any unmonitored key can weigh; zero until full
+     */
+    public double minCount() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Combine summaries of disjoint stretches of the stream (e.g. consecutive windows).
+     *
+     * A key missing from a full summary may still have weighed up to that summary's minimum
+     * count there, so that bound is added to both its count and its error. The result keeps
+     * the largest {@code capacity} combined counters.
+     */
+    public static SpaceSaving merge(List<SpaceSaving> summaries, int capacity) {
+        Set<String> keys = new HashSet<>();
+        for (SpaceSaving summary : summaries) {
+            keys.addAll(summary.counters.keySet());
+        }
+
+        List<Entry> combined = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            double count = 0;
+            double error = 0;
+            for (SpaceSaving summary : summaries) {
+                Counter counter = summary.counters.get(key);
+                if (counter != null) {
+                    count += counter.count;
+                    error += counter.error;
+                } else {
+                    count += summary.minCount();
+                    error += summary.minCount();
+                }
+            }
+            combined.add(new Entry(key, count, error));
+        }
+        combined.sort(Comparator.comparingDouble(Entry::count).reversed());
+
+        SpaceSaving merged = new SpaceSaving(capacity);
+        for (Entry entry : combined.subList(0, Math.min(capacity, combined.size()))) {
+            Counter counter = new Counter(entry.key(), entry.count(), entry.error());
+            counter.heapIndex = merged.size;
+            merged.heap[merged.size++] = counter;
+            merged.counters.put(entry.key(), counter);
+            merged.siftUp(counter.heapIndex);
+        }
+        for (SpaceSaving summary : summaries) {
+            merged.totalWeight += summary.totalWeight;
+        }
+        return merged;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    /**
+     * A monitored key; the true weight lies in [count - error, count]
+     */
+    public record Entry(String key, double count, double error) {
+
+        public double guaranteedCount() {
+            return count - error;
+        }
+    }
+
+    private static final class Counter {
+        String key;
+        double count;
+        double error;
+        int heapIndex;
+
+        Counter(String key, double count, double error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
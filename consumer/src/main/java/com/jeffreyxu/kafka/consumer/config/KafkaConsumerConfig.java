@@ -0,0 +1,80 @@
+package com.jeffreyxu.kafka.consumer.config;
+
+import com.jeffreyxu.kafka.consumer.service.StatsService;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaConsumerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Listener container factories beyond Boot's default kafkaListenerContainerFactory.
+ */
+@Configuration
+public class KafkaConsumerConfig {
+
+    public static final String PRIORITY_CONTAINER_FACTORY = "priorityKafkaListenerContainerFactory";
+
+    /**
+     * Wrap the configured value deserializer so the deserialize stage is timed.
+     * The factory still configures the instance from spring.kafka.consumer properties.
+     */
+    @Bean
+    @SuppressWarnings("unchecked")
+    public DefaultKafkaConsumerFactoryCustomizer timedDeserializerCustomizer(StatsService statsService) {
+        return consumerFactory -> {
+            DefaultKafkaConsumerFactory<Object, Object> factory = (DefaultKafkaConsumerFactory<Object, Object>) consumerFactory;
+            Object configured = factory.getConfigurationProperties().get(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+            if (configured == null) {
+                return;
+            }
+            Class<?> deserializerClass = configured instanceof Class<?> type
+                ? type
+                : ClassUtils.resolveClassName(configured.toString(), KafkaConsumerConfig.class.getClassLoader());
+            factory.setValueDeserializerSupplier(() -> new TimedDeserializer(
+                (Deserializer<Object>) BeanUtils.instantiateClass(deserializerClass), statsService));
+        };
+    }
+
+    /**
+     * Container factory for the priority lane: same deserialization and ack mode as the default
+     * factory, but small polls, short fetch waits and dedicated high-priority consumer threads.
+     * The executor is deliberately not a bean: an Executor bean would replace Boot's
+     * applicationTaskExecutor for @Async.
+     */
+    @Bean(PRIORITY_CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> priorityKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            @Value("${app.priority-lane.concurrency:2}") int concurrency,
+            @Value("${app.priority-lane.max-poll-records:50}") int maxPollRecords,
+            @Value("${app.priority-lane.fetch-max-wait:50ms}") Duration fetchMaxWait,
+            @Value("${app.priority-lane.poll-timeout:500ms}") Duration pollTimeout) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setConcurrency(concurrency);
+
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        overrides.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, String.valueOf(fetchMaxWait.toMillis()));
+        factory.getContainerProperties().setKafkaConsumerProperties(overrides);
+        factory.getContainerProperties().setPollTimeout(pollTimeout.toMillis());
+
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("priority-listener-");
+        executor.setThreadPriority(Thread.MAX_PRIORITY);
+        factory.getContainerProperties().setListenerTaskExecutor(executor);
+        return factory;
+    }
+}
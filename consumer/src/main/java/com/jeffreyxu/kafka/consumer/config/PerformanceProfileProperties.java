@@ -0,0 +1,83 @@
+package com.jeffreyxu.kafka.consumer.config;
+
+import lombok.Data;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named consumer performance profiles that can be switched at runtime.
+ * Bound from the {@code app.performance} section of application.yml.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.performance")
+@Data
+public class PerformanceProfileProperties {
+
+    /**
+     * Profile applied at startup; blank keeps the spring.kafka settings
+     */
+    private String active = "";
+
+    /**
+     * Available profiles by name
+     */
+    private Map<String, Profile> profiles = new LinkedHashMap<>();
+
+    /**
+     * Fetch, poll and commit settings applied to the event listener containers
+     */
+    @Data
+    public static class Profile {
+
+        /**
+         * Minimum bytes the broker accumulates before answering a fetch
+         */
+        private int fetchMinBytes = 1;
+
+        /**
+         * Longest the broker waits for fetch-min-bytes
+         */
+        private Duration fetchMaxWait = Duration.ofMillis(500);
+
+        /**
+         * Records returned by a single poll
+         */
+        private int maxPollRecords = 500;
+
+        /**
+         * Bytes fetched per partition per request
+         */
+        private int maxPartitionFetchBytes = 1024 * 1024;
+
+        /**
+         * Consumer threads per listener; null keeps the current concurrency
+         */
+        private Integer concurrency;
+
+        /**
+         * MANUAL commits acknowledged offsets after each poll, MANUAL_IMMEDIATE after each record
+         */
+        private ContainerProperties.AckMode ackMode = ContainerProperties.AckMode.MANUAL;
+
+        /**
+         * Wait for each offset commit to complete before polling again
+         */
+        private boolean syncCommits = true;
+
+        /**
+         * Longest a poll blocks when no records are available
+         */
+        private Duration pollTimeout = Duration.ofSeconds(3);
+
+        /**
+         * Pause between polls, letting the broker accumulate larger batches
+         */
+        private Duration idleBetweenPolls = Duration.ZERO;
+    }
+}
@@ -0,0 +1,112 @@
+package com.jeffreyxu.kafka.consumer.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration for the chunked retention purge job.
+ * Bound from the {@code app.retention} section of application.yml.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.retention")
+@Data
+public class RetentionProperties {
+
+    /**
+     * Whether the purge job runs at all
+     */
+    private boolean enabled = false;
+
+    /**
+     * Rows per DELETE statement when a pass starts
+     */
+    private int initialChunkSize = 1000;
+
+    /**
+     * Lower bound for the adaptive chunk size
+     */
+    private int minChunkSize = 100;
+
+    /**
+     * Upper bound for the adaptive chunk size
+     */
+    private int maxChunkSize = 5000;
+
+    /**
+     * Chunk latency above which the job backs off
+     */
+    private Duration targetChunkLatency = Duration.ofMillis(200);
+
+    /**
+     * Minimum pause between two chunks
+     */
+    private Duration minPause = Duration.ofMillis(20);
+
+    /**
+     * Maximum pause between two chunks
+     */
+    private Duration maxPause = Duration.ofSeconds(5);
+
+    /**
+     * Upper bound for a single pass over all tables
+     */
+    private Duration maxRunTime = Duration.ofMinutes(5);
+
+    /**
+     * SQL returning replication lag in seconds as a single number; blank disables the check
+     */
+    private String replicationLagQuery = "";
+
+    /**
+     * Replication lag at which the job stops deleting until replicas catch up
+     */
+    private long maxReplicationLagSeconds = 10;
+
+    /**
+     * Tables to purge, processed in the listed order
+     */
+    private List<Table> tables = new ArrayList<>();
+
+    /**
+     * Retention rule for a single table
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Table {
+
+        /**
+         * Table name
+         */
+        private String name;
+
+        /**
+         * Auto-increment primary key column
+         */
+        private String idColumn = "id";
+
+        /**
+         * Column compared against the retention cutoff
+         */
+        private String timeColumn;
+
+        /**
+         * How long rows are kept
+         */
+        private Duration retention;
+
+        /**
+         * Whether the time column grows with the id column. Such tables are purged in id ranges
+         * from the lowest id; others are purged by the time column alone, which needs an index
+         */
+        private boolean insertionOrdered = true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.jeffreyxu.kafka.consumer.config;
+
+import com.jeffreyxu.kafka.consumer.service.StatsService;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Value deserializer that records the deserialize stage timer around a delegate.
+ */
+public class TimedDeserializer implements Deserializer<Object> {
+
+    private final Deserializer<Object> delegate;
+    private final StatsService statsService;
+
+    public TimedDeserializer(Deserializer<Object> delegate, StatsService statsService) {
+        this.delegate = delegate;
+        this.statsService = statsService;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deserialize(topic, data);
+        } finally {
+            statsService.recordStage(topic, StatsService.STAGE_DESERIALIZE, start);
+        }
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deserialize(topic, headers, data);
+        } finally {
+            statsService.recordStage(topic, StatsService.STAGE_DESERIALIZE, start);
+        }
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, ByteBuffer data) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deserialize(topic, headers, data);
+        } finally {
+            statsService.recordStage(topic, StatsService.STAGE_DESERIALIZE, start);
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -1,17 +1,32 @@
 package com.jeffreyxu.kafka.consumer.controller;
 
 import com.jeffreyxu.kafka.consumer.service.StatsService;
+import com.jeffreyxu.kafka.consumer.service.RetentionPurgeService;
+import com.jeffreyxu.kafka.consumer.service.SystemEventSearchService;
+import com.jeffreyxu.kafka.consumer.service.InvalidSearchQueryException;
+import com.jeffreyxu.kafka.consumer.service.DistinctCountService;
+import com.jeffreyxu.kafka.consumer.service.ApproximateAnalyticsService;
+import com.jeffreyxu.kafka.consumer.service.HeavyHitterService;
+import com.jeffreyxu.kafka.consumer.service.SessionWindowService;
+import com.jeffreyxu.kafka.consumer.service.FreshnessService;
+import com.jeffreyxu.kafka.consumer.service.BackpressureService;
+import com.jeffreyxu.kafka.consumer.service.SpillService;
+import com.jeffreyxu.kafka.consumer.service.MetricStoreService;
 import com.jeffreyxu.kafka.consumer.repository.ProcessedMessageRepository;
 import com.jeffreyxu.kafka.consumer.repository.UserEventRepository;
 import com.jeffreyxu.kafka.consumer.repository.BusinessEventRepository;
 import com.jeffreyxu.kafka.consumer.repository.SystemEventRepository;
+import com.jeffreyxu.kafka.consumer.repository.StackTraceFingerprintRepository;
+import com.jeffreyxu.kafka.consumer.repository.UserSessionRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
@@ -31,6 +46,18 @@ public class ConsumerController {
     private final UserEventRepository userEventRepository;
     private final BusinessEventRepository businessEventRepository;
     private final SystemEventRepository systemEventRepository;
+    private final StackTraceFingerprintRepository stackTraceFingerprintRepository;
+    private final RetentionPurgeService retentionPurgeService;
+    private final SystemEventSearchService systemEventSearchService;
+    private final DistinctCountService distinctCountService;
+    private final ApproximateAnalyticsService approximateAnalyticsService;
+    private final HeavyHitterService heavyHitterService;
+    private final SessionWindowService sessionWindowService;
+    private final FreshnessService freshnessService;
+    private final BackpressureService backpressureService;
+    private final SpillService spillService;
+    private final UserSessionRepository userSessionRepository;
+    private final MetricStoreService metricStoreService;
 
     /**
      * Health check endpoint
@@ -186,15 +213,24 @@ public class ConsumerController {
     @GetMapping("/analytics/business")
     public ResponseEntity<Map<String, Object>> getBusinessAnalytics(
             @RequestParam(defaultValue = "24") int hours,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "false") boolean approximate) {
         try {
             LocalDateTime since = LocalDateTime.now().minusHours(hours);
+            boolean useSketches = approximate && distinctCountService.isEnabled();
             
             Map<String, Object> analytics = new HashMap<>();
-            analytics.put("customerSummary", businessEventRepository.getCustomerTransactionSummary(since, limit));
+            if (useSketches) {
+                analytics.put("customerSummary", approximateAnalyticsService.getCustomerTransactionSummary(since, limit));
+                analytics.put("dailyRevenue", approximateAnalyticsService.getDailyRevenueSummary(since));
+                analytics.put("approximation", approximateAnalyticsService.describeApproximation());
+            } else {
+                analytics.put("customerSummary", businessEventRepository.getCustomerTransactionSummary(since, limit));
+                analytics.put("dailyRevenue", businessEventRepository.getDailyRevenueSummary(since));
+            }
+            analytics.put("approximate", useSketches);
             analytics.put("orderStatusDistribution", businessEventRepository.getOrderStatusDistribution(since));
             analytics.put("paymentMethodAnalytics", businessEventRepository.getPaymentMethodAnalytics(since));
-            analytics.put("dailyRevenue", businessEventRepository.getDailyRevenueSummary(since));
             analytics.put("topCustomers", businessEventRepository.getTopCustomersByRevenue(since, limit));
             analytics.put("totalBusinessEvents", businessEventRepository.count());
             
@@ -210,14 +246,25 @@ public class ConsumerController {
      */
     @GetMapping("/analytics/system")
     public ResponseEntity<Map<String, Object>> getSystemAnalytics(
-            @RequestParam(defaultValue = "24") int hours) {
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "false") boolean approximate) {
         try {
             LocalDateTime since = LocalDateTime.now().minusHours(hours);
+            boolean useSketches = approximate && distinctCountService.isEnabled();
             
             Map<String, Object> analytics = new HashMap<>();
-            analytics.put("serviceHealthSummary", systemEventRepository.getServiceHealthSummary(since));
-            analytics.put("severityDistribution", systemEventRepository.getSeverityDistribution(since));
+            if (useSketches) {
+                analytics.put("serviceHealthSummary", approximateAnalyticsService.getServiceHealthSummary(since));
+                analytics.put("severityDistribution", approximateAnalyticsService.getSeverityDistribution(since));
+                analytics.put("approximation", approximateAnalyticsService.describeApproximation());
+            } else {
+                analytics.put("serviceHealthSummary", systemEventRepository.getServiceHealthSummary(since));
+                analytics.put("severityDistribution", systemEventRepository.getSeverityDistribution(since));
+            }
+            analytics.put("approximate", useSketches);
             analytics.put("componentErrorAnalysis", systemEventRepository.getComponentErrorAnalysis(since));
+            analytics.put("componentStackTraceAnalysis", systemEventRepository.getComponentFingerprintAnalysis(since));
+            analytics.put("topStackTraces", stackTraceFingerprintRepository.getTopFingerprints(since, 10));
             analytics.put("hostPerformanceSummary", systemEventRepository.getHostPerformanceSummary(since));
             analytics.put("environmentStabilityReport", systemEventRepository.getEnvironmentStabilityReport(since));
             analytics.put("alertSummary", systemEventRepository.getAlertSummary(since));
@@ -231,6 +278,272 @@ public class ConsumerController {
         }
     }
 
+    /**
+     * Get end-to-end latency and data freshness against the freshness SLO
+     */
+    @GetMapping("/freshness")
+    public ResponseEntity<Map<String, Object>> getFreshness() {
+        try {
+            return ResponseEntity.ok(freshnessService.getFreshnessReport());
+        } catch (Exception e) {
+            log.error("Failed to get freshness report", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get the database backpressure state of the listener containers
+     */
+    @GetMapping("/backpressure")
+    public ResponseEntity<Map<String, Object>> getBackpressure() {
+        try {
+            return ResponseEntity.ok(backpressureService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get backpressure status", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get the state of the local spill log used while the database is unavailable
+     */
+    @GetMapping("/spill")
+    public ResponseEntity<Map<String, Object>> getSpill() {
+        try {
+            return ResponseEntity.ok(spillService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get spill status", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get the top customers by revenue from the streaming summaries
+     */
+    @GetMapping("/top/customers")
+    public ResponseEntity<Map<String, Object>> getTopCustomers(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "false") boolean compare) {
+        try {
+            return ResponseEntity.ok(heavyHitterService.getTop(
+                HeavyHitterService.CUSTOMERS_BY_REVENUE, hours, limit, compare));
+        } catch (Exception e) {
+            log.error("Failed to get top customers", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get the most active users from the streaming summaries
+     */
+    @GetMapping("/top/users")
+    public ResponseEntity<Map<String, Object>> getTopUsers(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "false") boolean compare) {
+        try {
+            return ResponseEntity.ok(heavyHitterService.getTop(
+                HeavyHitterService.USERS_BY_EVENTS, hours, limit, compare));
+        } catch (Exception e) {
+            log.error("Failed to get top users", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get the services with the most events from the streaming summaries
+     */
+    @GetMapping("/top/services")
+    public ResponseEntity<Map<String, Object>> getTopServices(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "false") boolean compare) {
+        try {
+            return ResponseEntity.ok(heavyHitterService.getTop(
+                HeavyHitterService.SERVICES_BY_EVENTS, hours, limit, compare));
+        } catch (Exception e) {
+            log.error("Failed to get top services", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get the most frequent distinct stack traces
+     */
+    @GetMapping("/stack-traces")
+    public ResponseEntity<Map<String, Object>> getStackTraces(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            LocalDateTime since = LocalDateTime.now().minusHours(hours);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("topStackTraces", stackTraceFingerprintRepository.getTopFingerprints(since, limit));
+            response.put("newStackTraces", stackTraceFingerprintRepository.findByFirstSeenAfterOrderByFirstSeenDesc(since));
+            response.put("totalDistinctStackTraces", stackTraceFingerprintRepository.count());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Failed to get stack trace fingerprints", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get a stack trace fingerprint with its most recent events
+     */
+    @GetMapping("/stack-traces/{id}")
+    public ResponseEntity<Map<String, Object>> getStackTrace(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return stackTraceFingerprintRepository.findById(id)
+                .map(fingerprint -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("fingerprint", fingerprint);
+                    response.put("recentEvents", systemEventRepository.findByStackTraceFingerprintIdOrderByCreatedAtDesc(
+                        id, PageRequest.of(0, limit)));
+                    return ResponseEntity.ok(response);
+                })
+                .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            log.error("Failed to get stack trace fingerprint {}", id, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get session analytics from the closed session summaries
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> getSessions(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(required = false) String userId,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            LocalDateTime since = LocalDateTime.now().minusHours(hours);
+            
+            Map<String, Object> sessions = new HashMap<>();
+            sessions.put("summary", userSessionRepository.getSessionSummary(since));
+            sessions.put("closeReasons", userSessionRepository.getCloseReasonDistribution(since));
+            sessions.put("deviceMetrics", userSessionRepository.getDeviceSessionMetrics(since));
+            sessions.put("recentSessions", userId != null
+                ? userSessionRepository.findByUserIdOrderByStartedAtDesc(userId, PageRequest.of(0, limit))
+                : userSessionRepository.findByStartedAtAfterOrderByStartedAtDesc(since, PageRequest.of(0, limit)));
+            sessions.put("windowing", sessionWindowService.getStatus());
+            
+            return ResponseEntity.ok(sessions);
+        } catch (Exception e) {
+            log.error("Failed to get session analytics", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get the closed windows of one session id
+     */
+    @GetMapping("/sessions/{sessionId}")
+    public ResponseEntity<Map<String, Object>> getSession(@PathVariable String sessionId) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("sessionId", sessionId);
+            response.put("windows", userSessionRepository.findBySessionIdOrderByStartedAtDesc(sessionId));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Failed to get session {}", sessionId, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Search system events by message, component and stack trace, most relevant first
+     */
+    @GetMapping("/search/system-events")
+    public ResponseEntity<Map<String, Object>> searchSystemEvents(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "false") boolean booleanMode,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            if (query == null || query.isBlank()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Query must not be blank"));
+            }
+            return ResponseEntity.ok(systemEventSearchService.search(query.trim(), booleanMode, page, size));
+        } catch (InvalidSearchQueryException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to search system events", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get the metric time-series store of this instance: its series, size and compression
+     */
+    @GetMapping("/metrics/series")
+    public ResponseEntity<Map<String, Object>> getMetricSeries() {
+        try {
+            Map<String, Object> response = new HashMap<>(metricStoreService.getStatus());
+            if (metricStoreService.isEnabled()) {
+                response.put("names", metricStoreService.listSeries());
+            }
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Failed to list metric series", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get a metric series over the last hours, downsampled to about {@code points} buckets
+     * unless a step is given. Reads this instance's store only, which holds the points of the
+     * partitions it consumed.
+     */
+    @GetMapping("/metrics/range")
+    public ResponseEntity<Map<String, Object>> getMetricRange(
+            @RequestParam String series,
+            @RequestParam(defaultValue = "1") int hours,
+            @RequestParam(defaultValue = "300") int points,
+            @RequestParam(required = false) Long stepSeconds) {
+        try {
+            if (!metricStoreService.isEnabled()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "The metric time-series store is disabled"));
+            }
+            if (hours <= 0 || points <= 0 || (stepSeconds != null && stepSeconds <= 0)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "hours, points and stepSeconds must be positive"));
+            }
+            LocalDateTime to = LocalDateTime.now();
+            LocalDateTime from = to.minusHours(hours);
+            Duration step = stepSeconds != null ? Duration.ofSeconds(stepSeconds)
+                : Duration.ofMillis(Math.max(1000, Duration.ofHours(hours).toMillis() / points));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("series", series);
+            response.put("from", from);
+            response.put("to", to);
+            response.put("stepSeconds", step.toMillis() / 1000.0);
+            response.put("buckets", metricStoreService.range(series, from, to, step));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Failed to get metric range for {}", series, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Get retention purge progress
+     */
+    @GetMapping("/retention")
+    public ResponseEntity<Map<String, Object>> getRetentionStatus() {
+        try {
+            return ResponseEntity.ok(retentionPurgeService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get retention status", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
     /**
      * Reset statistics (for testing purposes)
      */
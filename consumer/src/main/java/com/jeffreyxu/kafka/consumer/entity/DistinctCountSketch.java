@@ -0,0 +1,46 @@
+package com.jeffreyxu.kafka.consumer.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Entity holding a serialized HyperLogLog sketch for one metric, dimension value and hour.
+ * Sketches from all consumer instances are merged into the same row.
+ */
+@Entity
+@Table(name = "distinct_count_sketches",
+    uniqueConstraints = @UniqueConstraint(name = "uk_distinct_count_sketch",
+        columnNames = {"metric", "dimension", "bucket_start"}),
+    indexes = {
+        @Index(name = "idx_distinct_count_metric_bucket", columnList = "metric, bucket_start"),
+        @Index(name = "idx_distinct_count_bucket", columnList = "bucket_start")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistinctCountSketch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "metric", nullable = false, length = 64)
+    private String metric;
+
+    @Column(name = "dimension", nullable = false)
+    private String dimension;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Lob
+    @Column(name = "sketch", nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] sketch;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
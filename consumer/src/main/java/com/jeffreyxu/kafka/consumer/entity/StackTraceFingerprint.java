@@ -0,0 +1,45 @@
+package com.jeffreyxu.kafka.consumer.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a distinct, normalized stack trace.
+ * System events reference a fingerprint instead of storing the full trace on every row.
+ */
+@Entity
+@Table(name = "stack_trace_fingerprints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StackTraceFingerprint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "fingerprint", nullable = false, unique = true, length = 64)
+    private String fingerprint;
+
+    @Column(name = "exception_type")
+    private String exceptionType;
+
+    @Column(name = "normalized_trace", nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String normalizedTrace;
+
+    @Column(name = "sample_trace", columnDefinition = "MEDIUMTEXT")
+    private String sampleTrace;
+
+    @Column(name = "occurrence_count", nullable = false)
+    private Long occurrenceCount = 0L;
+
+    @Column(name = "first_seen")
+    private LocalDateTime firstSeen;
+
+    @Column(name = "last_seen")
+    private LocalDateTime lastSeen;
+}
@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
  * Stores system operational data for monitoring and alerting.
  */
 @Entity
-@Table(name = "system_events")
+@Table(name = "system_events", indexes = {
+    @Index(name = "idx_system_events_fingerprint", columnList = "stack_trace_fingerprint_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -49,6 +51,9 @@ public class SystemEventEntity {
     @Column(name = "stack_trace", columnDefinition = "TEXT")
     private String stackTrace;
 
+    @Column(name = "stack_trace_fingerprint_id")
+    private Long stackTraceFingerprintId;
+
     @Column(name = "metadata", columnDefinition = "JSON")
     private String metadata;
 
@@ -0,0 +1,71 @@
+package com.jeffreyxu.kafka.consumer.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a closed user session.
+ * Summarizes the user events of one session window so session analytics never read raw rows.
+ */
+@Entity
+@Table(name = "user_sessions", indexes = {
+    @Index(name = "idx_user_sessions_session", columnList = "session_id"),
+    @Index(name = "idx_user_sessions_user", columnList = "user_id, started_at"),
+    @Index(name = "idx_user_sessions_started", columnList = "started_at"),
+    @Index(name = "idx_user_sessions_ended", columnList = "ended_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSession {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "ended_at", nullable = false)
+    private LocalDateTime endedAt;
+
+    @Column(name = "duration_ms", nullable = false)
+    private Long durationMs;
+
+    @Column(name = "event_count", nullable = false)
+    private Integer eventCount;
+
+    @Column(name = "page_views", nullable = false)
+    private Integer pageViews;
+
+    @Column(name = "searches", nullable = false)
+    private Integer searches;
+
+    @Column(name = "clicks", nullable = false)
+    private Integer clicks;
+
+    @Column(name = "purchases", nullable = false)
+    private Integer purchases;
+
+    @Column(name = "device_type")
+    private String deviceType;
+
+    @Column(name = "location")
+    private String location;
+
+    @Column(name = "close_reason", nullable = false, length = 20)
+    private String closeReason;
+
+    @Column(name = "closed_at", nullable = false)
+    private LocalDateTime closedAt;
+}
@@ -3,7 +3,11 @@ package com.jeffreyxu.kafka.consumer.listener;
 import com.jeffreyxu.kafka.common.model.UserEvent;
 import com.jeffreyxu.kafka.common.model.BusinessEvent;
 import com.jeffreyxu.kafka.common.model.SystemEvent;
+import com.jeffreyxu.kafka.consumer.config.KafkaConsumerConfig;
+import com.jeffreyxu.kafka.consumer.service.FreshnessService;
 import com.jeffreyxu.kafka.consumer.service.MessageProcessingService;
+import com.jeffreyxu.kafka.consumer.service.PersistenceUnavailableException;
+import com.jeffreyxu.kafka.consumer.service.StatsService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +19,9 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+
 /**
  * Kafka event listeners for processing different types of events.
  * Uses manual acknowledgment for reliable message processing.
@@ -24,14 +31,27 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class EventListener {
 
+    // Container ids in the KafkaListenerEndpointRegistry
+    public static final String USER_EVENTS_LISTENER = "user-events-listener";
+    public static final String BUSINESS_EVENTS_LISTENER = "business-events-listener";
+    public static final String SYSTEM_EVENTS_LISTENER = "system-events-listener";
+    public static final String PRIORITY_SYSTEM_EVENTS_LISTENER = "system-events-priority-listener";
+
+    // Wait before redelivering a record that could be neither written nor spilled
+    private static final Duration REDELIVERY_DELAY = Duration.ofSeconds(1);
+
     private final MessageProcessingService messageProcessingService;
+    private final StatsService statsService;
+    private final FreshnessService freshnessService;
 
     /**
      * Listen to user events
      */
     @KafkaListener(
+        id = USER_EVENTS_LISTENER,
         topics = "user-events",
         groupId = "user-events-consumer-group",
+        concurrency = "${app.concurrency.listeners.user-events:${spring.kafka.listener.concurrency:1}}",
         containerFactory = "kafkaListenerContainerFactory"
     )
     public void handleUserEvent(
@@ -40,6 +60,8 @@ public class EventListener {
             @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
             @Header(KafkaHeaders.OFFSET) long offset,
             @Header(value = KafkaHeaders.RECEIVED_KEY, required = false) String key,
+            @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long recordTimestamp,
+            @Header(KafkaHeaders.TIMESTAMP_TYPE) String timestampType,
             Acknowledgment acknowledgment) {
         
         long startTime = System.currentTimeMillis();
@@ -50,13 +72,20 @@ public class EventListener {
             
             // Process the event
             messageProcessingService.processUserEvent(event, topic, partition, offset, key);
+            freshnessService.recordPersisted(topic, partition, event.getTimestamp(), recordTimestamp, timestampType);
             
             // Acknowledge successful processing
+            long ackStart = System.nanoTime();
             acknowledgment.acknowledge();
+            statsService.recordStage(topic, StatsService.STAGE_ACKNOWLEDGE, ackStart);
             
             long processingTime = System.currentTimeMillis() - startTime;
             log.info("Successfully processed user event {} in {}ms", event.getId(), processingTime);
             
+        } catch (PersistenceUnavailableException e) {
+            log.error("Could not store user event {} from partition {} at offset {}, redelivering: {}",
+                event.getId(), partition, offset, e.getMessage());
+            acknowledgment.nack(REDELIVERY_DELAY);
         } catch (Exception e) {
             log.error("Failed to process user event: {} from partition {} at offset {}", 
                 event.getId(), partition, offset, e);
@@ -75,8 +104,10 @@ public class EventListener {
      * Listen to business events
      */
     @KafkaListener(
+        id = BUSINESS_EVENTS_LISTENER,
         topics = "business-events",
         groupId = "business-events-consumer-group",
+        concurrency = "${app.concurrency.listeners.business-events:${spring.kafka.listener.concurrency:1}}",
         containerFactory = "kafkaListenerContainerFactory"
     )
     public void handleBusinessEvent(
@@ -85,6 +116,8 @@ public class EventListener {
             @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
             @Header(KafkaHeaders.OFFSET) long offset,
             @Header(value = KafkaHeaders.RECEIVED_KEY, required = false) String key,
+            @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long recordTimestamp,
+            @Header(KafkaHeaders.TIMESTAMP_TYPE) String timestampType,
             Acknowledgment acknowledgment) {
         
         long startTime = System.currentTimeMillis();
@@ -95,13 +128,20 @@ public class EventListener {
             
             // Process the event
             messageProcessingService.processBusinessEvent(event, topic, partition, offset, key);
+            freshnessService.recordPersisted(topic, partition, event.getTimestamp(), recordTimestamp, timestampType);
             
             // Acknowledge successful processing
+            long ackStart = System.nanoTime();
             acknowledgment.acknowledge();
+            statsService.recordStage(topic, StatsService.STAGE_ACKNOWLEDGE, ackStart);
             
             long processingTime = System.currentTimeMillis() - startTime;
             log.info("Successfully processed business event {} in {}ms", event.getId(), processingTime);
             
+        } catch (PersistenceUnavailableException e) {
+            log.error("Could not store business event {} from partition {} at offset {}, redelivering: {}",
+                event.getId(), partition, offset, e.getMessage());
+            acknowledgment.nack(REDELIVERY_DELAY);
         } catch (Exception e) {
             log.error("Failed to process business event: {} from partition {} at offset {}", 
                 event.getId(), partition, offset, e);
@@ -115,8 +155,10 @@ public class EventListener {
      * Listen to system events
      */
     @KafkaListener(
+        id = SYSTEM_EVENTS_LISTENER,
         topics = "system-events",
         groupId = "system-events-consumer-group",
+        concurrency = "${app.concurrency.listeners.system-events:${spring.kafka.listener.concurrency:1}}",
         containerFactory = "kafkaListenerContainerFactory"
     )
     public void handleSystemEvent(
@@ -125,6 +167,8 @@ public class EventListener {
             @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
             @Header(KafkaHeaders.OFFSET) long offset,
             @Header(value = KafkaHeaders.RECEIVED_KEY, required = false) String key,
+            @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long recordTimestamp,
+            @Header(KafkaHeaders.TIMESTAMP_TYPE) String timestampType,
             Acknowledgment acknowledgment) {
         
         long startTime = System.currentTimeMillis();
@@ -133,21 +177,27 @@ public class EventListener {
             log.info("Received system event: {} from partition {} at offset {}", 
                 event.getDescription(), partition, offset);
             
-            // Process the event
-            messageProcessingService.processSystemEvent(event, topic, partition, offset, key);
-            
-            // Special handling for critical system events
+            // Alert before persisting: critical events still arrive here from producers without priority routing
             if (event.isCritical()) {
-                log.warn("CRITICAL SYSTEM EVENT: {}", event.getDescription());
-                // In production: send alerts, notifications, etc.
+                raiseCriticalAlert(event);
             }
             
+            // Process the event
+            messageProcessingService.processSystemEvent(event, topic, partition, offset, key);
+            freshnessService.recordPersisted(topic, partition, event.getTimestamp(), recordTimestamp, timestampType);
+            
             // Acknowledge successful processing
+            long ackStart = System.nanoTime();
             acknowledgment.acknowledge();
+            statsService.recordStage(topic, StatsService.STAGE_ACKNOWLEDGE, ackStart);
             
             long processingTime = System.currentTimeMillis() - startTime;
             log.info("Successfully processed system event {} in {}ms", event.getId(), processingTime);
             
+        } catch (PersistenceUnavailableException e) {
+            log.error("Could not store system event {} from partition {} at offset {}, redelivering: {}",
+                event.getId(), partition, offset, e.getMessage());
+            acknowledgment.nack(REDELIVERY_DELAY);
         } catch (Exception e) {
             log.error("Failed to process system event: {} from partition {} at offset {}", 
                 event.getId(), partition, offset, e);
@@ -156,4 +206,65 @@ public class EventListener {
             acknowledgment.acknowledge();
         }
     }
+
+    /**
+     * Listen to CRITICAL/HIGH system events on the priority lane.
+     * Runs in its own container and threads, so it never waits behind the system-events backlog.
+     */
+    @KafkaListener(
+        id = PRIORITY_SYSTEM_EVENTS_LISTENER,
+        topics = "system-events-priority",
+        groupId = "system-events-priority-consumer-group",
+        containerFactory = KafkaConsumerConfig.PRIORITY_CONTAINER_FACTORY
+    )
+    public void handlePrioritySystemEvent(
+            @Payload SystemEvent event,
+            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+            @Header(KafkaHeaders.OFFSET) long offset,
+            @Header(value = KafkaHeaders.RECEIVED_KEY, required = false) String key,
+            @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long recordTimestamp,
+            @Header(KafkaHeaders.TIMESTAMP_TYPE) String timestampType,
+            Acknowledgment acknowledgment) {
+        
+        long startTime = System.currentTimeMillis();
+        
+        try {
+            // Alert first; persistence must not delay it
+            raiseCriticalAlert(event);
+            
+            messageProcessingService.processSystemEvent(event, topic, partition, offset, key);
+            freshnessService.recordPersisted(topic, partition, event.getTimestamp(), recordTimestamp, timestampType);
+            
+            long ackStart = System.nanoTime();
+            acknowledgment.acknowledge();
+            statsService.recordStage(topic, StatsService.STAGE_ACKNOWLEDGE, ackStart);
+            
+            long processingTime = System.currentTimeMillis() - startTime;
+            log.info("Successfully processed priority system event {} in {}ms", event.getId(), processingTime);
+            
+        } catch (PersistenceUnavailableException e) {
+            log.error("Could not store priority system event {} from partition {} at offset {}, redelivering: {}",
+                event.getId(), partition, offset, e.getMessage());
+            acknowledgment.nack(REDELIVERY_DELAY);
+        } catch (Exception e) {
+            log.error("Failed to process priority system event: {} from partition {} at offset {}", 
+                event.getId(), partition, offset, e);
+            
+            // Acknowledge to prevent infinite retries; the alert has already been raised
+            acknowledgment.acknowledge();
+        }
+    }
+
+    /**
+     * Raise the alert for a critical system event
+     */
+    private void raiseCriticalAlert(SystemEvent event) {
+        long alertLatencyMs = event.getTimestamp() != null
+            ? Duration.between(event.getTimestamp(), LocalDateTime.now()).toMillis()
+            : 0;
+        log.warn("CRITICAL SYSTEM EVENT: {} (alerted {}ms after event time)", event.getDescription(), alertLatencyMs);
+        statsService.recordCriticalAlert(alertLatencyMs);
+        // In production: send alerts, notifications, etc.
+    }
 }
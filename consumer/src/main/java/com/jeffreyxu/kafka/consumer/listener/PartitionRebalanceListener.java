@@ -0,0 +1,85 @@
+package com.jeffreyxu.kafka.consumer.listener;
+
+import com.jeffreyxu.kafka.consumer.service.SessionWindowService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Rebalance hooks for every listener container; Boot wires the single
+ * ConsumerAwareRebalanceListener bean into the container factories.
+ *
+ * With the cooperative-sticky assignor only the partitions that actually move are revoked,
+ * and the other partitions keep being consumed during the rebalance. Event persistence is
+ * synchronous per record, so when a partition is revoked the only in-flight state tied to it
+ * is the open user sessions built from its events. Those are closed and written before the
+ * container commits the acknowledged offsets of the revoked partitions (synchronously unless
+ * a performance profile turned sync commits off). Distinct-count sketches are not flushed
+ * here: they are not tied to partitions and a sketch absorbs redelivered events without
+ * changing its estimate.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private static final String USER_EVENTS_TOPIC = "user-events";
+
+    private final SessionWindowService sessionWindowService;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        flushSessions(partitions);
+        count("revoked", partitions);
+        log.info("Partitions revoked: {} (flushed in {}ms)", partitions, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        // Another member already owns these partitions and offsets can no longer be committed;
+        // writing the sessions still beats dropping them, though the new owner may rebuild part of them
+        flushSessions(partitions);
+        count("lost", partitions);
+        log.warn("Partitions lost: {}", partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (!partitions.isEmpty()) {
+            count("assigned", partitions);
+            log.info("Partitions assigned: {}", partitions);
+        }
+    }
+
+    private void flushSessions(Collection<TopicPartition> partitions) {
+        List<Integer> userEventPartitions = partitions.stream()
+            .filter(partition -> USER_EVENTS_TOPIC.equals(partition.topic()))
+            .map(TopicPartition::partition)
+            .toList();
+        try {
+            sessionWindowService.flushPartitions(userEventPartitions);
+        } catch (Exception e) {
+            log.error("Failed to flush sessions of revoked partitions {}", userEventPartitions, e);
+        }
+    }
+
+    private void count(String type, Collection<TopicPartition> partitions) {
+        partitions.stream().map(TopicPartition::topic).distinct().forEach(topic ->
+            meterRegistry.counter("kafka.consumer.rebalance.partitions", "type", type, "topic", topic)
+                .increment(partitions.stream().filter(partition -> topic.equals(partition.topic())).count()));
+    }
+}
@@ -114,6 +114,27 @@ public interface BusinessEventRepository extends JpaRepository<BusinessEventEnti
         """, nativeQuery = true)
     List<Object[]> getCustomerTransactionSummary(@Param("since") LocalDateTime since, @Param("limit") int limit);
 
+    /**
+     * Get customer transaction totals without the distinct counts,
+     * which are filled in from sketches for approximate analytics
+     */
+    @Query(value = """
+        SELECT customer_id,
+               COUNT(*) as total_transactions,
+               SUM(amount) as total_amount,
+               AVG(amount) as avg_amount,
+               MIN(amount) as min_amount,
+               MAX(amount) as max_amount,
+               MIN(created_at) as first_transaction,
+               MAX(created_at) as last_transaction
+        FROM business_events
+        WHERE created_at >= :since
+        GROUP BY customer_id
+        ORDER BY total_amount DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Object[]> getCustomerTransactionTotals(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
     /**
      * Get order status distribution
      */
@@ -157,6 +178,20 @@ public interface BusinessEventRepository extends JpaRepository<BusinessEventEnti
         """, nativeQuery = true)
     List<Object[]> getDailyRevenueSummary(@Param("since") LocalDateTime since);
 
+    /**
+     * Get daily revenue totals without the distinct counts
+     */
+    @Query(value = """
+        SELECT DATE(created_at) as transaction_date,
+               COUNT(*) as transaction_count,
+               SUM(amount) as daily_revenue
+        FROM business_events
+        WHERE created_at >= :since
+        GROUP BY DATE(created_at)
+        ORDER BY transaction_date DESC
+        """, nativeQuery = true)
+    List<Object[]> getDailyRevenueTotals(@Param("since") LocalDateTime since);
+
     /**
      * Get top customers by revenue
      */
@@ -0,0 +1,43 @@
+package com.jeffreyxu.kafka.consumer.repository;
+
+import com.jeffreyxu.kafka.consumer.entity.DistinctCountSketch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for DistinctCountSketch entities.
+ * Provides access to the persisted HyperLogLog sketches behind approximate analytics.
+ */
+@Repository
+public interface DistinctCountSketchRepository extends JpaRepository<DistinctCountSketch, Long> {
+
+    /**
+     * Find a sketch and lock its row for a read-merge-write
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM DistinctCountSketch d WHERE d.metric = :metric AND d.dimension = :dimension AND d.bucketStart = :bucketStart")
+    Optional<DistinctCountSketch> findForUpdate(@Param("metric") String metric,
+                                                @Param("dimension") String dimension,
+                                                @Param("bucketStart") LocalDateTime bucketStart);
+
+    /**
+     * Find all sketches of a metric from a bucket onwards
+     */
+    List<DistinctCountSketch> findByMetricAndBucketStartGreaterThanEqual(String metric, LocalDateTime since);
+
+    /**
+     * Find the sketches of a metric for specific dimension values from a bucket onwards
+     */
+    List<DistinctCountSketch> findByMetricAndDimensionInAndBucketStartGreaterThanEqual(String metric,
+                                                                                     Collection<String> dimensions,
+                                                                                     LocalDateTime since);
+}
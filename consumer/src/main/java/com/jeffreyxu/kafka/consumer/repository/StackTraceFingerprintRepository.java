@@ -0,0 +1,78 @@
+package com.jeffreyxu.kafka.consumer.repository;
+
+import com.jeffreyxu.kafka.consumer.entity.StackTraceFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for StackTraceFingerprint entities.
+ * Provides data access methods for deduplicated error analysis.
+ */
+@Repository
+public interface StackTraceFingerprintRepository extends JpaRepository<StackTraceFingerprint, Long> {
+
+    /**
+     * Find a fingerprint by its hash
+     */
+    Optional<StackTraceFingerprint> findByFingerprint(String fingerprint);
+
+    /**
+     * Get the most frequent stack traces seen since a point in time
+     */
+    @Query(value = """
+        SELECT id,
+               exception_type,
+               occurrence_count,
+               first_seen,
+               last_seen
+        FROM stack_trace_fingerprints
+        WHERE last_seen >= :since
+        ORDER BY occurrence_count DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Object[]> getTopFingerprints(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
+    /**
+     * Full-text search over exception type and sample trace, ordered by relevance.
+     * Requires the ft_stack_trace_fingerprints_text FULLTEXT index.
+     */
+    @Query(value = """
+        SELECT id,
+               exception_type,
+               occurrence_count,
+               last_seen,
+               MATCH(exception_type, sample_trace) AGAINST (:query IN NATURAL LANGUAGE MODE) AS relevance
+        FROM stack_trace_fingerprints
+        WHERE MATCH(exception_type, sample_trace) AGAINST (:query IN NATURAL LANGUAGE MODE)
+        ORDER BY relevance DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Object[]> searchNaturalLanguage(@Param("query") String query, @Param("limit") int limit);
+
+    /**
+     * Full-text search with boolean operators over exception type and sample trace
+     */
+    @Query(value = """
+        SELECT id,
+               exception_type,
+               occurrence_count,
+               last_seen,
+               MATCH(exception_type, sample_trace) AGAINST (:query IN BOOLEAN MODE) AS relevance
+        FROM stack_trace_fingerprints
+        WHERE MATCH(exception_type, sample_trace) AGAINST (:query IN BOOLEAN MODE)
+        ORDER BY relevance DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Object[]> searchBoolean(@Param("query") String query, @Param("limit") int limit);
+
+    /**
+     * Find fingerprints first seen after a point in time (new failure modes)
+     */
+    List<StackTraceFingerprint> findByFirstSeenAfterOrderByFirstSeenDesc(LocalDateTime since);
+}
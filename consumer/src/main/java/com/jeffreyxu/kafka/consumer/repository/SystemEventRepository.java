@@ -1,6 +1,8 @@
 package com.jeffreyxu.kafka.consumer.repository;
 
 import com.jeffreyxu.kafka.consumer.entity.SystemEventEntity;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -71,7 +73,7 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
     /**
      * Find events with stack traces (indicating errors)
      */
-    @Query("SELECT s FROM SystemEventEntity s WHERE s.stackTrace IS NOT NULL ORDER BY s.createdAt DESC")
+    @Query("SELECT s FROM SystemEventEntity s WHERE s.stackTrace IS NOT NULL OR s.stackTraceFingerprintId IS NOT NULL ORDER BY s.createdAt DESC")
     List<SystemEventEntity> findEventsWithStackTrace();
 
     /**
@@ -119,6 +121,41 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
         """, nativeQuery = true)
     List<Object[]> getServiceHealthSummary(@Param("since") LocalDateTime since);
 
+    /**
+     * Get service health counts without the distinct counts,
+     * which are filled in from sketches for approximate analytics
+     */
+    @Query(value = """
+        SELECT service_id,
+               COUNT(*) as total_events,
+               COUNT(CASE WHEN severity IN ('CRITICAL', 'HIGH') THEN 1 END) as critical_events,
+               COUNT(CASE WHEN severity = 'MEDIUM' THEN 1 END) as medium_events,
+               COUNT(CASE WHEN severity = 'LOW' THEN 1 END) as low_events,
+               COUNT(CASE WHEN severity = 'INFO' THEN 1 END) as info_events,
+               MIN(created_at) as first_event,
+               MAX(created_at) as last_event
+        FROM system_events
+        WHERE created_at >= :since
+        GROUP BY service_id
+        ORDER BY critical_events DESC, total_events DESC
+        """, nativeQuery = true)
+    List<Object[]> getServiceHealthCounts(@Param("since") LocalDateTime since);
+
+    /**
+     * Get services with the most events
+     */
+    @Query(value = """
+        SELECT service_id,
+               COUNT(*) as total_events,
+               MAX(created_at) as last_event
+        FROM system_events
+        WHERE created_at >= :since
+        GROUP BY service_id
+        ORDER BY total_events DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Object[]> getTopServicesByEventCount(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
     /**
      * Get severity distribution
      */
@@ -142,6 +179,27 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
         """, nativeQuery = true)
     List<Object[]> getSeverityDistribution(@Param("since") LocalDateTime since);
 
+    /**
+     * Get severity counts without the distinct counts
+     */
+    @Query(value = """
+        SELECT severity,
+               COUNT(*) as count
+        FROM system_events
+        WHERE created_at >= :since
+        GROUP BY severity
+        ORDER BY 
+            CASE severity
+                WHEN 'CRITICAL' THEN 1
+                WHEN 'HIGH' THEN 2
+                WHEN 'MEDIUM' THEN 3
+                WHEN 'LOW' THEN 4
+                WHEN 'INFO' THEN 5
+                ELSE 6
+            END
+        """, nativeQuery = true)
+    List<Object[]> getSeverityCounts(@Param("since") LocalDateTime since);
+
     /**
      * Get component error analysis
      */
@@ -149,7 +207,7 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
         SELECT component,
                COUNT(*) as total_events,
                COUNT(CASE WHEN severity IN ('CRITICAL', 'HIGH') THEN 1 END) as critical_events,
-               COUNT(CASE WHEN stack_trace IS NOT NULL THEN 1 END) as error_events,
+               COUNT(CASE WHEN stack_trace IS NOT NULL OR stack_trace_fingerprint_id IS NOT NULL THEN 1 END) as error_events,
                COUNT(DISTINCT service_id) as affected_services,
                COUNT(DISTINCT host_id) as affected_hosts,
                MAX(created_at) as last_event
@@ -161,6 +219,30 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
         """, nativeQuery = true)
     List<Object[]> getComponentErrorAnalysis(@Param("since") LocalDateTime since);
 
+    /**
+     * Get per-component error analysis over fingerprinted stack traces.
+     * Reads only narrow columns, never the trace text.
+     */
+    @Query(value = """
+        SELECT component,
+               COUNT(*) as error_events,
+               COUNT(DISTINCT stack_trace_fingerprint_id) as distinct_traces,
+               COUNT(DISTINCT service_id) as affected_services,
+               MAX(created_at) as last_event
+        FROM system_events
+        WHERE created_at >= :since
+        AND stack_trace_fingerprint_id IS NOT NULL
+        GROUP BY component
+        ORDER BY error_events DESC
+        """, nativeQuery = true)
+    List<Object[]> getComponentFingerprintAnalysis(@Param("since") LocalDateTime since);
+
+    /**
+     * Find events that share a stack trace fingerprint
+     */
+    List<SystemEventEntity> findByStackTraceFingerprintIdOrderByCreatedAtDesc(Long stackTraceFingerprintId,
+                                                                             Pageable pageable);
+
     /**
      * Get host performance summary
      */
@@ -204,7 +286,7 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
         SELECT environment,
                COUNT(*) as total_events,
                COUNT(CASE WHEN severity IN ('CRITICAL', 'HIGH') THEN 1 END) as critical_events,
-               COUNT(CASE WHEN stack_trace IS NOT NULL THEN 1 END) as error_events,
+               COUNT(CASE WHEN stack_trace IS NOT NULL OR stack_trace_fingerprint_id IS NOT NULL THEN 1 END) as error_events,
                COUNT(DISTINCT service_id) as services_count,
                COUNT(DISTINCT host_id) as hosts_count,
                ROUND(
@@ -223,7 +305,7 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
      */
     @Query(value = """
         SELECT * FROM system_events
-        WHERE stack_trace IS NOT NULL
+        WHERE (stack_trace IS NOT NULL OR stack_trace_fingerprint_id IS NOT NULL)
         AND created_at >= :since
         ORDER BY created_at DESC
         LIMIT :limit
@@ -236,6 +318,58 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
     @Query("SELECT s FROM SystemEventEntity s WHERE s.message LIKE %:pattern% ORDER BY s.createdAt DESC")
     List<SystemEventEntity> findByMessageContaining(@Param("pattern") String pattern);
 
+    /**
+     * Full-text search over message, component and stack trace, ordered by relevance.
+     * Requires the ft_system_events_text FULLTEXT index.
+     */
+    @Query(value = """
+        SELECT id,
+               MATCH(message, component, stack_trace) AGAINST (:query IN NATURAL LANGUAGE MODE) AS relevance
+        FROM system_events
+        WHERE MATCH(message, component, stack_trace) AGAINST (:query IN NATURAL LANGUAGE MODE)
+        ORDER BY relevance DESC, id DESC
+        LIMIT :limit OFFSET :offset
+        """, nativeQuery = true)
+    List<Object[]> searchNaturalLanguage(@Param("query") String query, @Param("limit") int limit, @Param("offset") int offset);
+
+    /**
+     * Count full-text natural language matches
+     */
+    @Query(value = """
+        SELECT COUNT(*) FROM system_events
+        WHERE MATCH(message, component, stack_trace) AGAINST (:query IN NATURAL LANGUAGE MODE)
+        """, nativeQuery = true)
+    long countNaturalLanguage(@Param("query") String query);
+
+    /**
+     * Full-text search with boolean operators (+required -excluded "phrase" prefix*), ordered by relevance
+     */
+    @Query(value = """
+        SELECT id,
+               MATCH(message, component, stack_trace) AGAINST (:query IN BOOLEAN MODE) AS relevance
+        FROM system_events
+        WHERE MATCH(message, component, stack_trace) AGAINST (:query IN BOOLEAN MODE)
+        ORDER BY relevance DESC, id DESC
+        LIMIT :limit OFFSET :offset
+        """, nativeQuery = true)
+    List<Object[]> searchBoolean(@Param("query") String query, @Param("limit") int limit, @Param("offset") int offset);
+
+    /**
+     * Count full-text boolean mode matches
+     */
+    @Query(value = """
+        SELECT COUNT(*) FROM system_events
+        WHERE MATCH(message, component, stack_trace) AGAINST (:query IN BOOLEAN MODE)
+        """, nativeQuery = true)
+    long countBoolean(@Param("query") String query);
+
+    /**
+     * Find events by message pattern with pagination (fallback when no FULLTEXT index exists)
+     */
+    @Query("SELECT s FROM SystemEventEntity s WHERE s.message LIKE %:pattern% ORDER BY s.createdAt DESC")
+    Page<SystemEventEntity> findByMessageContaining(@Param("pattern") String pattern,
+                                                    Pageable pageable);
+
     /**
      * Get alert summary for monitoring dashboards
      */
@@ -249,7 +383,7 @@ public interface SystemEventRepository extends JpaRepository<SystemEventEntity,
             COUNT(CASE WHEN severity = 'INFO' THEN 1 END) as info_count,
             COUNT(DISTINCT service_id) as affected_services,
             COUNT(DISTINCT host_id) as affected_hosts,
-            COUNT(CASE WHEN stack_trace IS NOT NULL THEN 1 END) as error_count
+            COUNT(CASE WHEN stack_trace IS NOT NULL OR stack_trace_fingerprint_id IS NOT NULL THEN 1 END) as error_count
         FROM system_events
         WHERE created_at >= :since
         """, nativeQuery = true)
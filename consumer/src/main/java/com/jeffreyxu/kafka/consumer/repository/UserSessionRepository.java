@@ -0,0 +1,80 @@
+package com.jeffreyxu.kafka.consumer.repository;
+
+import com.jeffreyxu.kafka.consumer.entity.UserSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for UserSession entities.
+ * Provides data access methods for session analytics.
+ */
+@Repository
+public interface UserSessionRepository extends JpaRepository<UserSession, Long> {
+
+    /**
+     * Find the windows of a session id, most recent first
+     */
+    List<UserSession> findBySessionIdOrderByStartedAtDesc(String sessionId);
+
+    /**
+     * Find a user's sessions, most recent first
+     */
+    List<UserSession> findByUserIdOrderByStartedAtDesc(String userId, Pageable pageable);
+
+    /**
+     * Find sessions started since a point in time, most recent first
+     */
+    List<UserSession> findByStartedAtAfterOrderByStartedAtDesc(LocalDateTime since, Pageable pageable);
+
+    /**
+     * Get session summary
+     */
+    @Query(value = """
+        SELECT COUNT(*) as total_sessions,
+               COUNT(DISTINCT user_id) as unique_users,
+               AVG(duration_ms) as avg_duration_ms,
+               MAX(duration_ms) as max_duration_ms,
+               AVG(event_count) as avg_events,
+               AVG(page_views) as avg_page_views,
+               SUM(purchases) as total_purchases,
+               COUNT(CASE WHEN purchases > 0 THEN 1 END) / COUNT(*) as conversion_rate,
+               COUNT(CASE WHEN event_count = 1 THEN 1 END) / COUNT(*) as bounce_rate
+        FROM user_sessions
+        WHERE started_at >= :since
+        """, nativeQuery = true)
+    List<Object[]> getSessionSummary(@Param("since") LocalDateTime since);
+
+    /**
+     * Get session counts by close reason
+     */
+    @Query(value = """
+        SELECT close_reason, COUNT(*) as count, AVG(duration_ms) as avg_duration_ms
+        FROM user_sessions
+        WHERE started_at >= :since
+        GROUP BY close_reason
+        ORDER BY count DESC
+        """, nativeQuery = true)
+    List<Object[]> getCloseReasonDistribution(@Param("since") LocalDateTime since);
+
+    /**
+     * Get session metrics by device type
+     */
+    @Query(value = """
+        SELECT device_type,
+               COUNT(*) as sessions,
+               AVG(duration_ms) as avg_duration_ms,
+               AVG(page_views) as avg_page_views,
+               SUM(purchases) as purchases
+        FROM user_sessions
+        WHERE started_at >= :since
+        GROUP BY device_type
+        ORDER BY sessions DESC
+        """, nativeQuery = true)
+    List<Object[]> getDeviceSessionMetrics(@Param("since") LocalDateTime since);
+}
@@ -0,0 +1,140 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.consumer.repository.BusinessEventRepository;
+import com.jeffreyxu.kafka.consumer.repository.SystemEventRepository;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Analytics queries with COUNT(DISTINCT ...) replaced by HyperLogLog estimates.
+ *
+ * The SQL keeps the plain aggregates; distinct counts come from the hourly sketches kept
+ * by {@link DistinctCountService}. Rows have the same column order as the exact queries
+ * so callers can switch between them. Windows are widened to the start of the hour that
+ * contains {@code since}.
+ */
+@Service
+@RequiredArgsConstructor
+public class ApproximateAnalyticsService {
+
+    private final BusinessEventRepository businessEventRepository;
+    private final SystemEventRepository systemEventRepository;
+    private final DistinctCountService distinctCountService;
+
+    /**
+     * Same columns as {@link BusinessEventRepository#getCustomerTransactionSummary}
+     */
+    public List<Object[]> getCustomerTransactionSummary(LocalDateTime since, int limit) {
+        List<Object[]> totals = businessEventRepository.getCustomerTransactionTotals(since, limit);
+
+        // Only the top customers need their sketches read
+        List<String> customers = totals.stream()
+            .map(row -> DistinctCountService.dimension((String) row[0]))
+            .collect(Collectors.toList());
+        Map<String, Long> orders = distinctCountService.estimateByDimension(
+            DistinctCountService.CUSTOMER_ORDERS, customers, since);
+        Map<String, Long> paymentMethods = distinctCountService.estimateByDimension(
+            DistinctCountService.CUSTOMER_PAYMENT_METHODS, customers, since);
+
+        List<Object[]> summary = new ArrayList<>();
+        for (Object[] row : totals) {
+            String customer = DistinctCountService.dimension((String) row[0]);
+            summary.add(new Object[] {
+                row[0], row[1], orders.getOrDefault(customer, 0L), row[2], row[3], row[4], row[5],
+                paymentMethods.getOrDefault(customer, 0L), row[6], row[7]
+            });
+        }
+        return summary;
+    }
+
+    /**
+     * Same columns as {@link BusinessEventRepository#getDailyRevenueSummary}
+     */
+    public List<Object[]> getDailyRevenueSummary(LocalDateTime since) {
+        Map<LocalDate, Long> customers = distinctCountService.estimateByDay(DistinctCountService.BUSINESS_CUSTOMERS, since);
+        Map<LocalDate, Long> orders = distinctCountService.estimateByDay(DistinctCountService.BUSINESS_ORDERS, since);
+
+        List<Object[]> summary = new ArrayList<>();
+        for (Object[] row : businessEventRepository.getDailyRevenueTotals(since)) {
+            LocalDate day = toLocalDate(row[0]);
+            summary.add(new Object[] {
+                row[0], row[1], row[2], customers.getOrDefault(day, 0L), orders.getOrDefault(day, 0L)
+            });
+        }
+        return summary;
+    }
+
+    /**
+     * Same columns as {@link SystemEventRepository#getServiceHealthSummary}
+     */
+    public List<Object[]> getServiceHealthSummary(LocalDateTime since) {
+        Map<String, Long> components = distinctCountService.estimateByDimension(
+            DistinctCountService.SERVICE_COMPONENTS, null, since);
+        Map<String, Long> hosts = distinctCountService.estimateByDimension(
+            DistinctCountService.SERVICE_HOSTS, null, since);
+
+        List<Object[]> summary = new ArrayList<>();
+        for (Object[] row : systemEventRepository.getServiceHealthCounts(since)) {
+            String service = DistinctCountService.dimension((String) row[0]);
+            summary.add(new Object[] {
+                row[0], row[1], row[2], row[3], row[4], row[5],
+                components.getOrDefault(service, 0L), hosts.getOrDefault(service, 0L), row[6], row[7]
+            });
+        }
+        return summary;
+    }
+
+    /**
+     * Same columns as {@link SystemEventRepository#getSeverityDistribution}
+     */
+    public List<Object[]> getSeverityDistribution(LocalDateTime since) {
+        Map<String, Long> services = distinctCountService.estimateByDimension(
+            DistinctCountService.SEVERITY_SERVICES, null, since);
+        Map<String, Long> components = distinctCountService.estimateByDimension(
+            DistinctCountService.SEVERITY_COMPONENTS, null, since);
+
+        List<Object[]> distribution = new ArrayList<>();
+        for (Object[] row : systemEventRepository.getSeverityCounts(since)) {
+            String severity = DistinctCountService.dimension((String) row[0]);
+            distribution.add(new Object[] {
+                row[0], row[1], services.getOrDefault(severity, 0L), components.getOrDefault(severity, 0L)
+            });
+        }
+        return distribution;
+    }
+
+    /**
+     * Describes the error bound of the approximate columns
+     */
+    public Map<String, Object> describeApproximation() {
+        double standardError = distinctCountService.getStandardError();
+        Map<String, Object> approximation = new LinkedHashMap<>();
+        approximation.put("method", "HyperLogLog");
+        approximation.put("precision", distinctCountService.getPrecision());
+        approximation.put("relativeStandardError", standardError);
+        approximation.put("relativeErrorBound95", 2 * standardError);
+        approximation.put("bucketGranularity", "PT1H");
+        return approximation;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof Date date) {
+            return date.toLocalDate();
+        }
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        return LocalDate.parse(value.toString());
+    }
+}
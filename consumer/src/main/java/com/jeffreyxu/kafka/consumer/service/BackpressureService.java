@@ -0,0 +1,255 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.consumer.listener.EventListener;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Pauses the listener containers while the database is saturated.
+ *
+ * Saturation is read from HikariCP (threads waiting for a connection) and from the persist
+ * latency EWMA. The latency threshold is the lower of the configured one and the per-record
+ * budget that keeps a full poll batch within {@code safety-factor} of max.poll.interval.ms,
+ * so containers are paused before a slow batch can push the consumer out of the group. The
+ * budget follows the largest max.poll.records of the paused containers and is recomputed
+ * whenever a performance profile changes it.
+ * Paused containers keep polling (and heartbeating) without fetching records.
+ *
+ * Resuming needs the waiting threads to drop to {@code resume-pending-threads} and at least
+ * {@code min-pause} to have passed; each pause that follows shortly after a resume doubles
+ * that wait, up to {@code max-pause}. The latency EWMA only refreshes while records flow, so
+ * after a resume it is ignored until {@code resume-samples} new samples have replaced the
+ * stale value. The priority lane is not paused by default, so critical alerts keep flowing.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BackpressureService {
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final ConsumerFactory<Object, Object> consumerFactory;
+    private final DataSource dataSource;
+    private final StatsService statsService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.backpressure.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.backpressure.listener-ids:" + EventListener.USER_EVENTS_LISTENER + ","
+        + EventListener.BUSINESS_EVENTS_LISTENER + "," + EventListener.SYSTEM_EVENTS_LISTENER + "}")
+    private List<String> listenerIds;
+
+    @Value("${app.backpressure.pause-pending-threads:3}")
+    private int pausePendingThreads;
+
+    @Value("${app.backpressure.resume-pending-threads:0}")
+    private int resumePendingThreads;
+
+    @Value("${app.backpressure.pause-latency:250ms}")
+    private Duration pauseLatency;
+
+    @Value("${app.backpressure.safety-factor:0.5}")
+    private double safetyFactor;
+
+    @Value("${app.backpressure.min-pause:5s}")
+    private Duration minPause;
+
+    @Value("${app.backpressure.max-pause:2m}")
+    private Duration maxPause;
+
+    @Value("${app.backpressure.resume-samples:20}")
+    private long resumeSamples;
+
+    private HikariPoolMXBean pool;
+    private volatile double pauseLatencyMs;
+
+    private volatile boolean paused = false;
+    private volatile String pauseReason;
+    private long pausedAtNanos;
+    private long resumedAtNanos;
+    private long samplesAtResume;
+    private Duration currentMinPause;
+    private Counter pauses;
+
+    @PostConstruct
+    public void init() {
+        pool = hikariPool();
+        currentMinPause = minPause;
+
+        updatePauseLatency();
+
+        Gauge.builder("kafka.consumer.backpressure.paused", this, service -> service.paused ? 1 : 0)
+            .description("1 while listener containers are paused for database backpressure")
+            .register(meterRegistry);
+        pauses = Counter.builder("kafka.consumer.backpressure.pauses")
+            .description("Times listener containers were paused for database backpressure")
+            .register(meterRegistry);
+    }
+
+    private HikariPoolMXBean hikariPool() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            }
+        } catch (SQLException e) {
+            log.warn("Cannot inspect the connection pool: {}", e.getMessage());
+        }
+        log.info("DataSource is not HikariCP; backpressure uses persist latency only");
+        return null;
+    }
+
+    /**
+     * Recompute the latency threshold from the poll settings the containers currently use
+     */
+    public void updatePauseLatency() {
+        Map<String, Object> config = consumerFactory.getConfigurationProperties();
+        long maxPollIntervalMs = longConfig(config.get(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG), 300_000);
+        long maxPollRecords = longConfig(config.get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG), 500);
+        // Container overrides (from a performance profile) win over the factory defaults
+        long largestPollRecords = 0;
+        long smallestPollIntervalMs = Long.MAX_VALUE;
+        for (String id : listenerIds) {
+            MessageListenerContainer container = registry.getListenerContainer(id);
+            Properties overrides = container != null ? container.getContainerProperties().getKafkaConsumerProperties() : null;
+            largestPollRecords = Math.max(largestPollRecords,
+                longConfig(overrides != null ? overrides.get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG) : null, maxPollRecords));
+            smallestPollIntervalMs = Math.min(smallestPollIntervalMs,
+                longConfig(overrides != null ? overrides.get(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG) : null, maxPollIntervalMs));
+        }
+        if (largestPollRecords == 0) {
+            largestPollRecords = maxPollRecords;
+            smallestPollIntervalMs = maxPollIntervalMs;
+        }
+        double pollBudgetMs = smallestPollIntervalMs * safetyFactor / largestPollRecords;
+        pauseLatencyMs = Math.min(pauseLatency.toMillis(), pollBudgetMs);
+        log.debug("Backpressure latency threshold {}ms for max.poll.records {}", pauseLatencyMs, largestPollRecords);
+    }
+
+    private static long longConfig(Object value, long defaultValue) {
+        return value == null ? defaultValue : Long.parseLong(value.toString());
+    }
+
+    /**
+     * Evaluate database pressure and pause or resume the containers
+     */
+    @Scheduled(fixedDelayString = "${app.backpressure.check-interval-ms:1000}")
+    public void evaluate() {
+        if (!enabled) {
+            return;
+        }
+
+        int pending = pendingThreads();
+        double latencyMs = statsService.getPersistLatencyEwma();
+        long now = System.nanoTime();
+
+        if (!paused) {
+            boolean latencyTrusted = resumedAtNanos == 0
+                || statsService.getPersistLatencySamples() - samplesAtResume >= resumeSamples;
+            if (pending >= pausePendingThreads) {
+                pause(now, pending + " threads waiting for a database connection");
+            } else if (latencyTrusted && latencyMs >= pauseLatencyMs) {
+                pause(now, String.format("persist latency %.1fms over %.1fms", latencyMs, pauseLatencyMs));
+            }
+        } else if (now - pausedAtNanos >= currentMinPause.toNanos() && pending <= resumePendingThreads) {
+            resume(now);
+        }
+    }
+
+    private void pause(long now, String reason) {
+        // A relapse soon after resuming means the database has not recovered; back off longer
+        if (resumedAtNanos != 0 && now - resumedAtNanos < currentMinPause.toNanos() * 2) {
+            currentMinPause = currentMinPause.multipliedBy(2).compareTo(maxPause) > 0
+                ? maxPause : currentMinPause.multipliedBy(2);
+        } else {
+            currentMinPause = minPause;
+        }
+
+        forEachContainer(MessageListenerContainer::pause);
+        paused = true;
+        pauseReason = reason;
+        pausedAtNanos = now;
+        pauses.increment();
+        log.warn("Pausing listeners {} for at least {}: {}", listenerIds, currentMinPause, reason);
+    }
+
+    private void resume(long now) {
+        forEachContainer(MessageListenerContainer::resume);
+        paused = false;
+        pauseReason = null;
+        resumedAtNanos = now;
+        samplesAtResume = statsService.getPersistLatencySamples();
+        log.info("Resuming listeners {} after {}ms", listenerIds, Duration.ofNanos(now - pausedAtNanos).toMillis());
+    }
+
+    private void forEachContainer(Consumer<MessageListenerContainer> action) {
+        for (String id : listenerIds) {
+            MessageListenerContainer container = registry.getListenerContainer(id);
+            if (container != null && container.isRunning()) {
+                action.accept(container);
+            }
+        }
+    }
+
+    private int pendingThreads() {
+        return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+    }
+
+    /**
+     * Current backpressure state for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("paused", paused);
+        status.put("reason", pauseReason);
+        status.put("pendingThreads", pendingThreads());
+        status.put("activeConnections", pool != null ? pool.getActiveConnections() : null);
+        status.put("persistLatencyEwmaMs", statsService.getPersistLatencyEwma());
+        status.put("pauseLatencyMs", pauseLatencyMs);
+        status.put("currentMinPause", currentMinPause.toString());
+
+        List<Map<String, Object>> containers = new ArrayList<>();
+        for (String id : listenerIds) {
+            MessageListenerContainer container = registry.getListenerContainer(id);
+            if (container != null) {
+                Map<String, Object> state = new LinkedHashMap<>();
+                state.put("id", id);
+                state.put("running", container.isRunning());
+                state.put("pauseRequested", container.isPauseRequested());
+                state.put("paused", container.isContainerPaused());
+                containers.add(state);
+            }
+        }
+        status.put("containers", containers);
+        return status;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+}
@@ -0,0 +1,304 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsOptions;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.IsolationLevel;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Collects committed-offset lag of the consumer groups through the admin client.
+ *
+ * Every collection reads committed offsets and log end offsets, exports per-partition
+ * lag, total lag per group and an estimated time to drain. Time to drain divides the lag
+ * by the net rate at which it shrinks (consume rate minus produce rate, from the offset
+ * deltas between collections). When consumers merely keep pace, the lag is divided by the
+ * consume rate instead, which is how long the records already waiting take to process; only
+ * a lag that grows, or one that nothing consumes, reports {@code max-time-to-drain}. Lag up
+ * to {@code in-flight-records} is records between poll and commit and reports zero. Every
+ * replica reports the same group-level values, so consumers of the metric should aggregate
+ * them with max, not sum.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConsumerLagService {
+
+    private final ObjectProvider<KafkaAdmin> kafkaAdmin;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.lag.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.lag.groups:user-events-consumer-group,business-events-consumer-group,system-events-consumer-group,system-events-priority-consumer-group}")
+    private List<String> groups;
+
+    @Value("${app.lag.request-timeout:5s}")
+    private Duration requestTimeout;
+
+    @Value("${app.lag.max-time-to-drain:1h}")
+    private Duration maxTimeToDrain;
+
+    @Value("${app.lag.in-flight-records:1000}")
+    private long inFlightRecords;
+
+    private volatile AdminClient adminClient;
+
+    private final Map<String, Integer> partitionCounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> partitionLag = new ConcurrentHashMap<>();
+    private final Map<String, GroupLag> groupLag = new ConcurrentHashMap<>();
+
+    /**
+     * Collect lag for all configured groups
+     */
+    @Scheduled(fixedDelayString = "${app.lag.interval-ms:15000}", initialDelayString = "${app.lag.initial-delay-ms:10000}")
+    public void collect() {
+        if (!enabled) {
+            return;
+        }
+        AdminClient admin = adminClient();
+        if (admin == null) {
+            return;
+        }
+
+        for (String group : groups) {
+            try {
+                collectGroup(admin, group);
+            } catch (Exception e) {
+                log.warn("Failed to collect lag for group {}: {}", group, e.getMessage());
+            }
+        }
+        // Re-read partition counts after each collection in case topics were expanded
+        partitionCounts.clear();
+    }
+
+    private void collectGroup(AdminClient admin, String group) throws Exception {
+        long timeoutMs = requestTimeout.toMillis();
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(group)
+            .partitionsToOffsetAndMetadata().get(timeoutMs, TimeUnit.MILLISECONDS);
+        if (committed.isEmpty()) {
+            return;
+        }
+
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        committed.keySet().forEach(partition -> request.put(partition, OffsetSpec.latest()));
+        // Last stable offset: consumers read_committed, so open transactions are not lag yet
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets = admin
+            .listOffsets(request, new ListOffsetsOptions(IsolationLevel.READ_COMMITTED))
+            .all().get(timeoutMs, TimeUnit.MILLISECONDS);
+
+        long totalLag = 0;
+        long totalCommitted = 0;
+        long totalEnd = 0;
+        Map<String, Long> partitions = new TreeMap<>();
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+            ListOffsetsResult.ListOffsetsResultInfo end = endOffsets.get(entry.getKey());
+            if (end == null || entry.getValue() == null) {
+                continue;
+            }
+            long lag = Math.max(0, end.offset() - entry.getValue().offset());
+            totalLag += lag;
+            totalCommitted += entry.getValue().offset();
+            totalEnd += end.offset();
+
+            TopicPartition partition = entry.getKey();
+            partitions.put(partition.toString(), lag);
+            partitionLag.computeIfAbsent(group + '|' + partition, key -> registerPartitionGauge(group, partition))
+                .set(lag);
+        }
+
+        groupLag.computeIfAbsent(group, this::registerGroupGauges)
+            .update(totalLag, totalCommitted, totalEnd, partitions, System.nanoTime(), maxTimeToDrain, inFlightRecords);
+    }
+
+    private AtomicLong registerPartitionGauge(String group, TopicPartition partition) {
+        AtomicLong lag = new AtomicLong();
+        Gauge.builder("kafka.consumer.lag", lag, AtomicLong::get)
+            .description("Records between the committed offset and the log end offset")
+            .tag("group", group)
+            .tag("topic", partition.topic())
+            .tag("partition", String.valueOf(partition.partition()))
+            .register(meterRegistry);
+        return lag;
+    }
+
+    private GroupLag registerGroupGauges(String group) {
+        GroupLag lag = new GroupLag();
+        Gauge.builder("kafka.consumer.lag.total", lag, GroupLag::getTotalLag)
+            .description("Total committed-offset lag of the consumer group")
+            .tag("group", group)
+            .register(meterRegistry);
+        Gauge.builder("kafka.consumer.lag.time.to.drain", lag, GroupLag::getTimeToDrainSeconds)
+            .description("Estimated seconds until the group's lag reaches zero at the current rates")
+            .tag("group", group)
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        Gauge.builder("kafka.consumer.consume.rate", lag, GroupLag::getConsumeRate)
+            .description("Committed records per second across the group's partitions")
+            .tag("group", group)
+            .register(meterRegistry);
+        return lag;
+    }
+
+    private AdminClient adminClient() {
+        if (adminClient == null) {
+            synchronized (this) {
+                KafkaAdmin admin = kafkaAdmin.getIfAvailable();
+                if (adminClient == null && admin != null) {
+                    adminClient = AdminClient.create(admin.getConfigurationProperties());
+                }
+            }
+        }
+        return adminClient;
+    }
+
+    /**
+     * Number of partitions of a topic, or null if the cluster cannot be reached
+     */
+    public Integer partitionCount(String topic) {
+        Integer cached = partitionCounts.get(topic);
+        if (cached != null) {
+            return cached;
+        }
+        AdminClient admin = adminClient();
+        if (admin == null) {
+            return null;
+        }
+        try {
+            TopicDescription description = admin.describeTopics(List.of(topic)).allTopicNames()
+                .get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS).get(topic);
+            int count = description.partitions().size();
+            partitionCounts.put(topic, count);
+            return count;
+        } catch (Exception e) {
+            log.warn("Failed to describe topic {}: {}", topic, e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (adminClient != null) {
+            adminClient.close(Duration.ofSeconds(5));
+        }
+    }
+
+    /**
+     * Latest lag of every collected group
+     */
+    public Map<String, Object> getLagReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        Map<String, Object> groupReports = new TreeMap<>();
+        groupLag.forEach((group, lag) -> groupReports.put(group, lag.toReport()));
+        report.put("groups", groupReports);
+        return report;
+    }
+
+    /**
+     * Latest lag of one group, or null if it has not been collected
+     */
+    public Map<String, Object> getGroupLag(String group) {
+        GroupLag lag = groupLag.get(group);
+        return lag != null ? lag.toReport() : null;
+    }
+
+    /**
+     * Lag of one group and the rates derived from consecutive collections
+     */
+    private static final class GroupLag {
+        private volatile long totalLag;
+        private volatile double consumeRate;
+        private volatile double produceRate;
+        private volatile double timeToDrainSeconds;
+        private volatile long collectedAtMillis;
+        private final AtomicReference<Map<String, Long>> partitions = new AtomicReference<>(Map.of());
+
+        private long previousCommitted = -1;
+        private long previousEnd = -1;
+        private long previousLag = -1;
+        private long previousNanos;
+
+        synchronized void update(long lag, long committed, long end, Map<String, Long> partitionLags,
+                                 long nowNanos, Duration maxTimeToDrain, long inFlightRecords) {
+            if (previousCommitted >= 0) {
+                double seconds = (nowNanos - previousNanos) / 1e9;
+                if (seconds > 0) {
+                    // Partition reassignments can move offsets backwards; treat that as no progress
+                    consumeRate = Math.max(0, committed - previousCommitted) / seconds;
+                    produceRate = Math.max(0, end - previousEnd) / seconds;
+                }
+            }
+            boolean growing = previousLag >= 0 && lag > previousLag;
+            previousCommitted = committed;
+            previousEnd = end;
+            previousLag = lag;
+            previousNanos = nowNanos;
+
+            double drainRate = consumeRate - produceRate;
+            double maxSeconds = maxTimeToDrain.toSeconds();
+            if (lag <= inFlightRecords) {
+                timeToDrainSeconds = 0;
+            } else if (drainRate > 0) {
+                timeToDrainSeconds = Math.min(maxSeconds, lag / drainRate);
+            } else if (!growing && consumeRate > 0) {
+                // Keeping pace: the backlog is steady and takes this long to work through
+                timeToDrainSeconds = Math.min(maxSeconds, lag / consumeRate);
+            } else {
+                timeToDrainSeconds = maxSeconds;
+            }
+
+            totalLag = lag;
+            partitions.set(partitionLags);
+            collectedAtMillis = System.currentTimeMillis();
+        }
+
+        long getTotalLag() {
+            return totalLag;
+        }
+
+        double getTimeToDrainSeconds() {
+            return timeToDrainSeconds;
+        }
+
+        double getConsumeRate() {
+            return consumeRate;
+        }
+
+        Map<String, Object> toReport() {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("totalLag", totalLag);
+            report.put("consumeRatePerSecond", consumeRate);
+            report.put("produceRatePerSecond", produceRate);
+            report.put("timeToDrainSeconds", timeToDrainSeconds);
+            report.put("collectedAt", collectedAtMillis);
+            report.put("partitions", partitions.get());
+            return report;
+        }
+    }
+}
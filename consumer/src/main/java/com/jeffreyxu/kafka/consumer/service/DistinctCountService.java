@@ -0,0 +1,252 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.common.model.BusinessEvent;
+import com.jeffreyxu.kafka.common.model.SystemEvent;
+import com.jeffreyxu.kafka.consumer.analytics.HyperLogLog;
+import com.jeffreyxu.kafka.consumer.entity.DistinctCountSketch;
+import com.jeffreyxu.kafka.consumer.repository.DistinctCountSketchRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Maintains hourly HyperLogLog sketches of distinct values per metric and dimension.
+ *
+ * Events update in-memory sketches; a scheduled flush merges them into
+ * distinct_count_sketches under a row lock. Because sketch union is idempotent, a sketch
+ * that is merged twice after a failed flush does not inflate the counts, and every
+ * consumer instance can merge into the same rows.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DistinctCountService {
+
+    public static final String BUSINESS_CUSTOMERS = "business.customers";
+    public static final String BUSINESS_ORDERS = "business.orders";
+    public static final String CUSTOMER_ORDERS = "business.customer.orders";
+    public static final String CUSTOMER_PAYMENT_METHODS = "business.customer.payment_methods";
+    public static final String SERVICE_COMPONENTS = "system.service.components";
+    public static final String SERVICE_HOSTS = "system.service.hosts";
+    public static final String SEVERITY_SERVICES = "system.severity.services";
+    public static final String SEVERITY_COMPONENTS = "system.severity.components";
+
+    /**
+     * Dimension value for metrics that are not broken down further
+     */
+    public static final String ALL = "*";
+
+    private final DistinctCountSketchRepository sketchRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.analytics.sketches.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.analytics.sketches.precision:14}")
+    private int precision;
+
+    private final Map<SketchKey, HyperLogLog> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Record the distinct-count dimensions of a business event
+     */
+    public void recordBusinessEvent(BusinessEvent event) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime bucket = bucketOf(event.getTimestamp());
+        String customer = dimension(event.getCustomerId());
+        record(BUSINESS_CUSTOMERS, ALL, bucket, event.getCustomerId());
+        record(BUSINESS_ORDERS, ALL, bucket, event.getOrderId());
+        record(CUSTOMER_ORDERS, customer, bucket, event.getOrderId());
+        record(CUSTOMER_PAYMENT_METHODS, customer, bucket, event.getPaymentMethod());
+    }
+
+    /**
+     * Record the distinct-count dimensions of a system event
+     */
+    public void recordSystemEvent(SystemEvent event) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime bucket = bucketOf(event.getTimestamp());
+        String service = dimension(event.getServiceId());
+        String severity = dimension(event.getSeverity());
+        record(SERVICE_COMPONENTS, service, bucket, event.getComponent());
+        record(SERVICE_HOSTS, service, bucket, event.getHostId());
+        record(SEVERITY_SERVICES, severity, bucket, event.getServiceId());
+        record(SEVERITY_COMPONENTS, severity, bucket, event.getComponent());
+    }
+
+    private void record(String metric, String dimension, LocalDateTime bucket, String value) {
+        if (value == null) {
+            // Matches COUNT(DISTINCT ...), which ignores NULLs
+            return;
+        }
+        // compute() holds the bin lock, so an add never races with the flush removing the sketch
+        pending.compute(new SketchKey(metric, dimension, bucket), (key, sketch) -> {
+            HyperLogLog target = sketch != null ? sketch : new HyperLogLog(precision);
+            target.add(value);
+            return target;
+        });
+    }
+
+    /**
+     * Merge in-memory sketches into the database
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.sketches.flush-interval-ms:30000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Drain in key order so concurrent flushes from other instances lock rows in the same order
+        Map<SketchKey, HyperLogLog> drained = new TreeMap<>(SketchKey.ORDER);
+        for (SketchKey key : new ArrayList<>(pending.keySet())) {
+            HyperLogLog sketch = pending.remove(key);
+            if (sketch != null) {
+                drained.put(key, sketch);
+            }
+        }
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                drained.forEach(this::mergeIntoDatabase));
+            log.debug("Flushed {} distinct-count sketches", drained.size());
+        } catch (Exception e) {
+            log.warn("Failed to flush distinct-count sketches, retrying next cycle: {}", e.getMessage());
+            drained.forEach((key, sketch) -> pending.merge(key, sketch, (current, failed) -> {
+                current.merge(failed);
+                return current;
+            }));
+        }
+    }
+
+    private void mergeIntoDatabase(SketchKey key, HyperLogLog sketch) {
+        DistinctCountSketch row = sketchRepository.findForUpdate(key.metric(), key.dimension(), key.bucketStart())
+            .orElseGet(() -> {
+                DistinctCountSketch created = new DistinctCountSketch();
+                created.setMetric(key.metric());
+                created.setDimension(key.dimension());
+                created.setBucketStart(key.bucketStart());
+                return created;
+            });
+
+        if (row.getSketch() != null) {
+            sketch.merge(HyperLogLog.fromBytes(row.getSketch()));
+        }
+        row.setSketch(sketch.toBytes());
+        row.setUpdatedAt(LocalDateTime.now());
+        sketchRepository.save(row);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    /**
+     * Estimated distinct values per dimension since a point in time
+     *
+     * @param dimensions dimension values to estimate, or null for all
+     */
+    public Map<String, Long> estimateByDimension(String metric, Collection<String> dimensions, LocalDateTime since) {
+        return estimate(metric, dimensions, since, SketchKey::dimension);
+    }
+
+    /**
+     * Estimated distinct values per day since a point in time, for an undimensioned metric
+     */
+    public Map<LocalDate, Long> estimateByDay(String metric, LocalDateTime since) {
+        return estimate(metric, List.of(ALL), since, key -> key.bucketStart().toLocalDate());
+    }
+
+    private <K> Map<K, Long> estimate(String metric, Collection<String> dimensions, LocalDateTime since,
+                                      Function<SketchKey, K> groupBy) {
+        LocalDateTime fromBucket = bucketOf(since);
+        Map<K, HyperLogLog> merged = new HashMap<>();
+
+        List<DistinctCountSketch> rows = dimensions == null
+            ? sketchRepository.findByMetricAndBucketStartGreaterThanEqual(metric, fromBucket)
+            : sketchRepository.findByMetricAndDimensionInAndBucketStartGreaterThanEqual(metric, dimensions, fromBucket);
+        for (DistinctCountSketch row : rows) {
+            SketchKey key = new SketchKey(row.getMetric(), row.getDimension(), row.getBucketStart());
+            mergeInto(merged, groupBy.apply(key), HyperLogLog.fromBytes(row.getSketch()));
+        }
+
+        // Include what this instance has not flushed yet
+        for (SketchKey key : new ArrayList<>(pending.keySet())) {
+            if (!key.metric().equals(metric) || key.bucketStart().isBefore(fromBucket)
+                    || (dimensions != null && !dimensions.contains(key.dimension()))) {
+                continue;
+            }
+            pending.computeIfPresent(key, (k, sketch) -> {
+                mergeInto(merged, groupBy.apply(k), sketch);
+                return sketch;
+            });
+        }
+
+        Map<K, Long> estimates = new HashMap<>();
+        merged.forEach((group, sketch) -> estimates.put(group, sketch.estimate()));
+        return estimates;
+    }
+
+    private <K> void mergeInto(Map<K, HyperLogLog> merged, K group, HyperLogLog sketch) {
+        merged.computeIfAbsent(group, g -> new HyperLogLog(precision)).merge(sketch);
+    }
+
+    /**
+     * Dimension key used for a possibly-null grouping value
+     */
+    public static String dimension(String value) {
+        return value != null ? value : "";
+    }
+
+    private static LocalDateTime bucketOf(LocalDateTime time) {
+        return (time != null ? time : LocalDateTime.now()).truncatedTo(ChronoUnit.HOURS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Relative standard error of the configured sketches
+     */
+    public double getStandardError() {
+        return HyperLogLog.standardError(precision);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    private record SketchKey(String metric, String dimension, LocalDateTime bucketStart) {
+
+        static final Comparator<SketchKey> ORDER = Comparator.comparing(SketchKey::metric)
+            .thenComparing(SketchKey::dimension)
+            .thenComparing(SketchKey::bucketStart);
+    }
+}
@@ -0,0 +1,181 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.consumer.entity.BusinessEventEntity;
+import com.jeffreyxu.kafka.consumer.entity.ProcessedMessage;
+import com.jeffreyxu.kafka.consumer.entity.SystemEventEntity;
+import com.jeffreyxu.kafka.consumer.entity.UserEventEntity;
+import com.jeffreyxu.kafka.consumer.repository.BusinessEventRepository;
+import com.jeffreyxu.kafka.consumer.repository.ProcessedMessageRepository;
+import com.jeffreyxu.kafka.consumer.repository.SystemEventRepository;
+import com.jeffreyxu.kafka.consumer.repository.UserEventRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.hibernate.exception.JDBCConnectionException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.net.ConnectException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes mapped events to MySQL: the processed_messages audit row and the typed event row
+ * in one transaction, either one event at a time or in bulk for spill replay.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EventPersistenceService {
+
+    private final ProcessedMessageRepository processedMessageRepository;
+    private final UserEventRepository userEventRepository;
+    private final BusinessEventRepository businessEventRepository;
+    private final SystemEventRepository systemEventRepository;
+    private final StatsService statsService;
+    private final StackTraceFingerprintService stackTraceFingerprintService;
+
+    /**
+     * Persist one event with its audit row
+     *
+     * @param entity a UserEventEntity, BusinessEventEntity or SystemEventEntity
+     * @param startTime System.currentTimeMillis() when processing of the event started
+     */
+    @Transactional
+    public void persist(String topic, ProcessedMessage processedMessage, Object entity, long startTime) {
+        timeCommit(topic);
+        long stageStart = System.nanoTime();
+
+        processedMessageRepository.save(processedMessage);
+        stageStart = statsService.recordStage(topic, StatsService.STAGE_PERSIST_AUDIT, stageStart);
+        saveEntity(entity);
+        statsService.recordStage(topic, StatsService.STAGE_PERSIST_ENTITY, stageStart);
+        countStackTracesOnCommit(List.of(entity));
+
+        // Update processing time
+        processedMessage.setProcessingTimeMs(System.currentTimeMillis() - startTime);
+        processedMessageRepository.save(processedMessage);
+    }
+
+    /**
+     * Persist many events in one transaction, keeping their order within each table
+     */
+    @Transactional
+    public void persistAll(List<ProcessedMessage> processedMessages, List<Object> entities) {
+        List<UserEventEntity> userEvents = new ArrayList<>();
+        List<BusinessEventEntity> businessEvents = new ArrayList<>();
+        List<SystemEventEntity> systemEvents = new ArrayList<>();
+        for (Object entity : entities) {
+            if (entity instanceof UserEventEntity userEvent) {
+                userEvents.add(userEvent);
+            } else if (entity instanceof BusinessEventEntity businessEvent) {
+                businessEvents.add(businessEvent);
+            } else if (entity instanceof SystemEventEntity systemEvent) {
+                systemEvents.add(systemEvent);
+            } else {
+                throw new IllegalArgumentException("Unsupported entity: " + entity.getClass().getName());
+            }
+        }
+
+        processedMessageRepository.saveAll(processedMessages);
+        userEventRepository.saveAll(userEvents);
+        businessEventRepository.saveAll(businessEvents);
+        systemEventRepository.saveAll(systemEvents);
+        countStackTracesOnCommit(systemEvents);
+    }
+
+    private void saveEntity(Object entity) {
+        if (entity instanceof UserEventEntity userEvent) {
+            userEventRepository.save(userEvent);
+        } else if (entity instanceof BusinessEventEntity businessEvent) {
+            businessEventRepository.save(businessEvent);
+        } else if (entity instanceof SystemEventEntity systemEvent) {
+            systemEventRepository.save(systemEvent);
+        } else {
+            throw new IllegalArgumentException("Unsupported entity: " + entity.getClass().getName());
+        }
+    }
+
+    /**
+     * Whether a failure means the database could not be reached, as opposed to a bad row
+     */
+    public static boolean isDatabaseUnavailable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CannotCreateTransactionException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof QueryTimeoutException
+                    || cause instanceof JDBCConnectionException
+                    || cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count the stack trace occurrences of system events once the current transaction commits,
+     * so that a rolled-back batch that is written again later is only counted then
+     */
+    private void countStackTracesOnCommit(List<?> entities) {
+        List<SystemEventEntity> traced = new ArrayList<>();
+        for (Object entity : entities) {
+            if (entity instanceof SystemEventEntity systemEvent && systemEvent.getStackTraceFingerprintId() != null) {
+                traced.add(systemEvent);
+            }
+        }
+        if (traced.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            countStackTraces(traced);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                countStackTraces(traced);
+            }
+        });
+    }
+
+    private void countStackTraces(List<SystemEventEntity> traced) {
+        for (SystemEventEntity systemEvent : traced) {
+            LocalDateTime seenAt = systemEvent.getCreatedAt() != null ? systemEvent.getCreatedAt() : systemEvent.getProcessedAt();
+            stackTraceFingerprintService.countOccurrence(systemEvent.getStackTraceFingerprintId(),
+                seenAt != null ? seenAt : LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Time the flush and commit of the current transaction as the commit stage
+     */
+    private void timeCommit(String topic) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long commitStart;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitStart = System.nanoTime();
+            }
+
+            @Override
+            public void afterCommit() {
+                statsService.recordStage(topic, StatsService.STAGE_COMMIT, commitStart);
+            }
+        });
+    }
+}
@@ -0,0 +1,190 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end latency and data freshness per topic and partition.
+ *
+ * For every persisted event three intervals are recorded:
+ * producer (event timestamp to Kafka record timestamp, i.e. until the producer sent it),
+ * pipeline (record timestamp to persisted, i.e. broker plus consumer) and their sum,
+ * end-to-end. Event timestamps are zone-less, so they are read in the consumer's default
+ * zone; producer and consumer are expected to share it. Negative intervals from clock
+ * skew are clamped to zero.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FreshnessService {
+
+    private static final String CREATE_TIME = "CREATE_TIME";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.freshness.slo:5s}")
+    private Duration slo;
+
+    @Value("${app.freshness.objective:0.99}")
+    private double objective;
+
+    private final Map<String, PartitionTimers> timers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> newestEventMillis = new ConcurrentHashMap<>();
+
+    /**
+     * Record the latency of an event that has just been persisted
+     *
+     * @param recordTimestamp Kafka record timestamp in epoch millis
+     * @param timestampType Kafka timestamp type; only CREATE_TIME reflects when the producer sent the record
+     */
+    public void recordPersisted(String topic, int partition, LocalDateTime eventTimestamp,
+                                long recordTimestamp, String timestampType) {
+        long persistedMillis = System.currentTimeMillis();
+        PartitionTimers partitionTimers = timers.computeIfAbsent(topic + '|' + partition,
+            key -> new PartitionTimers(topic, partition));
+
+        boolean producerTimestamp = CREATE_TIME.equals(timestampType) && recordTimestamp > 0;
+        if (producerTimestamp) {
+            partitionTimers.pipeline.record(Math.max(0, persistedMillis - recordTimestamp), TimeUnit.MILLISECONDS);
+        }
+
+        if (eventTimestamp != null) {
+            long eventMillis = eventTimestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            partitionTimers.endToEnd.record(Math.max(0, persistedMillis - eventMillis), TimeUnit.MILLISECONDS);
+            if (producerTimestamp) {
+                partitionTimers.producer.record(Math.max(0, recordTimestamp - eventMillis), TimeUnit.MILLISECONDS);
+            }
+
+            newestEventMillis.computeIfAbsent(topic, this::registerAgeGauge)
+                .accumulateAndGet(eventMillis, Math::max);
+        }
+    }
+
+    private AtomicLong registerAgeGauge(String topic) {
+        AtomicLong newest = new AtomicLong(0);
+        Gauge.builder("kafka.consumer.freshness.age", newest,
+                value -> value.get() == 0 ? 0 : (System.currentTimeMillis() - value.get()) / 1000.0)
+            .description("Seconds since the newest persisted event of the topic was created")
+            .tag("topic", topic)
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        return newest;
+    }
+
+    /**
+     * Freshness and latency against the SLO, per topic and partition
+     */
+    public Map<String, Object> getFreshnessReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("slo", slo.toString());
+        report.put("objective", objective);
+
+        Map<String, Map<String, Object>> topics = new TreeMap<>();
+        long totalCount = 0;
+        long totalWithinSlo = 0;
+
+        for (PartitionTimers partitionTimers : timers.values()) {
+            HistogramSnapshot snapshot = partitionTimers.endToEnd.takeSnapshot();
+            long withinSlo = countWithinSlo(snapshot);
+            totalCount += snapshot.count();
+            totalWithinSlo += withinSlo;
+
+            Map<String, Object> partition = new LinkedHashMap<>();
+            partition.put("events", snapshot.count());
+            partition.put("withinSloRatio", ratio(withinSlo, snapshot.count()));
+            partition.put("endToEndMeanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+            partition.put("endToEndMaxMs", snapshot.max(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                partition.put("endToEndP" + Math.round(percentile.percentile() * 100) + "Ms",
+                    percentile.value(TimeUnit.MILLISECONDS));
+            }
+            partition.put("producerMeanMs", partitionTimers.producer.mean(TimeUnit.MILLISECONDS));
+            partition.put("pipelineMeanMs", partitionTimers.pipeline.mean(TimeUnit.MILLISECONDS));
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> partitions = (Map<String, Object>) topics
+                .computeIfAbsent(partitionTimers.topic, topic -> {
+                    Map<String, Object> topicReport = new LinkedHashMap<>();
+                    AtomicLong newest = newestEventMillis.get(topic);
+                    topicReport.put("newestEventAgeSeconds", newest == null || newest.get() == 0
+                        ? null : (System.currentTimeMillis() - newest.get()) / 1000.0);
+                    topicReport.put("partitions", new TreeMap<String, Object>());
+                    return topicReport;
+                })
+                .get("partitions");
+            partitions.put(String.valueOf(partitionTimers.partition), partition);
+        }
+
+        double overall = ratio(totalWithinSlo, totalCount);
+        report.put("events", totalCount);
+        report.put("withinSloRatio", overall);
+        report.put("status", totalCount == 0 ? "NO_DATA" : overall >= objective ? "OK" : "BREACHING");
+        report.put("topics", topics);
+        return report;
+    }
+
+    private long countWithinSlo(HistogramSnapshot snapshot) {
+        double sloNanos = slo.toNanos();
+        for (CountAtBucket bucket : snapshot.histogramCounts()) {
+            if (bucket.bucket() == sloNanos) {
+                return (long) bucket.count();
+            }
+        }
+        return 0;
+    }
+
+    private static double ratio(long part, long total) {
+        return total == 0 ? 1.0 : (double) part / total;
+    }
+
+    /**
+     * Latency timers of one topic partition
+     */
+    private final class PartitionTimers {
+        final String topic;
+        final int partition;
+        final Timer endToEnd;
+        final Timer producer;
+        final Timer pipeline;
+
+        PartitionTimers(String topic, int partition) {
+            this.topic = topic;
+            this.partition = partition;
+            this.endToEnd = timer("kafka.consumer.e2e.latency", "Event creation to persisted in the consumer");
+            this.producer = timer("kafka.consumer.e2e.producer.latency", "Event creation to Kafka record timestamp");
+            this.pipeline = timer("kafka.consumer.e2e.pipeline.latency", "Kafka record timestamp to persisted");
+        }
+
+        private Timer timer(String name, String description) {
+            return Timer.builder(name)
+                .description(description)
+                .tag("topic", topic)
+                .tag("partition", String.valueOf(partition))
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .serviceLevelObjectives(slo)
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofHours(1))
+                .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.common.model.BusinessEvent;
+import com.jeffreyxu.kafka.common.model.SystemEvent;
+import com.jeffreyxu.kafka.common.model.UserEvent;
+import com.jeffreyxu.kafka.consumer.analytics.SpaceSaving;
+import com.jeffreyxu.kafka.consumer.repository.BusinessEventRepository;
+import com.jeffreyxu.kafka.consumer.repository.SystemEventRepository;
+import com.jeffreyxu.kafka.consumer.repository.UserEventRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiFunction;
+
+/**
+ * Streaming top-K of customers by revenue, users by activity and services by event volume.
+ *
+ * Each tracker keeps one Space-Saving summary per tumbling window; a query merges the
+ * windows overlapping the requested range, so top-N endpoints read K counters per window
+ * instead of grouping and sorting every row of the range. Summaries only cover the
+ * partitions assigned to this instance. User and system events are keyed by user and
+ * service, so those rankings are exact per key; business events are keyed by order, so a
+ * customer's revenue is split across instances.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HeavyHitterService {
+
+    public static final String CUSTOMERS_BY_REVENUE = "customers-by-revenue";
+    public static final String USERS_BY_EVENTS = "users-by-events";
+    public static final String SERVICES_BY_EVENTS = "services-by-events";
+
+    private final BusinessEventRepository businessEventRepository;
+    private final UserEventRepository userEventRepository;
+    private final SystemEventRepository systemEventRepository;
+
+    @Value("${app.analytics.heavy-hitters.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.analytics.heavy-hitters.capacity:1000}")
+    private int capacity;
+
+    @Value("${app.analytics.heavy-hitters.window:1h}")
+    private Duration window;
+
+    @Value("${app.analytics.heavy-hitters.windows-retained:24}")
+    private int windowsRetained;
+
+    private final Map<String, NavigableMap<Long, SpaceSaving>> trackers = new ConcurrentHashMap<>();
+
+    /**
+     * Count a business event's amount towards its customer
+     */
+    public void recordBusinessEvent(BusinessEvent event) {
+        if (enabled && event.getAmount() != null) {
+            record(CUSTOMERS_BY_REVENUE, event.getCustomerId(), event.getAmount().doubleValue(), event.getTimestamp());
+        }
+    }
+
+    /**
+     * Count a user event towards its user
+     */
+    public void recordUserEvent(UserEvent event) {
+        if (enabled) {
+            record(USERS_BY_EVENTS, event.getUserId(), 1, event.getTimestamp());
+        }
+    }
+
+    /**
+     * Count a system event towards its service
+     */
+    public void recordSystemEvent(SystemEvent event) {
+        if (enabled) {
+            record(SERVICES_BY_EVENTS, event.getServiceId(), 1, event.getTimestamp());
+        }
+    }
+
+    private void record(String tracker, String key, double weight, LocalDateTime timestamp) {
+        NavigableMap<Long, SpaceSaving> windows = trackers.computeIfAbsent(tracker, t -> new ConcurrentSkipListMap<>());
+        long windowStart = windowStart(timestamp != null ? timestamp : LocalDateTime.now());
+
+        SpaceSaving summary = windows.get(windowStart);
+        if (summary == null) {
+            if (!windows.isEmpty() && windowStart < windows.lastKey() - (windowsRetained - 1L) * window.toMillis()) {
+                // Too late for any retained window
+                return;
+            }
+            summary = windows.computeIfAbsent(windowStart, w -> new SpaceSaving(capacity));
+            evictExpired(windows);
+        }
+
+        synchronized (summary) {
+            summary.offer(key, weight);
+        }
+    }
+
+    private void evictExpired(NavigableMap<Long, SpaceSaving> windows) {
+        long oldestRetained = windows.lastKey() - (windowsRetained - 1L) * window.toMillis();
+        windows.headMap(oldestRetained, false).clear();
+    }
+
+    /**
+     * Top keys of a tracker over the windows overlapping the last {@code hours}
+     *
+     * @param compare also run the equivalent SQL query and report how well the two agree
+     */
+    public Map<String, Object> getTop(String tracker, int hours, int limit, boolean compare) {
+        LocalDateTime since = LocalDateTime.now().minusHours(hours);
+
+        long started = System.nanoTime();
+        List<SpaceSaving> snapshots = snapshot(tracker, windowStart(since));
+        SpaceSaving merged = SpaceSaving.merge(snapshots, capacity);
+        List<SpaceSaving.Entry> top = merged.top(limit);
+        long streamNanos = System.nanoTime() - started;
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (SpaceSaving.Entry entry : top) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("key", entry.key());
+            result.put("count", entry.count());
+            result.put("maxOverestimate", entry.error());
+            result.put("guaranteedCount", entry.guaranteedCount());
+            results.add(result);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("tracker", tracker);
+        response.put("enabled", enabled);
+        response.put("window", window.toString());
+        response.put("windowsCovered", snapshots.size());
+        response.put("capacity", capacity);
+        response.put("totalWeight", merged.getTotalWeight());
+        response.put("errorBound", merged.getTotalWeight() / capacity);
+        response.put("queryTimeMicros", streamNanos / 1_000);
+        response.put("scope", "partitions assigned to this consumer instance");
+        response.put("top", results);
+
+        if (compare) {
+            response.put("comparison", compareWithSql(tracker, since, limit, top));
+        }
+        return response;
+    }
+
+    private List<SpaceSaving> snapshot(String tracker, long fromWindow) {
+        NavigableMap<Long, SpaceSaving> windows = trackers.get(tracker);
+        List<SpaceSaving> snapshots = new ArrayList<>();
+        if (windows == null) {
+            return snapshots;
+        }
+        for (SpaceSaving summary : windows.tailMap(fromWindow, true).values()) {
+            synchronized (summary) {
+                snapshots.add(SpaceSaving.merge(List.of(summary), capacity));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Run the exact SQL ranking and compare it with the streaming one
+     */
+    private Map<String, Object> compareWithSql(String tracker, LocalDateTime since, int limit,
+                                               List<SpaceSaving.Entry> top) {
+        BiFunction<LocalDateTime, Integer, List<Object[]>> query;
+        switch (tracker) {
+            case CUSTOMERS_BY_REVENUE:
+                query = businessEventRepository::getTopCustomersByRevenue;
+                break;
+            case USERS_BY_EVENTS:
+                query = userEventRepository::getUserActivitySummary;
+                break;
+            case SERVICES_BY_EVENTS:
+                query = systemEventRepository::getTopServicesByEventCount;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown tracker: " + tracker);
+        }
+
+        long started = System.nanoTime();
+        List<Object[]> rows = query.apply(since, limit);
+        long sqlNanos = System.nanoTime() - started;
+
+        // Every ranking query returns the key first and the ranked value second
+        Map<String, Double> exact = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            exact.put(String.valueOf(row[0]), ((Number) row[1]).doubleValue());
+        }
+
+        Map<String, Double> streamed = new HashMap<>();
+        top.forEach(entry -> streamed.put(entry.key(), entry.count()));
+
+        int overlap = 0;
+        double relativeErrorSum = 0;
+        for (Map.Entry<String, Double> row : exact.entrySet()) {
+            Double estimate = streamed.get(row.getKey());
+            if (estimate != null) {
+                overlap++;
+                if (row.getValue() > 0) {
+                    relativeErrorSum += Math.abs(estimate - row.getValue()) / row.getValue();
+                }
+            }
+        }
+
+        Map<String, Object> comparison = new LinkedHashMap<>();
+        comparison.put("sqlTop", rows);
+        comparison.put("sqlQueryTimeMicros", sqlNanos / 1_000);
+        comparison.put("overlap", overlap);
+        comparison.put("precisionAtN", exact.isEmpty() ? 1.0 : (double) overlap / exact.size());
+        comparison.put("meanRelativeError", overlap == 0 ? 0.0 : relativeErrorSum / overlap);
+        return comparison;
+    }
+
+    private long windowStart(LocalDateTime time) {
+        long millis = time.toInstant(ZoneOffset.UTC).toEpochMilli();
+        return millis - Math.floorMod(millis, window.toMillis());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
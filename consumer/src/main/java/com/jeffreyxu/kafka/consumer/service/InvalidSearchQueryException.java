@@ -0,0 +1,12 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+/**
+ * Thrown when MySQL cannot parse a boolean mode search query, such as one with an unbalanced
+ * quote or a lone operator. The query is the client's mistake, not a server failure.
+ */
+public class InvalidSearchQueryException extends RuntimeException {
+
+    public InvalidSearchQueryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,185 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-listener consumer concurrency, set through the API or by the lag-driven policy.
+ *
+ * Concurrency is capped at the partition count of the listener's topic: extra consumers in
+ * a group get no partitions and only add rebalance work. Every change restarts the container
+ * and rebalances its group, so the policy moves one step at a time with a cooldown, scales up
+ * only while the estimated time to drain exceeds {@code scale-up-drain-time}, scales down
+ * only after {@code scale-down-evaluations} consecutive checks below
+ * {@code scale-down-drain-time}, and holds while database backpressure has the containers
+ * paused, since more consumers would only add load to a saturated database.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ListenerConcurrencyService {
+
+    private final ListenerContainerService listenerContainerService;
+    private final ConsumerLagService consumerLagService;
+    private final BackpressureService backpressureService;
+
+    @Value("${app.concurrency.autoscale.enabled:false}")
+    private boolean autoscaleEnabled;
+
+    @Value("${app.concurrency.autoscale.min:1}")
+    private int minConcurrency;
+
+    @Value("${app.concurrency.autoscale.scale-up-drain-time:60s}")
+    private Duration scaleUpDrainTime;
+
+    @Value("${app.concurrency.autoscale.scale-down-drain-time:5s}")
+    private Duration scaleDownDrainTime;
+
+    @Value("${app.concurrency.autoscale.scale-down-evaluations:5}")
+    private int scaleDownEvaluations;
+
+    @Value("${app.concurrency.autoscale.cooldown:2m}")
+    private Duration cooldown;
+
+    private final Map<String, Long> lastChangeNanos = new ConcurrentHashMap<>();
+    private final Map<String, Integer> calmEvaluations = new ConcurrentHashMap<>();
+
+    /**
+     * Set the concurrency of a listener, capped at its topic's partition count
+     *
+     * @return the concurrency actually applied
+     * @throws IllegalArgumentException if the listener is unknown or the value is below one
+     * @throws IllegalStateException if the partition count cannot be read
+     */
+    public int setConcurrency(String listenerId, int requested) {
+        if (requested < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1: " + requested);
+        }
+        ConcurrentMessageListenerContainer<?, ?> container = listenerContainerService.getContainer(listenerId);
+        int partitions = partitionLimit(container);
+        int applied = Math.min(requested, partitions);
+
+        if (applied != container.getConcurrency()) {
+            int previous = container.getConcurrency();
+            listenerContainerService.reconfigure(listenerId, c -> c.setConcurrency(applied));
+            lastChangeNanos.put(listenerId, System.nanoTime());
+            log.info("Listener {} concurrency {} -> {} (requested {}, {} partitions)",
+                listenerId, previous, applied, requested, partitions);
+        }
+        return applied;
+    }
+
+    private int partitionLimit(ConcurrentMessageListenerContainer<?, ?> container) {
+        String[] topics = container.getContainerProperties().getTopics();
+        if (topics == null || topics.length == 0) {
+            throw new IllegalStateException("Listener " + container.getListenerId() + " has no fixed topics");
+        }
+        int limit = 0;
+        for (String topic : topics) {
+            Integer partitions = consumerLagService.partitionCount(topic);
+            if (partitions == null) {
+                throw new IllegalStateException("Partition count of " + topic + " is not available");
+            }
+            limit += partitions;
+        }
+        return limit;
+    }
+
+    /**
+     * Adjust concurrency by one step per listener from its group's lag
+     */
+    @Scheduled(fixedDelayString = "${app.concurrency.autoscale.interval-ms:30000}",
+        initialDelayString = "${app.concurrency.autoscale.initial-delay-ms:60000}")
+    public void autoscale() {
+        if (!autoscaleEnabled || backpressureService.isPaused()) {
+            return;
+        }
+
+        for (String listenerId : ListenerContainerService.EVENT_LISTENERS) {
+            try {
+                autoscale(listenerId);
+            } catch (Exception e) {
+                log.warn("Autoscaling of listener {} skipped: {}", listenerId, e.getMessage());
+            }
+        }
+    }
+
+    private void autoscale(String listenerId) {
+        ConcurrentMessageListenerContainer<?, ?> container = listenerContainerService.getContainer(listenerId);
+        Map<String, Object> lag = consumerLagService.getGroupLag(container.getGroupId());
+        if (lag == null || !container.isRunning()) {
+            return;
+        }
+        Long last = lastChangeNanos.get(listenerId);
+        if (last != null && System.nanoTime() - last < cooldown.toNanos()) {
+            return;
+        }
+
+        double timeToDrain = ((Number) lag.get("timeToDrainSeconds")).doubleValue();
+        int current = container.getConcurrency();
+
+        if (timeToDrain > scaleUpDrainTime.toSeconds()) {
+            calmEvaluations.remove(listenerId);
+            if (current < partitionLimit(container)) {
+                log.info("Scaling up listener {}: {}s to drain", listenerId, Math.round(timeToDrain));
+                setConcurrency(listenerId, current + 1);
+            }
+        } else if (timeToDrain < scaleDownDrainTime.toSeconds() && current > minConcurrency) {
+            int calm = calmEvaluations.merge(listenerId, 1, Integer::sum);
+            if (calm >= scaleDownEvaluations) {
+                calmEvaluations.remove(listenerId);
+                log.info("Scaling down listener {}: {}s to drain", listenerId, Math.round(timeToDrain));
+                setConcurrency(listenerId, current - 1);
+            }
+        } else {
+            calmEvaluations.remove(listenerId);
+        }
+    }
+
+    /**
+     * Concurrency, partition limit and assignment of every event listener
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("autoscaleEnabled", autoscaleEnabled);
+        status.put("cooldown", cooldown.toString());
+
+        Map<String, Object> listeners = new LinkedHashMap<>();
+        for (String listenerId : ListenerContainerService.EVENT_LISTENERS) {
+            try {
+                listeners.put(listenerId, describe(listenerId));
+            } catch (IllegalArgumentException e) {
+                listeners.put(listenerId, null);
+            }
+        }
+        status.put("listeners", listeners);
+        return status;
+    }
+
+    /**
+     * Concurrency, partition limit and assignment of one listener
+     */
+    public Map<String, Object> describe(String listenerId) {
+        ConcurrentMessageListenerContainer<?, ?> container = listenerContainerService.getContainer(listenerId);
+        Map<String, Object> description = listenerContainerService.describe(listenerId);
+        Integer limit;
+        try {
+            limit = partitionLimit(container);
+        } catch (IllegalStateException e) {
+            limit = null;
+        }
+        description.put("groupId", container.getGroupId());
+        description.put("maxConcurrency", limit);
+        return description;
+    }
+}
@@ -0,0 +1,100 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.consumer.listener.EventListener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reconfigures listener containers in place.
+ *
+ * Container and consumer properties are only read when a container starts, so changes are
+ * applied between a stop and a start. Stopping waits for the in-flight record and commits
+ * its acknowledged offsets; the consumers leave and rejoin their groups, so every change
+ * costs one rebalance. A paused container stays paused across the restart. Changes are
+ * serialized so concurrent callers never interleave a stop and start.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ListenerContainerService {
+
+    /**
+     * Listeners created by the default container factory; the priority lane has its own tuning
+     */
+    public static final List<String> EVENT_LISTENERS = List.of(
+        EventListener.USER_EVENTS_LISTENER,
+        EventListener.BUSINESS_EVENTS_LISTENER,
+        EventListener.SYSTEM_EVENTS_LISTENER);
+
+    private final KafkaListenerEndpointRegistry registry;
+
+    /**
+     * Stop the container, apply the change and start it again if it was running
+     */
+    public synchronized void reconfigure(String listenerId, Consumer<ConcurrentMessageListenerContainer<?, ?>> change) {
+        ConcurrentMessageListenerContainer<?, ?> container = getContainer(listenerId);
+        boolean running = container.isRunning();
+        if (running) {
+            container.stop();
+        }
+        try {
+            change.accept(container);
+        } finally {
+            if (running) {
+                container.start();
+            }
+        }
+        log.info("Reconfigured listener container {} (restarted: {})", listenerId, running);
+    }
+
+    /**
+     * Container registered under a listener id
+     *
+     * @throws IllegalArgumentException if no concurrent container has that id
+     */
+    public ConcurrentMessageListenerContainer<?, ?> getContainer(String listenerId) {
+        MessageListenerContainer container = registry.getListenerContainer(listenerId);
+        if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent) {
+            return concurrent;
+        }
+        throw new IllegalArgumentException("Unknown listener container: " + listenerId);
+    }
+
+    /**
+     * Current settings and assignment of a container
+     */
+    public Map<String, Object> describe(String listenerId) {
+        ConcurrentMessageListenerContainer<?, ?> container = getContainer(listenerId);
+        ContainerProperties properties = container.getContainerProperties();
+
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("id", listenerId);
+        description.put("topics", properties.getTopics() != null ? Arrays.asList(properties.getTopics()) : List.of());
+        description.put("running", container.isRunning());
+        description.put("paused", container.isPauseRequested());
+        description.put("concurrency", container.getConcurrency());
+        description.put("ackMode", properties.getAckMode());
+        description.put("syncCommits", properties.isSyncCommits());
+        description.put("pollTimeoutMs", properties.getPollTimeout());
+        description.put("idleBetweenPollsMs", properties.getIdleBetweenPolls());
+        description.put("consumerOverrides", properties.getKafkaConsumerProperties());
+        Collection<TopicPartition> assigned = container.getAssignedPartitions();
+        description.put("assignedPartitions", assigned != null ? assigned.stream().map(TopicPartition::toString).sorted().toList() : List.of());
+        return description;
+    }
+}
@@ -8,15 +8,12 @@ import com.jeffreyxu.kafka.consumer.entity.UserEventEntity;
 import com.jeffreyxu.kafka.consumer.entity.BusinessEventEntity;
 import com.jeffreyxu.kafka.consumer.entity.SystemEventEntity;
 import com.jeffreyxu.kafka.consumer.repository.ProcessedMessageRepository;
-import com.jeffreyxu.kafka.consumer.repository.UserEventRepository;
-import com.jeffreyxu.kafka.consumer.repository.BusinessEventRepository;
-import com.jeffreyxu.kafka.consumer.repository.SystemEventRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.time.LocalDateTime;
@@ -24,6 +21,7 @@ import java.time.LocalDateTime;
 /**
  * Service for processing Kafka messages and storing them in the database.
  * Handles different event types and maintains processing audit trail.
+ * While the database is unreachable, mapped events are spilled to local disk instead.
  */
 @Service
 @RequiredArgsConstructor
@@ -31,18 +29,25 @@ import java.time.LocalDateTime;
 public class MessageProcessingService {
 
     private final ProcessedMessageRepository processedMessageRepository;
-    private final UserEventRepository userEventRepository;
-    private final BusinessEventRepository businessEventRepository;
-    private final SystemEventRepository systemEventRepository;
+    private final EventPersistenceService eventPersistenceService;
+    private final SpillService spillService;
     private final ObjectMapper objectMapper;
     private final StatsService statsService;
+    private final StackTraceFingerprintService stackTraceFingerprintService;
+    private final DistinctCountService distinctCountService;
+    private final HeavyHitterService heavyHitterService;
+    private final SessionWindowService sessionWindowService;
+    private final MetricStoreService metricStoreService;
+
+    @Value("${app.stack-traces.store-full-trace:false}")
+    private boolean storeFullStackTrace;
 
     /**
      * Process a user event
      */
-    @Transactional
     public void processUserEvent(UserEvent event, String topic, int partition, long offset, String key) {
         long startTime = System.currentTimeMillis();
+        long stageStart = System.nanoTime();
         
         try {
             // Create processed message record
@@ -65,21 +70,23 @@ public class MessageProcessingService {
                 userEventEntity.setMetadata(objectMapper.writeValueAsString(event.getMetadata()));
             }
             
-            // Save both records
-            processedMessageRepository.save(processedMessage);
-            userEventRepository.save(userEventEntity);
+            statsService.recordStage(topic, StatsService.STAGE_MAP, stageStart);
             
-            // Update processing time
+            // Save both records, or spill them while the database is down
+            persistOrSpill(topic, processedMessage, userEventEntity, null, startTime);
             long processingTime = System.currentTimeMillis() - startTime;
-            processedMessage.setProcessingTimeMs(processingTime);
-            processedMessageRepository.save(processedMessage);
             
             // Update statistics
             statsService.incrementProcessedMessages("user-events");
+            heavyHitterService.recordUserEvent(event);
+            sessionWindowService.recordUserEvent(event, partition);
             statsService.updateAverageProcessingTime(processingTime);
             
             log.debug("User event processed and stored: {}", event.getId());
             
+        } catch (PersistenceUnavailableException e) {
+            statsService.incrementProcessingErrors();
+            throw e;
         } catch (Exception e) {
             log.error("Failed to process user event: {}", event.getId(), e);
             
@@ -95,9 +102,9 @@ public class MessageProcessingService {
     /**
      * Process a business event
      */
-    @Transactional
     public void processBusinessEvent(BusinessEvent event, String topic, int partition, long offset, String key) {
         long startTime = System.currentTimeMillis();
+        long stageStart = System.nanoTime();
         
         try {
             // Create processed message record
@@ -122,21 +129,23 @@ public class MessageProcessingService {
                 businessEventEntity.setOrderDetails(objectMapper.writeValueAsString(event.getOrderDetails()));
             }
             
-            // Save both records
-            processedMessageRepository.save(processedMessage);
-            businessEventRepository.save(businessEventEntity);
+            statsService.recordStage(topic, StatsService.STAGE_MAP, stageStart);
             
-            // Update processing time
+            // Save both records, or spill them while the database is down
+            persistOrSpill(topic, processedMessage, businessEventEntity, null, startTime);
             long processingTime = System.currentTimeMillis() - startTime;
-            processedMessage.setProcessingTimeMs(processingTime);
-            processedMessageRepository.save(processedMessage);
             
             // Update statistics
             statsService.incrementProcessedMessages("business-events");
+            distinctCountService.recordBusinessEvent(event);
+            heavyHitterService.recordBusinessEvent(event);
             statsService.updateAverageProcessingTime(processingTime);
             
             log.debug("Business event processed and stored: {}", event.getId());
             
+        } catch (PersistenceUnavailableException e) {
+            statsService.incrementProcessingErrors();
+            throw e;
         } catch (Exception e) {
             log.error("Failed to process business event: {}", event.getId(), e);
             
@@ -152,9 +161,9 @@ public class MessageProcessingService {
     /**
      * Process a system event
      */
-    @Transactional
     public void processSystemEvent(SystemEvent event, String topic, int partition, long offset, String key) {
         long startTime = System.currentTimeMillis();
+        long stageStart = System.nanoTime();
         
         try {
             // Create processed message record
@@ -171,29 +180,48 @@ public class MessageProcessingService {
             systemEventEntity.setEnvironment(event.getEnvironment());
             systemEventEntity.setHostId(event.getHostId());
             systemEventEntity.setProcessId(event.getProcessId());
-            systemEventEntity.setStackTrace(event.getStackTrace());
+            String unresolvedStackTrace = null;
+            if (event.getStackTrace() != null && !event.getStackTrace().isBlank()) {
+                LocalDateTime seenAt = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+                try {
+                    systemEventEntity.setStackTraceFingerprintId(
+                        stackTraceFingerprintService.resolve(event.getStackTrace(), seenAt));
+                } catch (RuntimeException e) {
+                    if (!EventPersistenceService.isDatabaseUnavailable(e)) {
+                        throw e;
+                    }
+                    // Fingerprinted when the spilled event is replayed
+                    unresolvedStackTrace = event.getStackTrace();
+                }
+                if (storeFullStackTrace) {
+                    systemEventEntity.setStackTrace(event.getStackTrace());
+                }
+            }
             systemEventEntity.setCreatedAt(event.getTimestamp());
             systemEventEntity.setProcessedAt(LocalDateTime.now());
             
-            if (event.getMetadata() != null) {
+            // Metric updates go to the time-series store, which replaces the metadata JSON only if configured to
+            if (event.getMetadata() != null && !metricStoreService.record(event)) {
                 systemEventEntity.setMetadata(objectMapper.writeValueAsString(event.getMetadata()));
             }
             
-            // Save both records
-            processedMessageRepository.save(processedMessage);
-            systemEventRepository.save(systemEventEntity);
+            statsService.recordStage(topic, StatsService.STAGE_MAP, stageStart);
             
-            // Update processing time
+            // Save both records, or spill them while the database is down
+            persistOrSpill(topic, processedMessage, systemEventEntity, unresolvedStackTrace, startTime);
             long processingTime = System.currentTimeMillis() - startTime;
-            processedMessage.setProcessingTimeMs(processingTime);
-            processedMessageRepository.save(processedMessage);
             
             // Update statistics
             statsService.incrementProcessedMessages("system-events");
+            distinctCountService.recordSystemEvent(event);
+            heavyHitterService.recordSystemEvent(event);
             statsService.updateAverageProcessingTime(processingTime);
             
             log.debug("System event processed and stored: {}", event.getId());
             
+        } catch (PersistenceUnavailableException e) {
+            statsService.incrementProcessingErrors();
+            throw e;
         } catch (Exception e) {
             log.error("Failed to process system event: {}", event.getId(), e);
             
@@ -231,6 +259,36 @@ public class MessageProcessingService {
         }
     }
     
+    /**
+     * Write the event and its audit row, spilling them to local disk if the database is unreachable
+     *
+     * @throws PersistenceUnavailableException if the event could be neither written nor spilled
+     */
+    private void persistOrSpill(String topic, ProcessedMessage processedMessage, Object entity,
+                                String unresolvedStackTrace, long startTime) {
+        processedMessage.setProcessingTimeMs(System.currentTimeMillis() - startTime);
+        if (spillService.spillIfActive(processedMessage, entity, unresolvedStackTrace)) {
+            return;
+        }
+        if (unresolvedStackTrace != null && spillService.isEnabled()) {
+            // The fingerprint lookup already failed to reach the database
+            spillService.spill(processedMessage, entity, unresolvedStackTrace);
+            return;
+        }
+
+        try {
+            eventPersistenceService.persist(topic, processedMessage, entity, startTime);
+        } catch (RuntimeException e) {
+            if (!EventPersistenceService.isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            if (!spillService.isEnabled()) {
+                throw new PersistenceUnavailableException("Database unavailable", e);
+            }
+            spillService.spill(processedMessage, entity, unresolvedStackTrace);
+        }
+    }
+
     /**
      * Get consumer group name based on topic
      */
@@ -242,6 +300,8 @@ public class MessageProcessingService {
                 return "business-events-consumer-group";
             case "system-events":
                 return "system-events-consumer-group";
+            case "system-events-priority":
+                return "system-events-priority-consumer-group";
             default:
                 return "kafka-demo-consumer-group";
         }
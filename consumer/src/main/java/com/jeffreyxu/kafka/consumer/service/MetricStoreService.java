@@ -0,0 +1,212 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.common.model.SystemEvent;
+import com.jeffreyxu.kafka.consumer.tsdb.TimeSeriesStore;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the numeric metadata of METRIC_UPDATE system events in the embedded time-series store.
+ *
+ * Each numeric metadata entry becomes a point of the series {@code serviceId:component:name}
+ * at the event's timestamp; numbers in nested maps, such as the min, max and count of a
+ * coalesced update, become {@code name.key} series. Points at or before a series' last
+ * timestamp (redelivered or late events) are dropped, so replays are harmless, and no new
+ * series are created past {@code max-series}.
+ *
+ * The store is local to the instance: each consumer pod holds the series of the partitions it
+ * has consumed, and the query endpoints only read that pod's store. So the system_events rows
+ * keep their metadata JSON unless {@code keep-metadata} is turned off, and even then whenever
+ * an update has non-numeric entries or any of its points could not be stored.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MetricStoreService {
+
+    private static final String NO_COMPONENT = "-";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.tsdb.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.tsdb.directory:${java.io.tmpdir}/kafka-consumer-tsdb}")
+    private Path directory;
+
+    @Value("${app.tsdb.chunk-size:16KB}")
+    private DataSize chunkSize;
+
+    @Value("${app.tsdb.retention:7d}")
+    private Duration retention;
+
+    @Value("${app.tsdb.max-series:10000}")
+    private int maxSeries;
+
+    @Value("${app.tsdb.keep-metadata:true}")
+    private boolean keepMetadata;
+
+    private TimeSeriesStore store;
+    private Counter stored;
+    private Counter dropped;
+    private Counter overLimit;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        store = new TimeSeriesStore(directory, (int) chunkSize.toBytes());
+        stored = meterRegistry.counter("kafka.consumer.tsdb.points", "result", "stored");
+        dropped = meterRegistry.counter("kafka.consumer.tsdb.points", "result", "out-of-order");
+        overLimit = meterRegistry.counter("kafka.consumer.tsdb.points", "result", "series-limit");
+        Gauge.builder("kafka.consumer.tsdb.series", store, s -> s.seriesNames().size())
+            .description("Series in the metric time-series store")
+            .register(meterRegistry);
+        log.info("Metric time-series store opened in {} with {} series", directory, store.seriesNames().size());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Store the numeric metadata of a metric update
+     *
+     * @return true if every metadata entry of the event is now in the store and its metadata
+     *         JSON need not be kept
+     */
+    public boolean record(SystemEvent event) {
+        if (!enabled || !event.isMetricUpdate() || event.getMetadata() == null) {
+            return false;
+        }
+        LocalDateTime time = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+        long timestamp = toMillis(time);
+        String prefix = event.getServiceId() + ":" + (event.getComponent() != null ? event.getComponent() : NO_COMPONENT) + ":";
+        try {
+            boolean complete = append(prefix, event.getMetadata(), timestamp);
+            return complete && !keepMetadata;
+        } catch (IOException e) {
+            log.warn("Failed to store metrics of event {}, keeping its metadata: {}", event.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Append the numbers of a metadata map, and of the maps nested in it
+     *
+     * @return true if every entry was a number, or a map of them, and every point was stored
+     */
+    private boolean append(String prefix, Map<?, ?> metadata, long timestamp) throws IOException {
+        boolean complete = !metadata.isEmpty();
+        for (Map.Entry<?, ?> entry : metadata.entrySet()) {
+            String name = prefix + entry.getKey();
+            if (entry.getValue() instanceof Map<?, ?> nested) {
+                complete &= append(name + ".", nested, timestamp);
+            } else if (!(entry.getValue() instanceof Number number)) {
+                complete = false;
+            } else if (!store.hasSeries(name) && store.seriesCount() >= maxSeries) {
+                overLimit.increment();
+                complete = false;
+            } else if (store.append(name, timestamp, number.doubleValue())) {
+                stored.increment();
+            } else {
+                dropped.increment();
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Drop chunks older than the retention
+     */
+    @Scheduled(fixedDelayString = "${app.tsdb.purge-interval-ms:3600000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int deleted = store.purgeBefore(toMillis(LocalDateTime.now().minus(retention)));
+            if (deleted > 0) {
+                log.info("Purged {} metric chunks older than {}", deleted, retention);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to purge metric chunks: {}", e.getMessage());
+        }
+    }
+
+    public List<String> listSeries() {
+        requireEnabled();
+        return store.seriesNames();
+    }
+
+    /**
+     * Points of a series between two times, downsampled into buckets of {@code step}
+     */
+    public List<TimeSeriesStore.Bucket> range(String series, LocalDateTime from, LocalDateTime to, Duration step) {
+        requireEnabled();
+        return store.downsample(series, toMillis(from), toMillis(to), Math.max(1, step.toMillis()));
+    }
+
+    /**
+     * Store size and compression for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (enabled) {
+            TimeSeriesStore.StoreStats stats = store.stats();
+            // Only the series of the events this instance consumed
+            status.put("scope", "instance");
+            status.put("directory", directory.toString());
+            status.put("series", stats.series());
+            status.put("maxSeries", maxSeries);
+            status.put("keepMetadata", keepMetadata);
+            status.put("chunks", stats.chunks());
+            status.put("points", stats.points());
+            status.put("encodedBytes", stats.usedBytes());
+            status.put("fileBytes", stats.fileBytes());
+            status.put("bytesPerPoint", stats.bytesPerPoint());
+            status.put("retention", retention.toString());
+        }
+        return status;
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new IllegalStateException("The metric time-series store is disabled");
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
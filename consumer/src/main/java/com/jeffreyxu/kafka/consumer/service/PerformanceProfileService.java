@@ -0,0 +1,124 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.consumer.config.PerformanceProfileProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Switches the event listener containers between named performance profiles.
+ *
+ * A profile overrides the fetch and poll consumer properties on top of spring.kafka.consumer
+ * and sets the ack mode, commit style and poll pacing of the containers, which are then
+ * restarted one at a time. Listeners acknowledge manually, so only the MANUAL ack modes
+ * are accepted.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PerformanceProfileService {
+
+    public static final String STARTUP_PROFILE = "startup";
+
+    private final PerformanceProfileProperties properties;
+    private final ListenerContainerService listenerContainerService;
+    private final BackpressureService backpressureService;
+
+    private volatile String activeProfile = STARTUP_PROFILE;
+    private volatile LocalDateTime switchedAt;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void applyConfiguredProfile() {
+        if (StringUtils.hasText(properties.getActive())) {
+            switchTo(properties.getActive());
+        }
+    }
+
+    /**
+     * Apply a profile to every event listener container
+     *
+     * @throws IllegalArgumentException if the profile does not exist or uses a non-manual ack mode
+     */
+    public synchronized Map<String, Object> switchTo(String name) {
+        PerformanceProfileProperties.Profile profile = properties.getProfiles().get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown performance profile: " + name
+                + " (available: " + properties.getProfiles().keySet() + ")");
+        }
+        if (profile.getAckMode() != ContainerProperties.AckMode.MANUAL
+                && profile.getAckMode() != ContainerProperties.AckMode.MANUAL_IMMEDIATE) {
+            throw new IllegalArgumentException("Profile " + name + " must use a MANUAL ack mode, not "
+                + profile.getAckMode());
+        }
+
+        Properties consumerProperties = consumerProperties(profile);
+        for (String listenerId : ListenerContainerService.EVENT_LISTENERS) {
+            listenerContainerService.reconfigure(listenerId, container -> {
+                ContainerProperties containerProperties = container.getContainerProperties();
+                containerProperties.setKafkaConsumerProperties(consumerProperties);
+                containerProperties.setAckMode(profile.getAckMode());
+                containerProperties.setSyncCommits(profile.isSyncCommits());
+                containerProperties.setPollTimeout(profile.getPollTimeout().toMillis());
+                containerProperties.setIdleBetweenPolls(profile.getIdleBetweenPolls().toMillis());
+                if (profile.getConcurrency() != null) {
+                    container.setConcurrency(profile.getConcurrency());
+                }
+            });
+        }
+
+        // The pause threshold depends on max.poll.records
+        backpressureService.updatePauseLatency();
+
+        activeProfile = name;
+        switchedAt = LocalDateTime.now();
+        log.info("Switched consumer performance profile to {}", name);
+        return getStatus();
+    }
+
+    private static Properties consumerProperties(PerformanceProfileProperties.Profile profile) {
+        Properties consumerProperties = new Properties();
+        consumerProperties.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, String.valueOf(profile.getFetchMinBytes()));
+        consumerProperties.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, String.valueOf(profile.getFetchMaxWait().toMillis()));
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(profile.getMaxPollRecords()));
+        consumerProperties.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG,
+            String.valueOf(profile.getMaxPartitionFetchBytes()));
+        return consumerProperties;
+    }
+
+    /**
+     * Active profile, available profiles and the resulting container settings
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("activeProfile", activeProfile);
+        status.put("switchedAt", switchedAt);
+        status.put("availableProfiles", properties.getProfiles());
+
+        Map<String, Object> containers = new LinkedHashMap<>();
+        for (String listenerId : ListenerContainerService.EVENT_LISTENERS) {
+            try {
+                containers.put(listenerId, listenerContainerService.describe(listenerId));
+            } catch (IllegalArgumentException e) {
+                containers.put(listenerId, null);
+            }
+        }
+        status.put("containers", containers);
+        return status;
+    }
+
+    public String getActiveProfile() {
+        return activeProfile;
+    }
+}
@@ -0,0 +1,12 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+/**
+ * Thrown when an event could be neither written to the database nor spilled to disk.
+ * The record must not be acknowledged.
+ */
+public class PersistenceUnavailableException extends RuntimeException {
+
+    public PersistenceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
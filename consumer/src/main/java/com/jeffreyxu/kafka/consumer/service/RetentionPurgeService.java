@@ -0,0 +1,331 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.consumer.config.RetentionProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Retention engine for deployments that cannot use table partitioning.
+ *
+ * Rows are deleted in small primary-key ranges starting at the lowest remaining key,
+ * so every DELETE touches only old, already-committed rows and never the auto-increment
+ * tail the consumer is inserting into. Progress is the deletion itself: a restarted job
+ * simply picks up at the new lowest key. Tables whose time column does not follow the key
+ * (rows written when a session ends or merged into an hourly bucket) would stop that walk
+ * at the first young row, so they are purged by the time column instead, oldest first.
+ * Chunk size and pauses adapt to statement latency and, when configured, replication lag.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RetentionPurgeService {
+
+    private static final String LOCK_NAME = "kafka_demo_retention_purge";
+    private static final Pattern IDENTIFIER = Pattern.compile("^[A-Za-z0-9_]+$");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RetentionProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger chunkSize = new AtomicInteger();
+    private final AtomicLong pauseMs = new AtomicLong();
+    private final AtomicLong replicationLagSeconds = new AtomicLong(-1);
+    private final Map<String, TableProgress> progress = new ConcurrentHashMap<>();
+    private volatile boolean lagProbeBroken = false;
+
+    @PostConstruct
+    public void initMetrics() {
+        chunkSize.set(properties.getInitialChunkSize());
+        pauseMs.set(properties.getMinPause().toMillis());
+
+        for (RetentionProperties.Table table : properties.getTables()) {
+            validateIdentifier(table.getName());
+            validateIdentifier(table.getIdColumn());
+            validateIdentifier(table.getTimeColumn());
+            progress.put(table.getName(), new TableProgress());
+        }
+
+        Gauge.builder("kafka.consumer.retention.chunk.size", chunkSize, AtomicInteger::get)
+            .description("Current adaptive retention chunk size")
+            .register(meterRegistry);
+
+        Gauge.builder("kafka.consumer.retention.replication.lag", replicationLagSeconds, AtomicLong::get)
+            .description("Last observed replication lag in seconds (-1 when unknown)")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Run one retention pass over all configured tables
+     */
+    @Scheduled(fixedDelayString = "${app.retention.interval-ms:60000}",
+               initialDelayString = "${app.retention.initial-delay-ms:30000}")
+    public void purge() {
+        if (!properties.isEnabled() || properties.getTables().isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                runWithLock(connection);
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Retention pass failed", e);
+        }
+    }
+
+    /**
+     * Hold a named lock for the duration of the pass so only one consumer replica purges at a time.
+     * All statements run on the locked connection in autocommit mode, one short transaction per chunk.
+     */
+    private void runWithLock(Connection connection) throws java.sql.SQLException {
+        JdbcTemplate locked = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+
+        Integer acquired = locked.queryForObject("SELECT GET_LOCK(?, 0)", Integer.class, LOCK_NAME);
+        if (acquired == null || acquired != 1) {
+            log.debug("Retention pass skipped, another instance holds the purge lock");
+            return;
+        }
+
+        // READ COMMITTED avoids gap locks, so range deletes cannot block concurrent inserts
+        int originalIsolation = connection.getTransactionIsolation();
+        connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+
+        try {
+            long deadline = System.nanoTime() + properties.getMaxRunTime().toNanos();
+            for (RetentionProperties.Table table : properties.getTables()) {
+                if (System.nanoTime() > deadline) {
+                    log.info("Retention pass reached max run time, remaining tables deferred");
+                    break;
+                }
+                purgeTable(locked, table, deadline);
+            }
+        } finally {
+            connection.setTransactionIsolation(originalIsolation);
+            locked.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, LOCK_NAME);
+        }
+    }
+
+    /**
+     * Delete expired rows of one table chunk by chunk until the retention frontier is reached
+     */
+    private void purgeTable(JdbcTemplate locked, RetentionProperties.Table table, long deadline) {
+        TableProgress tableProgress = progress.get(table.getName());
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(table.getRetention()));
+
+        String idColumn = table.getIdColumn();
+        String timeColumn = table.getTimeColumn();
+        String selectRange = table.isInsertionOrdered()
+            ? "SELECT " + idColumn + " FROM " + table.getName()
+                + " WHERE " + idColumn + " >= ? ORDER BY " + idColumn + " LIMIT ?"
+            : "SELECT " + idColumn + " FROM " + table.getName()
+                + " WHERE " + timeColumn + " < ? ORDER BY " + timeColumn + " LIMIT ?";
+        String deleteRange = "DELETE FROM " + table.getName()
+            + " WHERE " + idColumn + " BETWEEN ? AND ? AND " + timeColumn + " < ?";
+
+        Counter deletedCounter = Counter.builder("kafka.consumer.retention.rows.deleted")
+            .description("Rows removed by the retention job")
+            .tag("table", table.getName())
+            .register(meterRegistry);
+        Timer chunkTimer = Timer.builder("kafka.consumer.retention.chunk.time")
+            .description("Latency of a single retention DELETE")
+            .tag("table", table.getName())
+            .register(meterRegistry);
+
+        long from = 0;
+        long deletedThisRun = 0;
+        boolean caughtUp = false;
+
+        try {
+            while (System.nanoTime() < deadline) {
+                if (!waitForReplicas(locked, deadline)) {
+                    break;
+                }
+
+                int limit = chunkSize.get();
+                List<Long> ids;
+                try {
+                    ids = table.isInsertionOrdered()
+                        ? locked.queryForList(selectRange, Long.class, from, limit)
+                        : locked.queryForList(selectRange, Long.class, cutoff, limit);
+                } catch (Exception e) {
+                    log.warn("Retention skipped table {}: {}", table.getName(), e.getMessage());
+                    break;
+                }
+                if (ids.isEmpty()) {
+                    caughtUp = true;
+                    break;
+                }
+
+                long start = System.nanoTime();
+                int deleted;
+                if (table.isInsertionOrdered()) {
+                    long hi = ids.get(ids.size() - 1);
+                    deleted = locked.update(deleteRange, ids.get(0), hi, cutoff);
+                    tableProgress.frontierId = hi;
+                } else {
+                    // The ids are scattered, so delete exactly the expired rows that were selected
+                    String deleteIds = "DELETE FROM " + table.getName() + " WHERE " + idColumn + " IN ("
+                        + String.join(",", Collections.nCopies(ids.size(), "?")) + ") AND " + timeColumn + " < ?";
+                    List<Object> args = new ArrayList<>(ids);
+                    args.add(cutoff);
+                    deleted = locked.update(deleteIds, args.toArray());
+                }
+                long elapsedNanos = System.nanoTime() - start;
+
+                chunkTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+                deletedCounter.increment(deleted);
+                deletedThisRun += deleted;
+
+                adaptPace(elapsedNanos);
+
+                // Rows left behind in an id range are younger than the cutoff: the frontier is reached.
+                // By time, a short chunk means no expired rows are left.
+                boolean frontierReached = table.isInsertionOrdered() ? deleted < ids.size() : ids.size() < limit;
+                if (frontierReached) {
+                    caughtUp = true;
+                    break;
+                }
+
+                from = ids.get(ids.size() - 1) + 1;
+                sleep(pauseMs.get());
+            }
+        } finally {
+            tableProgress.lastRun = LocalDateTime.now();
+            tableProgress.deletedLastRun = deletedThisRun;
+            tableProgress.totalDeleted += deletedThisRun;
+            tableProgress.caughtUp = caughtUp;
+        }
+
+        if (deletedThisRun > 0) {
+            log.info("Retention removed {} rows from {} (caught up: {})", deletedThisRun, table.getName(), caughtUp);
+        }
+    }
+
+    /**
+     * Additive increase, multiplicative decrease on chunk size; the pause moves the opposite way
+     */
+    private void adaptPace(long elapsedNanos) {
+        long targetNanos = properties.getTargetChunkLatency().toNanos();
+        long minPause = properties.getMinPause().toMillis();
+        long maxPause = properties.getMaxPause().toMillis();
+
+        if (elapsedNanos > targetNanos) {
+            chunkSize.updateAndGet(size -> Math.max(properties.getMinChunkSize(), size / 2));
+            pauseMs.updateAndGet(pause -> Math.min(maxPause, Math.max(minPause, pause * 2)));
+        } else {
+            chunkSize.updateAndGet(size -> Math.min(properties.getMaxChunkSize(), size + properties.getMinChunkSize()));
+            pauseMs.updateAndGet(pause -> Math.max(minPause, pause / 2));
+        }
+    }
+
+    /**
+     * Block while replicas are behind; returns false when the pass should stop
+     */
+    private boolean waitForReplicas(JdbcTemplate locked, long deadline) {
+        String query = properties.getReplicationLagQuery();
+        if (query == null || query.isBlank() || lagProbeBroken) {
+            return true;
+        }
+
+        while (System.nanoTime() < deadline) {
+            Long lag;
+            try {
+                lag = locked.queryForObject(query, Long.class);
+            } catch (Exception e) {
+                log.warn("Replication lag query failed, lag checks disabled: {}", e.getMessage());
+                lagProbeBroken = true;
+                return true;
+            }
+
+            replicationLagSeconds.set(lag != null ? lag : -1);
+            if (lag == null || lag <= properties.getMaxReplicationLagSeconds()) {
+                return true;
+            }
+
+            log.debug("Replication lag {}s above limit, retention paused", lag);
+            sleep(properties.getMaxPause().toMillis());
+        }
+        return false;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void validateIdentifier(String identifier) {
+        if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("Invalid retention table or column name: " + identifier);
+        }
+    }
+
+    /**
+     * Get retention progress for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", properties.isEnabled());
+        status.put("chunkSize", chunkSize.get());
+        status.put("pauseMs", pauseMs.get());
+        status.put("replicationLagSeconds", replicationLagSeconds.get());
+
+        Map<String, Object> tables = new LinkedHashMap<>();
+        for (RetentionProperties.Table table : properties.getTables()) {
+            TableProgress tableProgress = progress.get(table.getName());
+            Map<String, Object> tableStatus = new LinkedHashMap<>();
+            tableStatus.put("retention", table.getRetention().toString());
+            tableStatus.put("lastRun", tableProgress.lastRun);
+            tableStatus.put("deletedLastRun", tableProgress.deletedLastRun);
+            tableStatus.put("totalDeleted", tableProgress.totalDeleted);
+            tableStatus.put("frontierId", tableProgress.frontierId);
+            tableStatus.put("caughtUp", tableProgress.caughtUp);
+            tables.put(table.getName(), tableStatus);
+        }
+        status.put("tables", tables);
+
+        return status;
+    }
+
+    /**
+     * Per-table progress of the most recent passes
+     */
+    private static class TableProgress {
+        private volatile LocalDateTime lastRun;
+        private volatile long deletedLastRun;
+        private volatile long totalDeleted;
+        private volatile long frontierId;
+        private volatile boolean caughtUp;
+    }
+}
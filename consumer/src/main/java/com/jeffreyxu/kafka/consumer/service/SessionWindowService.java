@@ -0,0 +1,305 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.common.model.UserEvent;
+import com.jeffreyxu.kafka.consumer.entity.UserSession;
+import com.jeffreyxu.kafka.consumer.repository.UserSessionRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gap-based session windows over the user event stream, keyed by session id.
+ *
+ * A session stays open while its events are less than {@code gap} apart in event time. It
+ * is closed by a LOGOUT, by a later event arriving after the gap, by the sweeper once the
+ * event-time watermark (or wall clock, for idle streams) has passed its last event by the
+ * gap, by eviction when more than {@code max-open-sessions} are open, or when the partition
+ * its events come from is revoked in a rebalance. Closed sessions are written to
+ * user_sessions in batches. An event arriving after its session was closed opens a new
+ * window under the same session id.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SessionWindowService {
+
+    public static final String CLOSED_BY_LOGOUT = "LOGOUT";
+    public static final String CLOSED_BY_GAP = "GAP";
+    public static final String CLOSED_BY_EVICTION = "EVICTED";
+    public static final String CLOSED_BY_SHUTDOWN = "SHUTDOWN";
+    public static final String CLOSED_BY_REBALANCE = "REBALANCE";
+
+    private final UserSessionRepository userSessionRepository;
+
+    @Value("${app.analytics.sessions.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.analytics.sessions.gap:30m}")
+    private Duration gap;
+
+    @Value("${app.analytics.sessions.max-open-sessions:100000}")
+    private int maxOpenSessions;
+
+    @Value("${app.analytics.sessions.max-pending-writes:50000}")
+    private int maxPendingWrites;
+
+    // Access-ordered, so eviction removes the least recently active session; guarded by itself
+    private final LinkedHashMap<String, SessionState> openSessions = new LinkedHashMap<>(1024, 0.75f, true);
+    private final ConcurrentLinkedQueue<UserSession> closedSessions = new ConcurrentLinkedQueue<>();
+    private final AtomicLong droppedSessions = new AtomicLong();
+
+    private LocalDateTime watermark = LocalDateTime.MIN;
+
+    /**
+     * Add a user event to its session window
+     *
+     * @param partition user-events partition the event was read from
+     */
+    public void recordUserEvent(UserEvent event, int partition) {
+        if (!enabled || event.getSessionId() == null) {
+            return;
+        }
+
+        LocalDateTime eventTime = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+        synchronized (openSessions) {
+            if (eventTime.isAfter(watermark)) {
+                watermark = eventTime;
+            }
+
+            SessionState session = openSessions.get(event.getSessionId());
+            if (session != null && Duration.between(session.lastEventAt, eventTime).compareTo(gap) > 0) {
+                openSessions.remove(event.getSessionId());
+                close(session, CLOSED_BY_GAP);
+                session = null;
+            }
+            if (session == null) {
+                session = new SessionState(event.getSessionId(), event.getUserId(), partition, eventTime);
+                openSessions.put(event.getSessionId(), session);
+                evictOverflow();
+            }
+
+            session.add(event, eventTime);
+
+            if ("LOGOUT".equals(event.getAction())) {
+                openSessions.remove(event.getSessionId());
+                close(session, CLOSED_BY_LOGOUT);
+            }
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<SessionState> eldest = openSessions.values().iterator();
+        while (openSessions.size() > maxOpenSessions && eldest.hasNext()) {
+            SessionState session = eldest.next();
+            eldest.remove();
+            close(session, CLOSED_BY_EVICTION);
+        }
+    }
+
+    /**
+     * Close sessions whose gap has passed and write closed sessions
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.sessions.sweep-interval-ms:10000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+
+        long nowNanos = System.nanoTime();
+        synchronized (openSessions) {
+            Iterator<SessionState> sessions = openSessions.values().iterator();
+            while (sessions.hasNext()) {
+                SessionState session = sessions.next();
+                boolean eventTimeExpired = Duration.between(session.lastEventAt, watermark).compareTo(gap) > 0;
+                boolean idle = nowNanos - session.lastTouchedNanos > gap.toNanos();
+                if (eventTimeExpired || idle) {
+                    sessions.remove();
+                    close(session, CLOSED_BY_GAP);
+                }
+            }
+        }
+
+        writeClosedSessions();
+    }
+
+    private void close(SessionState session, String reason) {
+        if (closedSessions.size() >= maxPendingWrites) {
+            droppedSessions.incrementAndGet();
+            return;
+        }
+        closedSessions.add(session.toEntity(reason));
+    }
+
+    private void writeClosedSessions() {
+        List<UserSession> batch = new ArrayList<>();
+        UserSession session;
+        while ((session = closedSessions.poll()) != null) {
+            batch.add(session);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            userSessionRepository.saveAll(batch);
+            log.debug("Wrote {} closed user sessions", batch.size());
+        } catch (Exception e) {
+            log.warn("Failed to write {} user sessions, retrying next sweep: {}", batch.size(), e.getMessage());
+            closedSessions.addAll(batch);
+        }
+    }
+
+    /**
+     * Close and write the open sessions of partitions this instance no longer owns.
+     * Runs on the consumer thread before the revoked partitions' offsets are committed, so
+     * the sessions are persisted before the events they were built from count as consumed.
+     */
+    public void flushPartitions(Collection<Integer> partitions) {
+        if (!enabled || partitions.isEmpty()) {
+            return;
+        }
+
+        int closed = 0;
+        synchronized (openSessions) {
+            Iterator<SessionState> sessions = openSessions.values().iterator();
+            while (sessions.hasNext()) {
+                SessionState session = sessions.next();
+                if (partitions.contains(session.partition)) {
+                    sessions.remove();
+                    close(session, CLOSED_BY_REBALANCE);
+                    closed++;
+                }
+            }
+        }
+        writeClosedSessions();
+        log.info("Closed {} open sessions of revoked user-events partitions {}", closed, partitions);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (openSessions) {
+            openSessions.values().forEach(session -> close(session, CLOSED_BY_SHUTDOWN));
+            openSessions.clear();
+        }
+        writeClosedSessions();
+    }
+
+    /**
+     * Current session state for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("gap", gap.toString());
+        synchronized (openSessions) {
+            status.put("openSessions", openSessions.size());
+            status.put("watermark", watermark.equals(LocalDateTime.MIN) ? null : watermark);
+        }
+        status.put("maxOpenSessions", maxOpenSessions);
+        status.put("pendingWrites", closedSessions.size());
+        status.put("droppedSessions", droppedSessions.get());
+        return status;
+    }
+
+    /**
+     * Running totals of one open session
+     */
+    private static final class SessionState {
+        final String sessionId;
+        final String userId;
+        final int partition;
+        LocalDateTime startedAt;
+        LocalDateTime lastEventAt;
+        long lastTouchedNanos;
+        int eventCount;
+        int pageViews;
+        int searches;
+        int clicks;
+        int purchases;
+        String deviceType;
+        String location;
+
+        SessionState(String sessionId, String userId, int partition, LocalDateTime startedAt) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.partition = partition;
+            this.startedAt = startedAt;
+            this.lastEventAt = startedAt;
+        }
+
+        void add(UserEvent event, LocalDateTime eventTime) {
+            // Events may arrive slightly out of order within the gap
+            if (eventTime.isBefore(startedAt)) {
+                startedAt = eventTime;
+            }
+            if (eventTime.isAfter(lastEventAt)) {
+                lastEventAt = eventTime;
+            }
+            lastTouchedNanos = System.nanoTime();
+            eventCount++;
+
+            switch (event.getAction()) {
+                case "PAGE_VIEW":
+                case "BROWSE":
+                    pageViews++;
+                    break;
+                case "SEARCH":
+                    searches++;
+                    break;
+                case "CLICK":
+                    clicks++;
+                    break;
+                case "PURCHASE":
+                    purchases++;
+                    break;
+                default:
+                    break;
+            }
+
+            if (event.getDeviceType() != null) {
+                deviceType = event.getDeviceType();
+            }
+            if (event.getLocation() != null) {
+                location = event.getLocation();
+            }
+        }
+
+        UserSession toEntity(String reason) {
+            UserSession session = new UserSession();
+            session.setSessionId(sessionId);
+            session.setUserId(userId);
+            session.setStartedAt(startedAt);
+            session.setEndedAt(lastEventAt);
+            session.setDurationMs(Duration.between(startedAt, lastEventAt).toMillis());
+            session.setEventCount(eventCount);
+            session.setPageViews(pageViews);
+            session.setSearches(searches);
+            session.setClicks(clicks);
+            session.setPurchases(purchases);
+            session.setDeviceType(deviceType);
+            session.setLocation(location);
+            session.setCloseReason(reason);
+            session.setClosedAt(LocalDateTime.now());
+            return session;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.common.storage.MappedSegmentLog;
+import com.jeffreyxu.kafka.consumer.entity.BusinessEventEntity;
+import com.jeffreyxu.kafka.consumer.entity.ProcessedMessage;
+import com.jeffreyxu.kafka.consumer.entity.SystemEventEntity;
+import com.jeffreyxu.kafka.consumer.entity.UserEventEntity;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local disk spill for mapped events while MySQL is unreachable.
+ *
+ * When a write fails because the database cannot be reached, the audit row and event entity
+ * are appended to a memory-mapped segment log and forced to disk before the record is
+ * acknowledged, so offsets only advance past data that is durable somewhere. Once spilling,
+ * every new event goes to the log as well, until the replay job has written the whole log
+ * back in append order and in bulk; that keeps each partition's events in order. Stack
+ * trace fingerprints that could not be resolved during the outage are resolved on replay.
+ * Replay is at-least-once: a crash between the database commit and the cursor update
+ * replays that batch, and its duplicate rows are rejected by processed_messages.message_id.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SpillService {
+
+    private final EventPersistenceService eventPersistenceService;
+    private final StackTraceFingerprintService stackTraceFingerprintService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.spill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.spill.directory:${user.dir}/spill}")
+    private Path directory;
+
+    @Value("${app.spill.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${app.spill.max-segments:32}")
+    private int maxSegments;
+
+    @Value("${app.spill.replay-batch-size:500}")
+    private int replayBatchSize;
+
+    private MappedSegmentLog spillLog;
+    private volatile boolean spilling = false;
+    private volatile LocalDateTime spillingSince;
+    private Counter spilled;
+    private Counter replayed;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        spillLog = new MappedSegmentLog(directory, (int) segmentSize.toBytes(), maxSegments);
+        if (!spillLog.isEmpty()) {
+            // Left over from a previous run; keep new events behind it
+            spilling = true;
+            spillingSince = LocalDateTime.now();
+            log.warn("Found {} spilled events in {}, replaying before direct writes resume",
+                spillLog.getPendingRecords(), directory);
+        }
+
+        Gauge.builder("kafka.consumer.spill.pending.records", spillLog, MappedSegmentLog::getPendingRecords)
+            .description("Events spilled to local disk and not yet replayed into the database")
+            .register(meterRegistry);
+        Gauge.builder("kafka.consumer.spill.pending.bytes", spillLog, MappedSegmentLog::getPendingBytes)
+            .description("Bytes of spilled events not yet replayed")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        spilled = meterRegistry.counter("kafka.consumer.spill.events", "result", "spilled");
+        replayed = meterRegistry.counter("kafka.consumer.spill.events", "result", "replayed");
+        rejected = meterRegistry.counter("kafka.consumer.spill.events", "result", "rejected");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Spill the event if spilling is in progress
+     *
+     * @return true if the event was spilled and must not be written directly
+     */
+    public boolean spillIfActive(ProcessedMessage processedMessage, Object entity, String unresolvedStackTrace) {
+        if (!spilling) {
+            return false;
+        }
+        synchronized (this) {
+            if (!spilling) {
+                return false;
+            }
+            append(processedMessage, entity, unresolvedStackTrace);
+            return true;
+        }
+    }
+
+    /**
+     * Start spilling with an event whose direct write failed
+     */
+    public synchronized void spill(ProcessedMessage processedMessage, Object entity, String unresolvedStackTrace) {
+        if (!spilling) {
+            spilling = true;
+            spillingSince = LocalDateTime.now();
+            log.warn("Database unavailable, spilling events to {}", directory);
+        }
+        clearIds(processedMessage, entity);
+        append(processedMessage, entity, unresolvedStackTrace);
+    }
+
+    private void append(ProcessedMessage processedMessage, Object entity, String unresolvedStackTrace) {
+        try {
+            SpilledEvent event = new SpilledEvent(processedMessage.getEventType(), processedMessage,
+                objectMapper.valueToTree(entity), unresolvedStackTrace);
+            spillLog.append(objectMapper.writeValueAsBytes(event));
+            spillLog.force();
+            spilled.increment();
+        } catch (Exception e) {
+            throw new PersistenceUnavailableException("Database unavailable and spill failed", e);
+        }
+    }
+
+    /**
+     * Write spilled events back into the database in append order
+     */
+    @Scheduled(fixedDelayString = "${app.spill.replay-interval-ms:5000}")
+    public void replay() {
+        if (!spilling) {
+            return;
+        }
+
+        while (true) {
+            MappedSegmentLog.Batch batch;
+            synchronized (this) {
+                batch = spillLog.read(replayBatchSize);
+                if (batch.records().isEmpty()) {
+                    spilling = false;
+                    log.info("Spill log drained, writing directly to the database again (spilling since {})", spillingSince);
+                    spillingSince = null;
+                    return;
+                }
+            }
+
+            try {
+                List<ProcessedMessage> processedMessages = new ArrayList<>();
+                List<Object> entities = new ArrayList<>();
+                for (byte[] record : batch.records()) {
+                    SpilledEvent event = objectMapper.readValue(record, SpilledEvent.class);
+                    processedMessages.add(event.processedMessage());
+                    entities.add(toEntity(event));
+                }
+                writeBatch(processedMessages, entities);
+                spillLog.commit(batch.next());
+            } catch (Exception e) {
+                if (EventPersistenceService.isDatabaseUnavailable(e)) {
+                    log.info("Database still unavailable, {} events remain spilled", spillLog.getPendingRecords());
+                } else {
+                    log.error("Spill replay stopped", e);
+                }
+                return;
+            }
+        }
+    }
+
+    private Object toEntity(SpilledEvent event) throws IOException {
+        switch (event.eventType()) {
+            case "USER_EVENT":
+                return objectMapper.treeToValue(event.entity(), UserEventEntity.class);
+            case "BUSINESS_EVENT":
+                return objectMapper.treeToValue(event.entity(), BusinessEventEntity.class);
+            case "SYSTEM_EVENT":
+                SystemEventEntity systemEvent = objectMapper.treeToValue(event.entity(), SystemEventEntity.class);
+                if (event.unresolvedStackTrace() != null && systemEvent.getStackTraceFingerprintId() == null) {
+                    LocalDateTime seenAt = systemEvent.getCreatedAt() != null ? systemEvent.getCreatedAt() : LocalDateTime.now();
+                    systemEvent.setStackTraceFingerprintId(
+                        stackTraceFingerprintService.resolve(event.unresolvedStackTrace(), seenAt));
+                }
+                return systemEvent;
+            default:
+                throw new IllegalArgumentException("Unknown spilled event type: " + event.eventType());
+        }
+    }
+
+    private void writeBatch(List<ProcessedMessage> processedMessages, List<Object> entities) {
+        try {
+            eventPersistenceService.persistAll(processedMessages, entities);
+            replayed.increment(processedMessages.size());
+        } catch (RuntimeException e) {
+            if (EventPersistenceService.isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            // A bad or duplicate row fails the whole batch; write the rest one by one
+            for (int i = 0; i < processedMessages.size(); i++) {
+                clearIds(processedMessages.get(i), entities.get(i));
+                try {
+                    eventPersistenceService.persistAll(List.of(processedMessages.get(i)), List.of(entities.get(i)));
+                    replayed.increment();
+                } catch (RuntimeException single) {
+                    if (EventPersistenceService.isDatabaseUnavailable(single)) {
+                        throw single;
+                    }
+                    rejected.increment();
+                    log.error("Dropping spilled event {} rejected by the database: {}",
+                        processedMessages.get(i).getMessageId(), single.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget ids assigned by a rolled-back insert
+     */
+    private static void clearIds(ProcessedMessage processedMessage, Object entity) {
+        processedMessage.setId(null);
+        if (entity instanceof UserEventEntity userEvent) {
+            userEvent.setId(null);
+        } else if (entity instanceof BusinessEventEntity businessEvent) {
+            businessEvent.setId(null);
+        } else if (entity instanceof SystemEventEntity systemEvent) {
+            systemEvent.setId(null);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (spillLog == null) {
+            return;
+        }
+        // The listeners have stopped; give the database one last chance to take the spill
+        replay();
+        if (!spillLog.isEmpty()) {
+            log.warn("{} spilled events remain in {} and are replayed when this instance starts again",
+                spillLog.getPendingRecords(), directory);
+        }
+        spillLog.close();
+    }
+
+    /**
+     * Spill state for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("spilling", spilling);
+        status.put("spillingSince", spillingSince);
+        if (spillLog != null) {
+            status.put("directory", directory.toString());
+            status.put("pendingEvents", spillLog.getPendingRecords());
+            status.put("pendingBytes", spillLog.getPendingBytes());
+            status.put("segments", spillLog.getSegmentCount());
+            status.put("maxSegments", maxSegments);
+        }
+        return status;
+    }
+
+    /**
+     * One spilled event: the audit row, the entity and a stack trace still to fingerprint
+     */
+    record SpilledEvent(String eventType, ProcessedMessage processedMessage, JsonNode entity,
+                        String unresolvedStackTrace) {
+    }
+}
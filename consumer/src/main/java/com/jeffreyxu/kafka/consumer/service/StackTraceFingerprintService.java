@@ -0,0 +1,141 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps stack traces to rows in stack_trace_fingerprints.
+ *
+ * New fingerprints are inserted in their own transaction so a rolled-back event never
+ * leaves a cached id pointing at a missing row. Occurrences are counted separately, once the
+ * event that references the fingerprint has committed, so rolled-back and retried writes are
+ * not counted twice. Counters are accumulated in memory and flushed in one batch, which keeps
+ * hot traces from serializing listener threads on a single row lock.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StackTraceFingerprintService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.stack-traces.cache-size:10000}")
+    private int cacheSize;
+
+    private final Map<String, Long> idCache = new ConcurrentHashMap<>();
+    private final Map<Long, Occurrences> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Resolve the fingerprint id for a stack trace, inserting the fingerprint if it is new
+     */
+    public Long resolve(String stackTrace, LocalDateTime seenAt) {
+        String normalized = StackTraceNormalizer.normalize(stackTrace);
+        if (normalized.isEmpty()) {
+            // Not a recognizable Java trace: fall back to exact-match dedup
+            normalized = stackTrace.trim();
+        }
+
+        String fingerprint = StackTraceNormalizer.fingerprint(normalized);
+        Long id = idCache.get(fingerprint);
+        if (id == null) {
+            id = insertIfAbsent(fingerprint, normalized, stackTrace, seenAt);
+            if (idCache.size() >= cacheSize) {
+                idCache.clear();
+            }
+            idCache.put(fingerprint, id);
+        }
+        return id;
+    }
+
+    /**
+     * Count one occurrence of a fingerprint; call once the event referencing it is committed
+     */
+    public void countOccurrence(Long id, LocalDateTime seenAt) {
+        pending.merge(id, new Occurrences(1, seenAt), Occurrences::plus);
+    }
+
+    private Long insertIfAbsent(String fingerprint, String normalized, String sample, LocalDateTime seenAt) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        return transaction.execute(status -> {
+            Timestamp seen = Timestamp.valueOf(seenAt);
+            jdbcTemplate.update("""
+                INSERT INTO stack_trace_fingerprints
+                    (fingerprint, exception_type, normalized_trace, sample_trace, occurrence_count, first_seen, last_seen)
+                VALUES (?, ?, ?, ?, 0, ?, ?)
+                ON DUPLICATE KEY UPDATE fingerprint = fingerprint
+                """, fingerprint, StackTraceNormalizer.exceptionType(sample), normalized, sample, seen, seen);
+
+            return jdbcTemplate.queryForObject(
+                "SELECT id FROM stack_trace_fingerprints WHERE fingerprint = ?", Long.class, fingerprint);
+        });
+    }
+
+    /**
+     * Write accumulated occurrence counts and last-seen times
+     */
+    @Scheduled(fixedDelayString = "${app.stack-traces.flush-interval-ms:5000}")
+    public void flushOccurrences() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        Map<Long, Occurrences> drained = new HashMap<>();
+        for (Long id : new ArrayList<>(pending.keySet())) {
+            Occurrences occurrences = pending.remove(id);
+            if (occurrences != null) {
+                drained.put(id, occurrences);
+                Timestamp lastSeen = Timestamp.valueOf(occurrences.lastSeen());
+                updates.add(new Object[] { occurrences.count(), lastSeen, lastSeen, id });
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate("""
+                UPDATE stack_trace_fingerprints
+                SET occurrence_count = occurrence_count + ?,
+                    last_seen = GREATEST(COALESCE(last_seen, ?), ?)
+                WHERE id = ?
+                """, updates);
+        } catch (Exception e) {
+            log.warn("Failed to flush stack trace occurrence counts, retrying next cycle: {}", e.getMessage());
+            drained.forEach((id, occurrences) -> pending.merge(id, occurrences, Occurrences::plus));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushOccurrences();
+    }
+
+    /**
+     * Occurrences of one fingerprint not yet written to the database
+     */
+    private record Occurrences(long count, LocalDateTime lastSeen) {
+
+        Occurrences plus(Occurrences other) {
+            LocalDateTime latest = lastSeen.isAfter(other.lastSeen) ? lastSeen : other.lastSeen;
+            return new Occurrences(count + other.count, latest);
+        }
+    }
+}
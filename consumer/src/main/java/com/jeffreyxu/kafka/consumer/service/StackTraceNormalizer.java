@@ -0,0 +1,122 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a Java stack trace to the parts that identify where it was thrown.
+ *
+ * Exception messages, line numbers, "... n more" markers and generated class suffixes
+ * (lambdas, CGLIB and JDK proxies, reflection accessors) vary between occurrences of
+ * the same failure, so they are stripped before hashing.
+ */
+public final class StackTraceNormalizer {
+
+    private static final int MAX_FRAMES_PER_CAUSE = 64;
+
+    private static final Pattern HEADER = Pattern.compile("^(Caused by: |Suppressed: )?([\\w$.]+(?:Exception|Error|Throwable)[\\w$]*)(:.*)?$");
+    private static final Pattern FRAME = Pattern.compile("^at\\s+(?:[\\w.\\-]+(?:@[\\w.\\-]+)?/{1,2})?(.+?)(?:\\((.*)\\))?$");
+    private static final Pattern LINE_NUMBER = Pattern.compile(":\\d+$");
+    private static final Pattern LAMBDA = Pattern.compile("\\$\\$Lambda(?:\\$\\d+)?(?:/0x[0-9a-f]+)?(?:/\\d+)?");
+    private static final Pattern CGLIB = Pattern.compile("\\$\\$(EnhancerBySpringCGLIB|SpringCGLIB|FastClassBySpringCGLIB|EnhancerByCGLIB)\\$\\$[0-9a-zA-Z]+");
+    private static final Pattern PROXY = Pattern.compile("\\$Proxy\\d+");
+    private static final Pattern ACCESSOR = Pattern.compile("(Generated(?:Serialization)?(?:Method|Constructor)Accessor)\\d+");
+    private static final Pattern HEX_ADDRESS = Pattern.compile("0x[0-9a-fA-F]+");
+
+    private StackTraceNormalizer() {
+    }
+
+    /**
+     * Normalize a raw stack trace into a stable multi-line form
+     */
+    public static String normalize(String stackTrace) {
+        if (stackTrace == null || stackTrace.isBlank()) {
+            return "";
+        }
+
+        List<String> lines = new ArrayList<>();
+        int framesInCause = 0;
+
+        for (String rawLine : stackTrace.split("\\R")) {
+            String line = rawLine.trim();
+            if (line.isEmpty() || line.startsWith("...")) {
+                continue;
+            }
+
+            if (line.startsWith("at ")) {
+                if (framesInCause++ < MAX_FRAMES_PER_CAUSE) {
+                    lines.add(normalizeFrame(line));
+                }
+                continue;
+            }
+
+            var header = HEADER.matcher(line);
+            if (header.matches()) {
+                String prefix = header.group(1) != null ? header.group(1) : "";
+                lines.add(prefix + stripGenerated(header.group(2)));
+                framesInCause = 0;
+            }
+            // Anything else is a continuation of a multi-line exception message
+        }
+
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Exception class of the outermost throwable, or null when the trace has no recognizable header
+     */
+    public static String exceptionType(String stackTrace) {
+        if (stackTrace == null) {
+            return null;
+        }
+        for (String rawLine : stackTrace.split("\\R")) {
+            var header = HEADER.matcher(rawLine.trim());
+            if (header.matches()) {
+                return header.group(2);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * SHA-256 hex digest of the normalized trace
+     */
+    public static String fingerprint(String normalizedTrace) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalizedTrace.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String normalizeFrame(String line) {
+        var frame = FRAME.matcher(line);
+        if (!frame.matches()) {
+            return stripGenerated(line);
+        }
+
+        String method = stripGenerated(frame.group(1));
+        String location = frame.group(2);
+        if (location == null) {
+            return "at " + method;
+        }
+
+        // Keep the file name, drop the line number: redeploys shift lines without changing the failure
+        String file = LINE_NUMBER.matcher(location).replaceAll("");
+        return "at " + method + "(" + file + ")";
+    }
+
+    private static String stripGenerated(String text) {
+        String result = LAMBDA.matcher(text).replaceAll("\\$\\$Lambda");
+        result = CGLIB.matcher(result).replaceAll("\\$\\$$1");
+        result = PROXY.matcher(result).replaceAll("\\$Proxy");
+        result = ACCESSOR.matcher(result).replaceAll("$1");
+        return HEX_ADDRESS.matcher(result).replaceAll("0x");
+    }
+}
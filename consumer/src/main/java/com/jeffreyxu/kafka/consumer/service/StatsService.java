@@ -3,22 +3,44 @@ package com.jeffreyxu.kafka.consumer.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.Map;
 
 /**
  * Service for tracking processing statistics and metrics.
- * Provides real-time metrics for monitoring and alerting.
+ * Provides real-time metrics for monitoring and alerting, and exports them through Micrometer.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class StatsService {
 
+    // Processing stages timed by kafka.consumer.stage
+    public static final String STAGE_DESERIALIZE = "deserialize";
+    public static final String STAGE_MAP = "map";
+    public static final String STAGE_PERSIST_AUDIT = "persist_audit";
+    public static final String STAGE_PERSIST_ENTITY = "persist_entity";
+    public static final String STAGE_COMMIT = "commit";
+    public static final String STAGE_ACKNOWLEDGE = "acknowledge";
+
+    // Weight of the newest sample in the persist latency EWMA
+    private static final double PERSIST_EWMA_ALPHA = 0.2;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final AtomicLong persistLatencyEwmaBits = new AtomicLong(Double.doubleToLongBits(0.0));
+    private final AtomicLong persistLatencySamples = new AtomicLong(0);
+
     // Message processing counters
     private final Map<String, LongAdder> processedMessageCounters = new ConcurrentHashMap<>();
     private final LongAdder totalProcessedMessages = new LongAdder();
@@ -35,6 +57,79 @@ public class StatsService {
     // Error tracking
     private final Map<String, LongAdder> errorCounters = new ConcurrentHashMap<>();
     
+    // Critical alert tracking
+    private final LongAdder criticalAlerts = new LongAdder();
+    private final AtomicLong maxCriticalAlertLatency = new AtomicLong(0);
+    private final AtomicLong lastCriticalAlertLatency = new AtomicLong(0);
+    
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("kafka.consumer.messages.processed", this, StatsService::getTotalProcessedMessages)
+            .description("Total messages processed")
+            .register(meterRegistry);
+
+        Gauge.builder("kafka.consumer.errors", this, StatsService::getTotalProcessingErrors)
+            .description("Total processing errors")
+            .register(meterRegistry);
+
+        Gauge.builder("kafka.consumer.success.rate", this, StatsService::getSuccessRate)
+            .description("Success rate percentage")
+            .register(meterRegistry);
+
+        Gauge.builder("kafka.consumer.persist.latency.ewma", this, StatsService::getPersistLatencyEwma)
+            .description("Exponentially weighted average of database stage latency in milliseconds")
+            .register(meterRegistry);
+
+        Gauge.builder("kafka.consumer.critical.alerts", this, StatsService::getCriticalAlerts)
+            .description("Critical alerts raised")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Record the time spent in one processing stage
+     *
+     * @param startNanos System.nanoTime() when the stage started
+     * @return System.nanoTime() when the stage ended, to start the next stage from
+     */
+    public long recordStage(String topic, String stage, long startNanos) {
+        long endNanos = System.nanoTime();
+        long elapsed = endNanos - startNanos;
+        stageTimers.computeIfAbsent(topic + '|' + stage, key -> Timer.builder("kafka.consumer.stage")
+                .description("Time spent per event in each consumer processing stage")
+                .tag("topic", topic)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry))
+            .record(elapsed, TimeUnit.NANOSECONDS);
+
+        if (STAGE_PERSIST_AUDIT.equals(stage) || STAGE_PERSIST_ENTITY.equals(stage) || STAGE_COMMIT.equals(stage)) {
+            double elapsedMs = elapsed / 1_000_000.0;
+            persistLatencyEwmaBits.updateAndGet(bits -> {
+                double current = Double.longBitsToDouble(bits);
+                double next = current == 0.0 ? elapsedMs : current + PERSIST_EWMA_ALPHA * (elapsedMs - current);
+                return Double.doubleToLongBits(next);
+            });
+            persistLatencySamples.incrementAndGet();
+        }
+        return endNanos;
+    }
+
+    /**
+     * Exponentially weighted average of database stage latency in milliseconds
+     */
+    public double getPersistLatencyEwma() {
+        return Double.longBitsToDouble(persistLatencyEwmaBits.get());
+    }
+
+    /**
+     * Number of samples folded into the persist latency EWMA so far
+     */
+    public long getPersistLatencySamples() {
+        return persistLatencySamples.get();
+    }
+
     /**
      * Increment processed message count for a specific topic
      */
@@ -61,6 +156,15 @@ public class StatsService {
         log.debug("Incremented error count for type: {}", errorType);
     }
     
+    /**
+     * Record a raised critical alert and how long after the event it was raised
+     */
+    public void recordCriticalAlert(long alertLatencyMs) {
+        criticalAlerts.increment();
+        lastCriticalAlertLatency.set(alertLatencyMs);
+        maxCriticalAlertLatency.updateAndGet(current -> Math.max(current, alertLatencyMs));
+    }
+    
     /**
      * Update processing time statistics
      */
@@ -126,6 +230,27 @@ public class StatsService {
         return result;
     }
     
+    /**
+     * Get critical alerts raised
+     */
+    public long getCriticalAlerts() {
+        return criticalAlerts.sum();
+    }
+    
+    /**
+     * Get the largest event-to-alert latency in milliseconds
+     */
+    public long getMaxCriticalAlertLatency() {
+        return maxCriticalAlertLatency.get();
+    }
+    
+    /**
+     * Get the most recent event-to-alert latency in milliseconds
+     */
+    public long getLastCriticalAlertLatency() {
+        return lastCriticalAlertLatency.get();
+    }
+    
     /**
      * Get average processing time in milliseconds
      */
@@ -211,6 +336,9 @@ public class StatsService {
             .snapshotTime(LocalDateTime.now())
             .topicCounts(getAllTopicCounts())
             .errorCounts(getAllErrorCounts())
+            .criticalAlerts(getCriticalAlerts())
+            .maxCriticalAlertLatency(getMaxCriticalAlertLatency())
+            .lastCriticalAlertLatency(getLastCriticalAlertLatency())
             .build();
     }
     
@@ -225,6 +353,9 @@ public class StatsService {
         totalProcessingTime.reset();
         maxProcessingTime.set(0);
         minProcessingTime.set(Long.MAX_VALUE);
+        criticalAlerts.reset();
+        maxCriticalAlertLatency.set(0);
+        lastCriticalAlertLatency.set(0);
         
         log.info("All statistics have been reset");
     }
@@ -269,5 +400,8 @@ public class StatsService {
         private LocalDateTime snapshotTime;
         private Map<String, Long> topicCounts;
         private Map<String, Long> errorCounts;
+        private long criticalAlerts;
+        private long maxCriticalAlertLatency;
+        private long lastCriticalAlertLatency;
     }
 }
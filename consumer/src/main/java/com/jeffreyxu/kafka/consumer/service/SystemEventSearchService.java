@@ -0,0 +1,217 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import com.jeffreyxu.kafka.consumer.entity.SystemEventEntity;
+import com.jeffreyxu.kafka.consumer.repository.StackTraceFingerprintRepository;
+import com.jeffreyxu.kafka.consumer.repository.SystemEventRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Relevance-ranked search over system event messages, components and stack traces.
+ *
+ * Backed by MySQL FULLTEXT indexes on system_events and stack_trace_fingerprints. Since
+ * stack traces are deduplicated into fingerprints, trace matches are returned as a separate
+ * list of fingerprints rather than as individual events. The indexes are created on startup
+ * when {@code app.search.create-index} is set; without them the service falls back to the
+ * old LIKE scan over message only.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SystemEventSearchService {
+
+    private static final String INDEX_NAME = "ft_system_events_text";
+    private static final String FINGERPRINT_INDEX_NAME = "ft_stack_trace_fingerprints_text";
+    private static final int MAX_STACK_TRACE_MATCHES = 10;
+    /** MySQL ER_PARSE_ERROR, raised for malformed boolean mode queries */
+    private static final int PARSE_ERROR = 1064;
+
+    private final SystemEventRepository systemEventRepository;
+    private final StackTraceFingerprintRepository stackTraceFingerprintRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.search.create-index:false}")
+    private boolean createIndex;
+
+    @Value("${app.search.max-page-size:100}")
+    private int maxPageSize;
+
+    private volatile boolean fullTextAvailable = false;
+    private volatile boolean fingerprintFullTextAvailable = false;
+
+    /**
+     * Detect (and optionally create) the FULLTEXT index once the schema is in place
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initIndex() {
+        fullTextAvailable = prepareIndex("system_events", INDEX_NAME, "message, component, stack_trace");
+        fingerprintFullTextAvailable = prepareIndex("stack_trace_fingerprints", FINGERPRINT_INDEX_NAME,
+            "exception_type, sample_trace");
+
+        if (!fullTextAvailable) {
+            log.warn("FULLTEXT index {} not found, system event search falls back to LIKE", INDEX_NAME);
+        }
+    }
+
+    private boolean prepareIndex(String table, String indexName, String columns) {
+        try {
+            if (indexExists(table, indexName)) {
+                return true;
+            }
+            if (createIndex) {
+                log.info("Creating FULLTEXT index {} on {}", indexName, table);
+                jdbcTemplate.execute("ALTER TABLE " + table + " ADD FULLTEXT INDEX " + indexName + " (" + columns + ")");
+                return true;
+            }
+        } catch (Exception e) {
+            log.warn("Could not prepare FULLTEXT index {}: {}", indexName, e.getMessage());
+        }
+        return false;
+    }
+
+    private boolean indexExists(String table, String indexName) {
+        Integer count = jdbcTemplate.queryForObject("""
+            SELECT COUNT(*) FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?
+            """, Integer.class, table, indexName);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Search system events, most relevant first
+     *
+     * @param query search terms
+     * @param booleanMode whether to interpret the query with MySQL boolean operators
+     * @param page zero-based page number
+     * @param size page size, capped at app.search.max-page-size
+     * @throws InvalidSearchQueryException if MySQL cannot parse a boolean mode query
+     */
+    public Map<String, Object> search(String query, boolean booleanMode, int page, int size) {
+        try {
+            return doSearch(query, booleanMode, page, size);
+        } catch (DataAccessException e) {
+            if (booleanMode && NestedExceptionUtils.getMostSpecificCause(e) instanceof SQLException sql
+                    && sql.getErrorCode() == PARSE_ERROR) {
+                throw new InvalidSearchQueryException("Invalid boolean search syntax: " + query, e);
+            }
+            throw e;
+        }
+    }
+
+    private Map<String, Object> doSearch(String query, boolean booleanMode, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        int pageNumber = Math.max(0, page);
+
+        if (!fullTextAvailable) {
+            return searchWithLike(query, pageNumber, pageSize);
+        }
+
+        int offset = pageNumber * pageSize;
+        List<Object[]> hits = booleanMode
+            ? systemEventRepository.searchBoolean(query, pageSize, offset)
+            : systemEventRepository.searchNaturalLanguage(query, pageSize, offset);
+        long total = booleanMode
+            ? systemEventRepository.countBoolean(query)
+            : systemEventRepository.countNaturalLanguage(query);
+
+        // Hydrate the page in one round trip and keep the relevance order of the hits
+        List<Long> ids = hits.stream().map(hit -> ((Number) hit[0]).longValue()).collect(Collectors.toList());
+        Map<Long, SystemEventEntity> events = systemEventRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(SystemEventEntity::getId, Function.identity()));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Object[] hit : hits) {
+            SystemEventEntity event = events.get(((Number) hit[0]).longValue());
+            if (event == null) {
+                continue;
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("relevance", ((Number) hit[1]).doubleValue());
+            result.put("event", event);
+            results.add(result);
+        }
+
+        Map<String, Object> response = buildResponse(query, booleanMode ? "BOOLEAN" : "NATURAL_LANGUAGE",
+            results, pageNumber, pageSize, total);
+        response.put("matchingStackTraces", searchStackTraces(query, booleanMode));
+        return response;
+    }
+
+    /**
+     * Match the query against deduplicated stack traces
+     */
+    private List<Map<String, Object>> searchStackTraces(String query, boolean booleanMode) {
+        List<Map<String, Object>> matches = new ArrayList<>();
+        if (!fingerprintFullTextAvailable) {
+            return matches;
+        }
+
+        List<Object[]> hits = booleanMode
+            ? stackTraceFingerprintRepository.searchBoolean(query, MAX_STACK_TRACE_MATCHES)
+            : stackTraceFingerprintRepository.searchNaturalLanguage(query, MAX_STACK_TRACE_MATCHES);
+        for (Object[] hit : hits) {
+            Map<String, Object> match = new LinkedHashMap<>();
+            match.put("fingerprintId", hit[0]);
+            match.put("exceptionType", hit[1]);
+            match.put("occurrenceCount", hit[2]);
+            match.put("lastSeen", hit[3]);
+            match.put("relevance", ((Number) hit[4]).doubleValue());
+            matches.add(match);
+        }
+        return matches;
+    }
+
+    private Map<String, Object> searchWithLike(String query, int pageNumber, int pageSize) {
+        Page<SystemEventEntity> events = systemEventRepository.findByMessageContaining(
+            query, PageRequest.of(pageNumber, pageSize));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (SystemEventEntity event : events.getContent()) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("relevance", null);
+            result.put("event", event);
+            results.add(result);
+        }
+
+        return buildResponse(query, "LIKE", results, pageNumber, pageSize, events.getTotalElements());
+    }
+
+    private Map<String, Object> buildResponse(String query, String mode, List<Map<String, Object>> results,
+                                              int pageNumber, int pageSize, long total) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("query", query);
+        response.put("mode", mode);
+        response.put("page", pageNumber);
+        response.put("size", pageSize);
+        response.put("totalHits", total);
+        response.put("totalPages", (total + pageSize - 1) / pageSize);
+        response.put("results", results);
+        return response;
+    }
+
+    /**
+     * Whether searches are served by the FULLTEXT index
+     */
+    public boolean isFullTextAvailable() {
+        return fullTextAvailable;
+    }
+}
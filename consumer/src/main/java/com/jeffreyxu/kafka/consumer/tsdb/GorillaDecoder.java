@@ -0,0 +1,128 @@
+package com.jeffreyxu.kafka.consumer.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads back the points written by {@link GorillaEncoder}, in order.
+ *
+ * Usage: {@code while (decoder.next()) { decoder.timestamp(); decoder.value(); }}. Not
+ * thread-safe; a decoder only reads, so any number can scan one region.
+ */
+public class GorillaDecoder {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int count;
+
+    private long bitPosition;
+    private int read;
+    private long timestamp;
+    private long delta;
+    private long valueBits;
+    private int leadingZeros = -1;
+    private int trailingZeros;
+
+    /**
+     * @param offset first byte of the region in {@code buffer}
+     * @param count points in the region
+     */
+    public GorillaDecoder(ByteBuffer buffer, int offset, int count) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.count = count;
+    }
+
+    /**
+     * Advance to the next point
+     *
+     * @return false once every point has been read
+     */
+    public boolean next() {
+        if (read >= count) {
+            return false;
+        }
+        if (read == 0) {
+            timestamp = readBits(64);
+            valueBits = readBits(64);
+        } else {
+            delta += readDeltaOfDelta();
+            timestamp += delta;
+            valueBits ^= readXor();
+        }
+        read++;
+        return true;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public double value() {
+        return Double.longBitsToDouble(valueBits);
+    }
+
+    long bitPosition() {
+        return bitPosition;
+    }
+
+    long previousDelta() {
+        return delta;
+    }
+
+    int previousLeadingZeros() {
+        return leadingZeros;
+    }
+
+    int previousTrailingZeros() {
+        return trailingZeros;
+    }
+
+    private long readDeltaOfDelta() {
+        if (readBits(1) == 0) {
+            return 0;
+        }
+        if (readBits(1) == 0) {
+            return signed(readBits(7), 7);
+        }
+        if (readBits(1) == 0) {
+            return signed(readBits(9), 9);
+        }
+        if (readBits(1) == 0) {
+            return signed(readBits(12), 12);
+        }
+        return readBits(64);
+    }
+
+    private long readXor() {
+        if (readBits(1) == 0) {
+            return 0;
+        }
+        if (readBits(1) == 1) {
+            leadingZeros = (int) readBits(5);
+            int meaningfulBits = (int) readBits(6);
+            if (meaningfulBits == 0) {
+                meaningfulBits = 64;
+            }
+            trailingZeros = 64 - leadingZeros - meaningfulBits;
+        }
+        return readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private long readBits(int bits) {
+        long value = 0;
+        while (bits > 0) {
+            int index = offset + (int) (bitPosition >>> 3);
+            int available = 8 - (int) (bitPosition & 7);
+            int take = Math.min(available, bits);
+            int chunk = (buffer.get(index) >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bitPosition += take;
+            bits -= take;
+        }
+        return value;
+    }
+}
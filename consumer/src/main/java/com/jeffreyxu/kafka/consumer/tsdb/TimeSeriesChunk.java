@@ -0,0 +1,251 @@
+package com.jeffreyxu.kafka.consumer.tsdb;
+
+import com.jeffreyxu.kafka.common.storage.MappedBuffers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One chunk file of a series: a header and Gorilla-encoded points.
+ *
+ * Header: {@code [magic][count][first timestamp][last timestamp]}. The count is written after
+ * each point's bits, so a crash mid-append loses at most that point; on open the points are
+ * decoded again to find the end of the data, and anything past it is zeroed for the encoder.
+ * The first and last timestamps let range queries skip chunks without decoding them.
+ *
+ * Only the head chunk, which points are appended to, is memory-mapped. A full head is
+ * {@link #seal sealed}: forced to disk and unmapped, since each mapping takes one of the
+ * process's {@code vm.max_map_count} areas for as long as it lives. A sealed chunk keeps its
+ * header in memory and is read into a heap buffer, through the page cache, when a scan needs
+ * its points.
+ */
+class TimeSeriesChunk {
+
+    static final String SUFFIX = ".chunk";
+    private static final int MAGIC = 0x47525431;
+    private static final int HEADER_SIZE = 24;
+
+    private final Path file;
+    private final int size;
+    /** Mapping and encoder of the head; null once sealed */
+    private MappedByteBuffer buffer;
+    private GorillaEncoder encoder;
+    private int count;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long usedBytes;
+
+    private TimeSeriesChunk(Path file, int size, MappedByteBuffer buffer, GorillaEncoder encoder) {
+        this.file = file;
+        this.size = size;
+        this.buffer = buffer;
+        this.encoder = encoder;
+    }
+
+    static TimeSeriesChunk create(Path file, int size) throws IOException {
+        if (size < HEADER_SIZE + GorillaEncoder.MAX_POINT_BITS / 8 + 1) {
+            throw new IllegalArgumentException("Chunk size too small: " + size);
+        }
+        MappedByteBuffer buffer = map(file, size);
+        buffer.putInt(0, MAGIC);
+        TimeSeriesChunk chunk = new TimeSeriesChunk(file, size, buffer, new GorillaEncoder(buffer, HEADER_SIZE, size - HEADER_SIZE));
+        chunk.usedBytes = HEADER_SIZE;
+        return chunk;
+    }
+
+    /**
+     * Open a chunk to append to, mapped
+     */
+    static TimeSeriesChunk openHead(Path file) throws IOException {
+        int size = (int) Files.size(file);
+        MappedByteBuffer buffer = map(file, size);
+        if (buffer.getInt(0) != MAGIC) {
+            MappedBuffers.unmap(buffer);
+            throw new IOException("Not a time series chunk: " + file);
+        }
+        GorillaEncoder encoder = GorillaEncoder.resume(buffer, HEADER_SIZE, size - HEADER_SIZE, buffer.getInt(4));
+
+        // Clear bits of a torn append so that later appends can OR into zeroes
+        long end = encoder.bitPosition();
+        int index = HEADER_SIZE + (int) (end >>> 3);
+        if ((end & 7) != 0) {
+            buffer.put(index, (byte) (buffer.get(index) & (0xff << (8 - (end & 7)))));
+            index++;
+        }
+        int tornEnd = Math.min(size, index + GorillaEncoder.MAX_POINT_BITS / 8 + 1);
+        for (; index < tornEnd; index++) {
+            buffer.put(index, (byte) 0);
+        }
+        TimeSeriesChunk chunk = new TimeSeriesChunk(file, size, buffer, encoder);
+        chunk.readHeader(buffer, encoder);
+        return chunk;
+    }
+
+    /**
+     * Open a full chunk, unmapped; only its header is kept in memory
+     */
+    static TimeSeriesChunk openSealed(Path file) throws IOException {
+        int size = (int) Files.size(file);
+        ByteBuffer data = read(file, size);
+        if (size < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a time series chunk: " + file);
+        }
+        // Decoded once to find the end of the data, as for the head
+        GorillaEncoder encoder = GorillaEncoder.resume(data, HEADER_SIZE, size - HEADER_SIZE, data.getInt(4));
+        TimeSeriesChunk chunk = new TimeSeriesChunk(file, size, null, null);
+        chunk.readHeader(data, encoder);
+        return chunk;
+    }
+
+    private void readHeader(ByteBuffer data, GorillaEncoder resumed) {
+        count = resumed.count();
+        firstTimestamp = data.getLong(8);
+        lastTimestamp = data.getLong(16);
+        usedBytes = HEADER_SIZE + (resumed.bitPosition() + 7) / 8;
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static ByteBuffer read(Path file, int length) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (data.hasRemaining()) {
+                if (channel.read(data, data.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @return false if the chunk is full or sealed
+     */
+    boolean append(long timestamp, double value) {
+        if (encoder == null || !encoder.append(timestamp, value)) {
+            return false;
+        }
+        if (encoder.count() == 1) {
+            buffer.putLong(8, timestamp);
+            firstTimestamp = timestamp;
+        }
+        buffer.putLong(16, timestamp);
+        buffer.putInt(4, encoder.count());
+        lastTimestamp = timestamp;
+        count = encoder.count();
+        usedBytes = HEADER_SIZE + (encoder.bitPosition() + 7) / 8;
+        return true;
+    }
+
+    /**
+     * Pass the points in {@code [from, to)} to {@code consumer}, in order
+     *
+     * @throws UncheckedIOException if a sealed chunk cannot be read
+     */
+    void scan(long from, long to, PointConsumer consumer) {
+        if (count == 0 || lastTimestamp < from || firstTimestamp >= to) {
+            return;
+        }
+        ByteBuffer data;
+        if (buffer != null) {
+            data = buffer;
+        } else {
+            try {
+                data = read(file, (int) usedBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read chunk " + file, e);
+            }
+        }
+        GorillaDecoder decoder = new GorillaDecoder(data, HEADER_SIZE, count);
+        while (decoder.next()) {
+            long timestamp = decoder.timestamp();
+            if (timestamp >= to) {
+                return;
+            }
+            if (timestamp >= from) {
+                consumer.accept(timestamp, decoder.value());
+            }
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Header and encoded points, in bytes
+     */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    long sizeInBytes() {
+        return size;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    boolean isMapped() {
+        return buffer != null;
+    }
+
+    void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Force the points to disk and release the mapping; the chunk takes no more appends
+     */
+    void seal() {
+        if (buffer == null) {
+            return;
+        }
+        buffer.force();
+        MappedByteBuffer mapped = buffer;
+        buffer = null;
+        encoder = null;
+        MappedBuffers.unmap(mapped);
+    }
+
+    /**
+     * Release the mapping, if any, and delete the file
+     */
+    void delete() throws IOException {
+        if (buffer != null) {
+            MappedByteBuffer mapped = buffer;
+            buffer = null;
+            encoder = null;
+            MappedBuffers.unmap(mapped);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    @FunctionalInterface
+    interface PointConsumer {
+        void accept(long timestamp, double value);
+    }
+}
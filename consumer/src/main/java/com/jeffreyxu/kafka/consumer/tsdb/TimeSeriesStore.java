@@ -0,0 +1,277 @@
+package com.jeffreyxu.kafka.consumer.tsdb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Embedded time-series store of Gorilla-compressed chunk files.
+ *
+ * Each series is a directory (its URL-encoded name) of fixed-size chunk files named by the
+ * first timestamp they hold; the newest is the head that points are appended to, and a full
+ * head is sealed and replaced. Only heads are memory-mapped, one mapping per series. Timestamps of a series must increase: a point at or
+ * before the series' last timestamp (a redelivered or late event) is rejected, which also
+ * makes appends idempotent. Retention drops whole chunks. Thread-safe; appends and reads of
+ * one series are serialized on it.
+ */
+public class TimeSeriesStore implements Closeable {
+
+    private final Path directory;
+    private final int chunkSize;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * Open or create a store in a directory
+     *
+     * @param chunkSize bytes per chunk file
+     */
+    public TimeSeriesStore(Path directory, int chunkSize) throws IOException {
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> dirs = Files.list(directory)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                String name = URLDecoder.decode(dir.getFileName().toString(), StandardCharsets.UTF_8);
+                series.put(name, Series.open(dir));
+            }
+        }
+    }
+
+    /**
+     * Append a point to a series, creating the series if needed
+     *
+     * @return false if the point is not after the series' last point and was dropped
+     */
+    public boolean append(String name, long timestamp, double value) throws IOException {
+        Series target = series.computeIfAbsent(name,
+            n -> new Series(directory.resolve(URLEncoder.encode(n, StandardCharsets.UTF_8))));
+        return target.append(timestamp, value, chunkSize);
+    }
+
+    /**
+     * Points of a series in {@code [from, to)}
+     */
+    public List<Point> query(String name, long from, long to) {
+        List<Point> points = new ArrayList<>();
+        Series target = series.get(name);
+        if (target != null) {
+            target.scan(from, to, (timestamp, value) -> points.add(new Point(timestamp, value)));
+        }
+        return points;
+    }
+
+    /**
+     * Points of a series in {@code [from, to)} aggregated into buckets of {@code step}
+     * milliseconds, aligned to multiples of the step; empty buckets are left out
+     */
+    public List<Bucket> downsample(String name, long from, long to, long step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + step);
+        }
+        List<Bucket> buckets = new ArrayList<>();
+        Series target = series.get(name);
+        if (target == null) {
+            return buckets;
+        }
+        BucketBuilder builder = new BucketBuilder(step, buckets);
+        target.scan(from, to, builder::add);
+        builder.finish();
+        return buckets;
+    }
+
+    public List<String> seriesNames() {
+        return series.keySet().stream().sorted().toList();
+    }
+
+    public boolean hasSeries(String name) {
+        return series.containsKey(name);
+    }
+
+    public int seriesCount() {
+        return series.size();
+    }
+
+    /**
+     * Delete chunks whose points are all before {@code timestamp}; a series' head is kept
+     *
+     * @return chunks deleted
+     */
+    public int purgeBefore(long timestamp) throws IOException {
+        int deleted = 0;
+        for (Series target : series.values()) {
+            deleted += target.purgeBefore(timestamp);
+        }
+        return deleted;
+    }
+
+    /**
+     * Totals over all series
+     */
+    public StoreStats stats() {
+        long chunks = 0;
+        long points = 0;
+        long usedBytes = 0;
+        long fileBytes = 0;
+        for (Series target : series.values()) {
+            synchronized (target) {
+                for (TimeSeriesChunk chunk : target.chunks) {
+                    chunks++;
+                    points += chunk.count();
+                    usedBytes += chunk.usedBytes();
+                    fileBytes += chunk.sizeInBytes();
+                }
+            }
+        }
+        return new StoreStats(series.size(), chunks, points, usedBytes, fileBytes);
+    }
+
+    /**
+     * Force every head chunk to disk and release its mapping; the store takes no more appends
+     */
+    @Override
+    public void close() {
+        for (Series target : series.values()) {
+            synchronized (target) {
+                if (!target.chunks.isEmpty()) {
+                    target.chunks.get(target.chunks.size() - 1).seal();
+                }
+            }
+        }
+    }
+
+    public record Point(long timestamp, double value) {
+    }
+
+    /**
+     * @param start first millisecond of the bucket
+     */
+    public record Bucket(long start, long count, double min, double max, double avg, double last) {
+    }
+
+    /**
+     * @param usedBytes chunk headers and encoded points
+     * @param fileBytes chunk files, including the unused tail of each
+     */
+    public record StoreStats(long series, long chunks, long points, long usedBytes, long fileBytes) {
+
+        public double bytesPerPoint() {
+            return points == 0 ? 0.0 : (double) usedBytes / points;
+        }
+    }
+
+    private static final class Series {
+        final Path directory;
+        final List<TimeSeriesChunk> chunks = new ArrayList<>();
+
+        Series(Path directory) {
+            this.directory = directory;
+        }
+
+        static Series open(Path directory) {
+            Series opened = new Series(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                List<Path> chunkFiles = files.filter(f -> f.getFileName().toString().endsWith(TimeSeriesChunk.SUFFIX))
+                    .sorted().toList();
+                for (int i = 0; i < chunkFiles.size(); i++) {
+                    Path file = chunkFiles.get(i);
+                    opened.chunks.add(i == chunkFiles.size() - 1 ? TimeSeriesChunk.openHead(file) : TimeSeriesChunk.openSealed(file));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open series " + directory, e);
+            }
+            return opened;
+        }
+
+        synchronized boolean append(long timestamp, double value, int chunkSize) throws IOException {
+            TimeSeriesChunk head = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (head != null && head.count() > 0 && timestamp <= head.lastTimestamp()) {
+                return false;
+            }
+            if (head == null || !head.append(timestamp, value)) {
+                if (head != null) {
+                    head.seal();
+                }
+                Files.createDirectories(directory);
+                // Zero-padded so that file names sort by time; negative timestamps are not expected
+                head = TimeSeriesChunk.create(directory.resolve(String.format("%020d", timestamp) + TimeSeriesChunk.SUFFIX), chunkSize);
+                chunks.add(head);
+                head.append(timestamp, value);
+            }
+            return true;
+        }
+
+        synchronized void scan(long from, long to, TimeSeriesChunk.PointConsumer consumer) {
+            for (TimeSeriesChunk chunk : chunks) {
+                chunk.scan(from, to, consumer);
+            }
+        }
+
+        synchronized int purgeBefore(long timestamp) throws IOException {
+            int deleted = 0;
+            Iterator<TimeSeriesChunk> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                TimeSeriesChunk chunk = iterator.next();
+                if (chunk == chunks.get(chunks.size() - 1) || chunk.lastTimestamp() >= timestamp) {
+                    break;
+                }
+                chunk.delete();
+                iterator.remove();
+                deleted++;
+            }
+            return deleted;
+        }
+    }
+
+    /**
+     * Folds time-ordered points into step-aligned buckets
+     */
+    private static final class BucketBuilder {
+        final long step;
+        final List<Bucket> buckets;
+        long start = Long.MIN_VALUE;
+        long count;
+        double min;
+        double max;
+        double sum;
+        double last;
+
+        BucketBuilder(long step, List<Bucket> buckets) {
+            this.step = step;
+            this.buckets = buckets;
+        }
+
+        void add(long timestamp, double value) {
+            long bucketStart = timestamp - Math.floorMod(timestamp, step);
+            if (bucketStart != start) {
+                finish();
+                start = bucketStart;
+                count = 0;
+                min = Double.POSITIVE_INFINITY;
+                max = Double.NEGATIVE_INFINITY;
+                sum = 0;
+            }
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            last = value;
+        }
+
+        void finish() {
+            if (count > 0) {
+                buckets.add(new Bucket(start, count, min, max, sum / count, last));
+                count = 0;
+            }
+        }
+    }
+}
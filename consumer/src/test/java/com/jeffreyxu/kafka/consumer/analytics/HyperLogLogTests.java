@@ -0,0 +1,82 @@
+package com.jeffreyxu.kafka.consumer.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the HyperLogLog distinct-count sketch.
+ */
+class HyperLogLogTests {
+
+    @Test
+    void testSmallSetsStaySparseAndNearExact() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 100; i++) {
+            sketch.add("order-" + i);
+            sketch.add("order-" + i);
+        }
+
+        assertThat(sketch.isSparse()).isTrue();
+        assertThat(sketch.estimate()).isBetween(98L, 102L);
+    }
+
+    @Test
+    void testLargeSetWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        int distinct = 200_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.add("customer-" + i);
+        }
+
+        assertThat(sketch.isSparse()).isFalse();
+        double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+        assertThat(error).isLessThan(3 * sketch.standardError());
+    }
+
+    @Test
+    void testMergeIsUnionAndIdempotent() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (int i = 0; i < 5_000; i++) {
+            first.add("host-" + i);
+        }
+        for (int i = 2_500; i < 10_000; i++) {
+            second.add("host-" + i);
+        }
+
+        first.merge(second);
+        long union = first.estimate();
+        first.merge(second);
+
+        assertThat(first.estimate()).isEqualTo(union);
+        assertThat(Math.abs(union - 10_000) / 10_000.0).isLessThan(3 * first.standardError());
+    }
+
+    @Test
+    void testSerializationRoundTrip() {
+        HyperLogLog sparse = new HyperLogLog(14);
+        sparse.add("a");
+        sparse.add("b");
+        HyperLogLog dense = new HyperLogLog(10);
+        for (int i = 0; i < 10_000; i++) {
+            dense.add(Integer.toString(i));
+        }
+
+        HyperLogLog sparseCopy = HyperLogLog.fromBytes(sparse.toBytes());
+        HyperLogLog denseCopy = HyperLogLog.fromBytes(dense.toBytes());
+
+        assertThat(sparseCopy.isSparse()).isTrue();
+        assertThat(sparseCopy.estimate()).isEqualTo(sparse.estimate());
+        assertThat(denseCopy.getPrecision()).isEqualTo(10);
+        assertThat(denseCopy.estimate()).isEqualTo(dense.estimate());
+        assertThat(sparse.toBytes().length).isLessThan(dense.toBytes().length);
+    }
+
+    @Test
+    void testMergeRejectsDifferentPrecision() {
+        assertThatThrownBy(() -> new HyperLogLog(12).merge(new HyperLogLog(14)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,69 @@
+package com.jeffreyxu.kafka.consumer.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the Space-Saving top-K summary.
+ */
+class SpaceSavingTests {
+
+    @Test
+    void testExactWhileUnderCapacity() {
+        SpaceSaving summary = new SpaceSaving(10);
+        summary.offer("a", 5);
+        summary.offer("b", 2);
+        summary.offer("a", 1.5);
+        summary.offer("c", 3);
+
+        assertThat(summary.top(2)).extracting(SpaceSaving.Entry::key).containsExactly("a", "c");
+        assertThat(summary.top(1).get(0).count()).isEqualTo(6.5);
+        assertThat(summary.top(1).get(0).error()).isZero();
+        assertThat(summary.minCount()).isZero();
+    }
+
+    @Test
+    void testFindsHeavyHittersInSkewedStream() {
+        SpaceSaving summary = new SpaceSaving(50);
+        Map<String, Double> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Ten heavy customers take half the traffic, the rest is spread over 10k keys
+            String key = random.nextBoolean() ? "heavy-" + random.nextInt(10) : "tail-" + random.nextInt(10_000);
+            double weight = 1 + random.nextInt(5);
+            summary.offer(key, weight);
+            exact.merge(key, weight, Double::sum);
+        }
+
+        List<SpaceSaving.Entry> top = summary.top(10);
+        assertThat(top).extracting(SpaceSaving.Entry::key).allMatch(key -> key.startsWith("heavy-"));
+        for (SpaceSaving.Entry entry : top) {
+            double actual = exact.get(entry.key());
+            assertThat(entry.count()).isGreaterThanOrEqualTo(actual);
+            assertThat(entry.guaranteedCount()).isLessThanOrEqualTo(actual);
+            assertThat(entry.error()).isLessThanOrEqualTo(summary.getTotalWeight() / 50);
+        }
+    }
+
+    @Test
+    void testMergeAddsCountsAcrossWindows() {
+        SpaceSaving first = new SpaceSaving(3);
+        SpaceSaving second = new SpaceSaving(3);
+        first.offer("a", 10);
+        first.offer("b", 4);
+        second.offer("a", 1);
+        second.offer("c", 8);
+
+        SpaceSaving merged = SpaceSaving.merge(List.of(first, second), 3);
+
+        assertThat(merged.top(3)).extracting(SpaceSaving.Entry::key).containsExactly("a", "c", "b");
+        assertThat(merged.top(1).get(0).count()).isEqualTo(11);
+        assertThat(merged.getTotalWeight()).isEqualTo(23);
+    }
+}
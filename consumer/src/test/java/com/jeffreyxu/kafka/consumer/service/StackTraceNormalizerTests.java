@@ -0,0 +1,69 @@
+package com.jeffreyxu.kafka.consumer.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for stack trace normalization and fingerprinting.
+ */
+class StackTraceNormalizerTests {
+
+    private static final String TRACE_A = """
+        java.lang.IllegalStateException: Order 12345 not found
+        \tat com.example.OrderService.load(OrderService.java:42)
+        \tat com.example.OrderService$$SpringCGLIB$$0.load(<generated>)
+        \tat com.example.OrderController$$Lambda$812/0x0000000801234567.apply(Unknown Source)
+        \tat java.base/java.lang.Thread.run(Thread.java:833)
+        Caused by: java.sql.SQLException: Connection 0x7f3a reset
+        \tat com.mysql.cj.jdbc.ConnectionImpl.execSQL(ConnectionImpl.java:1234)
+        \t... 12 more
+        """;
+
+    private static final String TRACE_B = """
+        java.lang.IllegalStateException: Order 99999 not found
+        \tat com.example.OrderService.load(OrderService.java:57)
+        \tat com.example.OrderService$$SpringCGLIB$$1.load(<generated>)
+        \tat com.example.OrderController$$Lambda$977/0x0000000809abcdef.apply(Unknown Source)
+        \tat java.base/java.lang.Thread.run(Thread.java:840)
+        Caused by: java.sql.SQLException: Connection 0x11aa reset
+        \tat com.mysql.cj.jdbc.ConnectionImpl.execSQL(ConnectionImpl.java:1301)
+        \t... 7 more
+        """;
+
+    @Test
+    void testRepeatedFailuresShareFingerprint() {
+        String normalizedA = StackTraceNormalizer.normalize(TRACE_A);
+        String normalizedB = StackTraceNormalizer.normalize(TRACE_B);
+
+        assertThat(normalizedA).isEqualTo(normalizedB);
+        assertThat(StackTraceNormalizer.fingerprint(normalizedA))
+            .isEqualTo(StackTraceNormalizer.fingerprint(normalizedB))
+            .hasSize(64);
+    }
+
+    @Test
+    void testNormalizedTraceDropsVolatileParts() {
+        String normalized = StackTraceNormalizer.normalize(TRACE_A);
+
+        assertThat(normalized).startsWith("java.lang.IllegalStateException\n");
+        assertThat(normalized).contains("at com.example.OrderService.load(OrderService.java)");
+        assertThat(normalized).contains("at java.lang.Thread.run(Thread.java)");
+        assertThat(normalized).contains("Caused by: java.sql.SQLException");
+        assertThat(normalized).doesNotContain("12345", "Lambda$812", "CGLIB$$0", "more");
+    }
+
+    @Test
+    void testDifferentThrowSitesDiffer() {
+        String other = TRACE_A.replace("OrderService.load", "OrderService.save");
+
+        assertThat(StackTraceNormalizer.fingerprint(StackTraceNormalizer.normalize(other)))
+            .isNotEqualTo(StackTraceNormalizer.fingerprint(StackTraceNormalizer.normalize(TRACE_A)));
+    }
+
+    @Test
+    void testExceptionType() {
+        assertThat(StackTraceNormalizer.exceptionType(TRACE_A)).isEqualTo("java.lang.IllegalStateException");
+        assertThat(StackTraceNormalizer.exceptionType("not a trace")).isNull();
+    }
+}
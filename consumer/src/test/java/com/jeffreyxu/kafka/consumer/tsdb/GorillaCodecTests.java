@@ -0,0 +1,145 @@
+package com.jeffreyxu.kafka.consumer.tsdb;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the Gorilla codec and the time-series store on top of it.
+ */
+class GorillaCodecTests {
+
+    @Test
+    void testRoundTripOfIrregularPoints() {
+        Random random = new Random(11);
+        int points = 5_000;
+        long[] timestamps = new long[points];
+        double[] values = new double[points];
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < points; i++) {
+            // Mostly regular, with jitter, gaps, repeats and the odd special value
+            timestamp += switch (i % 50) {
+                case 7 -> random.nextInt(100_000_000);
+                case 13 -> 0;
+                default -> 1000 + random.nextInt(5) - 2;
+            };
+            timestamps[i] = timestamp;
+            values[i] = switch (i % 97) {
+                case 3 -> Double.NaN;
+                case 5 -> -0.0;
+                case 11 -> Double.MAX_VALUE;
+                default -> i % 10 == 0 ? values[Math.max(0, i - 1)] : Math.round(random.nextGaussian() * 1000) / 100.0;
+            };
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(points * 20);
+        GorillaEncoder encoder = new GorillaEncoder(buffer, 8, buffer.capacity() - 8);
+        for (int i = 0; i < points; i++) {
+            assertThat(encoder.append(timestamps[i], values[i])).isTrue();
+        }
+
+        GorillaDecoder decoder = new GorillaDecoder(buffer, 8, points);
+        for (int i = 0; i < points; i++) {
+            assertThat(decoder.next()).isTrue();
+            assertThat(decoder.timestamp()).isEqualTo(timestamps[i]);
+            assertThat(Double.doubleToRawLongBits(decoder.value())).isEqualTo(Double.doubleToRawLongBits(values[i]));
+        }
+        assertThat(decoder.next()).isFalse();
+
+        // Appending after a resume continues the same stream
+        GorillaEncoder resumed = GorillaEncoder.resume(buffer, 8, buffer.capacity() - 8, points);
+        assertThat(resumed.bitPosition()).isEqualTo(encoder.bitPosition());
+        resumed.append(timestamp + 1000, 1.5);
+        GorillaDecoder again = new GorillaDecoder(buffer, 8, points + 1);
+        while (again.next()) {
+            // skip to the last point
+        }
+        assertThat(again.timestamp()).isEqualTo(timestamp + 1000);
+        assertThat(again.value()).isEqualTo(1.5);
+    }
+
+    @Test
+    void testRegularMetricsCompressWell() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        GorillaEncoder encoder = new GorillaEncoder(buffer, 0, buffer.capacity());
+        int points = 10_000;
+        for (int i = 0; i < points; i++) {
+            // A gauge sampled every second that changes now and then
+            assertThat(encoder.append(1_700_000_000_000L + i * 1000L, 40.0 + (i / 60) % 5)).isTrue();
+        }
+        double bytesPerPoint = encoder.bitPosition() / 8.0 / points;
+        assertThat(bytesPerPoint).isLessThan(1.0);
+    }
+
+    @Test
+    void testStoreRollsChunksReopensAndDownsamples(@TempDir Path directory) throws Exception {
+        long start = 1_700_000_000_000L;
+        try (TimeSeriesStore store = new TimeSeriesStore(directory, 512)) {
+            for (int i = 0; i < 1_000; i++) {
+                assertThat(store.append("billing:jvm:cpu", start + i * 1000L, i % 10)).isTrue();
+            }
+            // Redelivered point
+            assertThat(store.append("billing:jvm:cpu", start, 99)).isFalse();
+            assertThat(store.stats().chunks()).isGreaterThan(1);
+        }
+
+        try (TimeSeriesStore store = new TimeSeriesStore(directory, 512)) {
+            assertThat(store.seriesNames()).containsExactly("billing:jvm:cpu");
+            assertThat(store.seriesCount()).isEqualTo(1);
+            assertThat(store.hasSeries("billing:jvm:heap")).isFalse();
+            assertThat(store.stats().points()).isEqualTo(1_000);
+            assertThat(store.append("billing:jvm:cpu", start + 1_000_000L, 5)).isTrue();
+
+            List<TimeSeriesStore.Point> points = store.query("billing:jvm:cpu", start + 10_000, start + 20_000);
+            assertThat(points).hasSize(10);
+            assertThat(points.get(0).value()).isEqualTo(0.0);
+
+            List<TimeSeriesStore.Bucket> buckets = store.downsample("billing:jvm:cpu", start, start + 100_000, 10_000);
+            assertThat(buckets).hasSize(10 + (start % 10_000 == 0 ? 0 : 1));
+            long total = buckets.stream().mapToLong(TimeSeriesStore.Bucket::count).sum();
+            assertThat(total).isEqualTo(100);
+            assertThat(buckets.get(1).min()).isEqualTo(0.0);
+            assertThat(buckets.get(1).max()).isEqualTo(9.0);
+
+            assertThat(store.purgeBefore(start + 500_000L)).isGreaterThan(0);
+            assertThat(store.query("billing:jvm:cpu", start, start + 1_001_000L).get(0).timestamp()).isGreaterThan(start);
+        }
+    }
+
+    @Test
+    void testOnlyHeadChunksStayMapped(@TempDir Path directory) throws Exception {
+        Path maps = Path.of("/proc/self/maps");
+        Assumptions.assumeTrue(Files.isReadable(maps), "needs /proc/self/maps");
+        long start = 1_700_000_000_000L;
+        try (TimeSeriesStore store = new TimeSeriesStore(directory, 512)) {
+            for (int i = 0; i < 1_000; i++) {
+                store.append("billing:jvm:cpu", start + i * 1000L, i % 10);
+                store.append("billing:jvm:heap", start + i * 1000L, i * 1.5);
+            }
+            assertThat(store.stats().chunks()).isGreaterThan(4);
+            assertThat(mappedChunks(maps, directory)).isEqualTo(2);
+            // Sealed chunks are read from the file
+            assertThat(store.query("billing:jvm:heap", start, start + 10_000)).hasSize(10);
+
+            store.purgeBefore(start + 500_000L);
+            assertThat(mappedChunks(maps, directory)).isEqualTo(2);
+        }
+        assertThat(mappedChunks(maps, directory)).isZero();
+    }
+
+    private static long mappedChunks(Path maps, Path directory) throws Exception {
+        return Files.readAllLines(maps).stream()
+            .filter(line -> line.contains(directory.toString()) && line.contains(".chunk"))
+            .map(line -> line.substring(line.indexOf(directory.toString())))
+            .distinct()
+            .count();
+    }
+}
@@ -225,8 +225,8 @@ ssh -i $SSH_KEY -o StrictHostKeyChecking=no ubuntu@$K8S_HOST "
     echo 'Waiting for Producer deployment...'
     kubectl rollout status deployment/spring-kafka-producer -n $NAMESPACE --timeout=300s
     
-    echo 'Waiting for Consumer deployment...'
-    kubectl rollout status deployment/spring-kafka-consumer -n $NAMESPACE --timeout=300s
+    echo 'Waiting for Consumer statefulset...'
+    kubectl rollout status statefulset/spring-kafka-consumer -n $NAMESPACE --timeout=300s
     
     echo 'Cleaning up temporary files...'
     rm -rf /tmp/temp-k8s
@@ -262,7 +262,7 @@ ssh -i $SSH_KEY -o StrictHostKeyChecking=no ubuntu@$K8S_HOST "
     kubectl exec deployment/spring-kafka-producer -n $NAMESPACE -- curl -f http://localhost:8080/actuator/health 2>/dev/null && echo 'Producer: ✅ Healthy' || echo 'Producer: ❌ Not ready'
     
     echo 'Testing Consumer health...'
-    kubectl exec deployment/spring-kafka-consumer -n $NAMESPACE -- curl -f http://localhost:8081/api/consumer/health 2>/dev/null && echo 'Consumer: ✅ Healthy' || echo 'Consumer: ❌ Not ready'
+    kubectl exec statefulset/spring-kafka-consumer -n $NAMESPACE -- curl -f http://localhost:8081/api/consumer/health 2>/dev/null && echo 'Consumer: ✅ Healthy' || echo 'Consumer: ❌ Not ready'
 "
 
 # Cleanup local files
@@ -5,6 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Spring Boot application for Kafka message producer.
@@ -17,6 +18,7 @@ import org.springframework.kafka.annotation.EnableKafka;
     "com.jeffreyxu.kafka.common"
 })
 @EnableKafka
+@EnableScheduling
 @EnableJpaRepositories(basePackages = "com.jeffreyxu.kafka.producer.repository")
 @EntityScan(basePackages = "com.jeffreyxu.kafka.producer.entity")
 public class ProducerApplication {
@@ -0,0 +1,103 @@
+package com.jeffreyxu.kafka.producer.coalesce;
+
+import com.jeffreyxu.kafka.common.model.SystemEvent;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * METRIC_UPDATE events of one service and component merged over a window.
+ *
+ * Keeps the number of events, the smallest and largest value of every numeric metadata entry,
+ * and the last event, whose metadata is carried over as is. Not thread-safe; the coalescing
+ * service only touches an aggregate inside a map compute for its key.
+ */
+public class MetricAggregate {
+
+    /** Metadata entry of a merged event holding count, min, max and the time span */
+    public static final String COALESCED_METADATA_KEY = "coalesced";
+
+    private final long startedAtNanos;
+    private final LocalDateTime firstTimestamp;
+    private final Map<String, Double> min = new LinkedHashMap<>();
+    private final Map<String, Double> max = new LinkedHashMap<>();
+    private SystemEvent last;
+    private long count;
+
+    public MetricAggregate(SystemEvent first, long startedAtNanos) {
+        this.startedAtNanos = startedAtNanos;
+        this.firstTimestamp = first.getTimestamp();
+        add(first);
+    }
+
+    public void add(SystemEvent event) {
+        count++;
+        last = event;
+        if (event.getMetadata() == null) {
+            return;
+        }
+        event.getMetadata().forEach((name, value) -> {
+            if (value instanceof Number number) {
+                double v = number.doubleValue();
+                min.merge(name, v, Math::min);
+                max.merge(name, v, Math::max);
+            }
+        });
+    }
+
+    /**
+     * Fold in the aggregate of a later window of the same key, e.g. when this one's merged
+     * event could not be sent and is kept for the next flush
+     */
+    public void merge(MetricAggregate later) {
+        count += later.count;
+        last = later.last;
+        later.min.forEach((name, v) -> min.merge(name, v, Math::min));
+        later.max.forEach((name, v) -> max.merge(name, v, Math::max));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getStartedAtNanos() {
+        return startedAtNanos;
+    }
+
+    /**
+     * The event to send for this window: the only event if there was one, otherwise a copy of
+     * the last event with the merged statistics added to its metadata under {@code coalesced}
+     */
+    public SystemEvent toEvent() {
+        if (count == 1) {
+            return last;
+        }
+        Map<String, Object> coalesced = new LinkedHashMap<>();
+        coalesced.put("count", count);
+        coalesced.put("firstTimestamp", firstTimestamp != null ? firstTimestamp.toString() : null);
+        coalesced.put("lastTimestamp", last.getTimestamp() != null ? last.getTimestamp().toString() : null);
+        coalesced.put("min", new LinkedHashMap<>(min));
+        coalesced.put("max", new LinkedHashMap<>(max));
+
+        Map<String, Object> metadata = last.getMetadata() != null ? new LinkedHashMap<>(last.getMetadata()) : new LinkedHashMap<>();
+        metadata.put(COALESCED_METADATA_KEY, coalesced);
+
+        SystemEvent merged = SystemEvent.builder()
+            .serviceId(last.getServiceId())
+            .eventType("METRIC_UPDATE")
+            .severity(last.getSeverity())
+            .message(last.getMessage())
+            .component(last.getComponent())
+            .environment(last.getEnvironment())
+            .hostId(last.getHostId())
+            .processId(last.getProcessId())
+            .metadata(metadata)
+            .source(last.getSource())
+            .correlationId(last.getCorrelationId())
+            .build();
+        merged.setTimestamp(last.getTimestamp());
+        merged.setVersion(last.getVersion());
+        return merged;
+    }
+}
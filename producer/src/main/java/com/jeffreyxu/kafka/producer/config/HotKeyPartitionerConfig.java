@@ -0,0 +1,46 @@
+package com.jeffreyxu.kafka.producer.config;
+
+import com.jeffreyxu.kafka.producer.partition.HotKeyAwarePartitioner;
+import com.jeffreyxu.kafka.producer.partition.HotKeyTracker;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Installs {@link HotKeyAwarePartitioner} on the producer factory when {@code app.producer.hot-key.enabled}.
+ * The tracker bean reaches the partitioner through the producer configs.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.producer.hot-key.enabled", havingValue = "true")
+public class HotKeyPartitionerConfig {
+
+    @Bean
+    public HotKeyTracker hotKeyTracker(
+            @Value("${app.producer.hot-key.window:60s}") Duration window,
+            @Value("${app.producer.hot-key.hot-share:0.05}") double hotShare,
+            @Value("${app.producer.hot-key.min-count:500}") long minCount,
+            @Value("${app.producer.hot-key.spread-partitions:0}") int spreadPartitions,
+            @Value("${app.producer.hot-key.sub-key-ordering:true}") boolean subKeyOrdering,
+            @Value("${app.producer.hot-key.unordered-topics:}") Set<String> unorderedTopics,
+            @Value("${app.producer.hot-key.topics:business-events,user-events}") Set<String> topics,
+            MeterRegistry meterRegistry) {
+        return new HotKeyTracker(window, hotShare, minCount, spreadPartitions, subKeyOrdering, unorderedTopics,
+            topics, meterRegistry);
+    }
+
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer hotKeyPartitionerCustomizer(HotKeyTracker hotKeyTracker) {
+        return producerFactory -> producerFactory.updateConfigs(Map.of(
+            ProducerConfig.PARTITIONER_CLASS_CONFIG, HotKeyAwarePartitioner.class,
+            HotKeyAwarePartitioner.TRACKER_CONFIG, hotKeyTracker));
+    }
+}
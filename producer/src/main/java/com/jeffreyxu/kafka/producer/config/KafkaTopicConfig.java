@@ -0,0 +1,28 @@
+package com.jeffreyxu.kafka.producer.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+/**
+ * Topics the producer creates on startup through KafkaAdmin.
+ */
+@Configuration
+public class KafkaTopicConfig {
+
+    /**
+     * Dedicated topic for CRITICAL/HIGH system events so they never queue behind bulk traffic
+     */
+    @Bean
+    public NewTopic systemEventsPriorityTopic(
+            @Value("${app.kafka.topics.system-events-priority.name:system-events-priority}") String name,
+            @Value("${app.kafka.topics.system-events-priority.partitions:2}") int partitions,
+            @Value("${app.kafka.topics.system-events-priority.replication-factor:1}") short replicationFactor) {
+        return TopicBuilder.name(name)
+            .partitions(partitions)
+            .replicas(replicationFactor)
+            .build();
+    }
+}
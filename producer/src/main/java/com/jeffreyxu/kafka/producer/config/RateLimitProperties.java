@@ -0,0 +1,61 @@
+package com.jeffreyxu.kafka.producer.config;
+
+import lombok.Data;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration for per-source and per-topic rate limiting of sends.
+ * Bound from the {@code app.producer.rate-limit} section of application.yml.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.producer.rate-limit")
+@Data
+public class RateLimitProperties {
+
+    /**
+     * Whether sends are rate limited at all
+     */
+    private boolean enabled = false;
+
+    /**
+     * Default limit for each event source, across all topics
+     */
+    private Limit perSource = new Limit();
+
+    /**
+     * Limits for individual sources, replacing {@code perSource}
+     */
+    private Map<String, Limit> sources = new HashMap<>();
+
+    /**
+     * Limits for individual topics; topics not listed are not limited
+     */
+    private Map<String, Limit> topics = new HashMap<>();
+
+    /**
+     * Distinct sources tracked with their own bucket; further sources share one
+     */
+    private int maxSources = 10000;
+
+    /**
+     * A sustained rate with a burst allowance
+     */
+    @Data
+    public static class Limit {
+
+        /**
+         * Events per second; 0 or less means unlimited
+         */
+        private double rate = 0;
+
+        /**
+         * Events admitted at once after an idle period
+         */
+        private int burst = 1;
+    }
+}
@@ -4,12 +4,28 @@ import com.jeffreyxu.kafka.common.model.BaseEvent;
 import com.jeffreyxu.kafka.common.model.UserEvent;
 import com.jeffreyxu.kafka.common.model.BusinessEvent;
 import com.jeffreyxu.kafka.common.model.SystemEvent;
+import com.jeffreyxu.kafka.producer.partition.HotKeyTracker;
+import com.jeffreyxu.kafka.producer.service.AdmissionControlService;
+import com.jeffreyxu.kafka.producer.service.AdmissionRejectedException;
+import com.jeffreyxu.kafka.producer.service.BatchEventResult;
+import com.jeffreyxu.kafka.producer.service.BatchRejectedException;
+import com.jeffreyxu.kafka.producer.service.DedupService;
+import com.jeffreyxu.kafka.producer.service.EventInFlightException;
+import com.jeffreyxu.kafka.producer.service.EventSendResult;
 import com.jeffreyxu.kafka.producer.service.MessageProducerService;
+import com.jeffreyxu.kafka.producer.service.MetricCoalescingService;
+import com.jeffreyxu.kafka.producer.service.OutboxService;
+import com.jeffreyxu.kafka.producer.service.RateLimitService;
+import com.jeffreyxu.kafka.producer.service.SpoolService;
 import com.jeffreyxu.kafka.producer.service.StatsService;
+import com.jeffreyxu.kafka.producer.service.TransactionalSendService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.validation.annotation.Validated;
@@ -18,6 +34,7 @@ import jakarta.validation.Valid;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.stream.Collectors;
 
 /**
  * REST controller for sending messages to Kafka topics.
@@ -32,6 +49,14 @@ public class MessageController {
 
     private final MessageProducerService messageProducerService;
     private final StatsService statsService;
+    private final SpoolService spoolService;
+    private final AdmissionControlService admissionControlService;
+    private final RateLimitService rateLimitService;
+    private final ObjectProvider<HotKeyTracker> hotKeyTracker;
+    private final TransactionalSendService transactionalSendService;
+    private final OutboxService outboxService;
+    private final DedupService dedupService;
+    private final MetricCoalescingService metricCoalescingService;
 
     /**
      * Send a single user event to Kafka
@@ -41,15 +66,22 @@ public class MessageController {
         log.info("Received user event: {}", event.getDescription());
         
         try {
-            String messageId = messageProducerService.sendUserEvent(event);
+            EventSendResult result = messageProducerService.sendUserEvent(event);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("messageId", messageId);
+            response.put("messageId", result.messageId());
             response.put("eventType", "USER_EVENT");
             response.put("description", event.getDescription());
+            response.put("spooled", result.spooled());
+            response.put("queued", result.queued());
+            response.put("duplicate", result.duplicate());
             
-            return ResponseEntity.ok(response);
+            return accepted(result.deferred(), response);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (EventInFlightException e) {
+            return inFlight(e);
         } catch (Exception e) {
             log.error("Failed to send user event", e);
             return ResponseEntity.internalServerError()
@@ -65,15 +97,22 @@ public class MessageController {
         log.info("Received business event: {}", event.getDescription());
         
         try {
-            String messageId = messageProducerService.sendBusinessEvent(event);
+            EventSendResult result = messageProducerService.sendBusinessEvent(event);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("messageId", messageId);
+            response.put("messageId", result.messageId());
             response.put("eventType", "BUSINESS_EVENT");
             response.put("description", event.getDescription());
+            response.put("spooled", result.spooled());
+            response.put("queued", result.queued());
+            response.put("duplicate", result.duplicate());
             
-            return ResponseEntity.ok(response);
+            return accepted(result.deferred(), response);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (EventInFlightException e) {
+            return inFlight(e);
         } catch (Exception e) {
             log.error("Failed to send business event", e);
             return ResponseEntity.internalServerError()
@@ -89,15 +128,23 @@ public class MessageController {
         log.info("Received system event: {}", event.getDescription());
         
         try {
-            String messageId = messageProducerService.sendSystemEvent(event);
+            EventSendResult result = messageProducerService.sendSystemEvent(event);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("messageId", messageId);
+            response.put("messageId", result.messageId());
             response.put("eventType", "SYSTEM_EVENT");
             response.put("description", event.getDescription());
+            response.put("spooled", result.spooled());
+            response.put("queued", result.queued());
+            response.put("duplicate", result.duplicate());
+            response.put("coalesced", result.coalesced());
             
-            return ResponseEntity.ok(response);
+            return accepted(result.deferred(), response);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (EventInFlightException e) {
+            return inFlight(e);
         } catch (Exception e) {
             log.error("Failed to send system event", e);
             return ResponseEntity.internalServerError()
@@ -113,14 +160,41 @@ public class MessageController {
         log.info("Received batch of {} events", events.size());
         
         try {
-            List<String> messageIds = messageProducerService.sendBatch(events);
+            List<BatchEventResult> results = messageProducerService.sendBatch(events);
+            Map<String, Long> byStatus = results.stream()
+                .collect(Collectors.groupingBy(BatchEventResult::status, Collectors.counting()));
+            long sent = byStatus.getOrDefault(BatchEventResult.STATUS_SENT, 0L);
+            long pending = byStatus.getOrDefault(BatchEventResult.STATUS_PENDING, 0L);
+            long spooled = byStatus.getOrDefault(BatchEventResult.STATUS_SPOOLED, 0L);
+            long queued = byStatus.getOrDefault(BatchEventResult.STATUS_QUEUED, 0L);
+            long duplicates = byStatus.getOrDefault(BatchEventResult.STATUS_DUPLICATE, 0L);
+            long coalesced = byStatus.getOrDefault(BatchEventResult.STATUS_COALESCED, 0L);
             
             Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("messageIds", messageIds);
-            response.put("totalSent", messageIds.size());
+            response.put("success", sent + pending + spooled + queued + duplicates + coalesced == results.size());
+            response.put("messageIds", results.stream()
+                .filter(result -> BatchEventResult.STATUS_SENT.equals(result.status())
+                    || BatchEventResult.STATUS_PENDING.equals(result.status())
+                    || BatchEventResult.STATUS_SPOOLED.equals(result.status())
+                    || BatchEventResult.STATUS_QUEUED.equals(result.status()))
+                .map(BatchEventResult::messageId)
+                .toList());
+            response.put("totalSent", sent);
+            response.put("totalPending", pending);
+            response.put("totalSpooled", spooled);
+            response.put("totalQueued", queued);
+            response.put("statusCounts", byStatus);
+            response.put("results", results);
+            response.put("transactional", transactionalSendService.isEnabled());
             
-            return ResponseEntity.ok(response);
+            return accepted(pending + spooled + queued + coalesced > 0, response);
+        } catch (BatchRejectedException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "error", e.getMessage(), "results", e.getRejected()));
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (EventInFlightException e) {
+            return inFlight(e);
         } catch (Exception e) {
             log.error("Failed to send batch events", e);
             return ResponseEntity.internalServerError()
@@ -143,6 +217,111 @@ public class MessageController {
         }
     }
 
+    /**
+     * Get admission control state: in-flight sends per topic and producer buffer availability
+     */
+    @GetMapping("/admission")
+    public ResponseEntity<Map<String, Object>> getAdmission() {
+        try {
+            return ResponseEntity.ok(admissionControlService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get admission status", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get rate limit state: topic limits and the sources being limited most
+     */
+    @GetMapping("/rate-limit")
+    public ResponseEntity<Map<String, Object>> getRateLimit() {
+        try {
+            return ResponseEntity.ok(rateLimitService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get rate limit status", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get per-partition share and skew of hot-key tracked topics
+     */
+    @GetMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> getPartitionSkew() {
+        try {
+            HotKeyTracker tracker = hotKeyTracker.getIfAvailable();
+            if (tracker == null) {
+                return ResponseEntity.ok(Map.of("enabled", false));
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("enabled", true);
+            response.put("topics", tracker.getStatus());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Failed to get partition skew", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get event id dedup state: duplicates dropped, false-positive rate and memory use
+     */
+    @GetMapping("/dedup")
+    public ResponseEntity<Map<String, Object>> getDedup() {
+        try {
+            return ResponseEntity.ok(dedupService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get dedup status", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get METRIC_UPDATE coalescing state: open windows and events absorbed and emitted
+     */
+    @GetMapping("/coalescing")
+    public ResponseEntity<Map<String, Object>> getCoalescing() {
+        try {
+            return ResponseEntity.ok(metricCoalescingService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get coalescing status", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get the outbox relay state: delivery mode and how far the relay is behind
+     */
+    @GetMapping("/outbox")
+    public ResponseEntity<Map<String, Object>> getOutbox() {
+        try {
+            return ResponseEntity.ok(outboxService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get outbox status", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get the state of the local spool used while Kafka is unavailable
+     */
+    @GetMapping("/spool")
+    public ResponseEntity<Map<String, Object>> getSpool() {
+        try {
+            return ResponseEntity.ok(spoolService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get spool status", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
     /**
      * Health check endpoint
      */
@@ -155,4 +334,29 @@ public class MessageController {
         
         return ResponseEntity.ok(health);
     }
+
+    /**
+     * 202 when events were spooled, queued in the outbox or coalesced rather than handed to Kafka, 200 otherwise
+     */
+    private static ResponseEntity<Map<String, Object>> accepted(boolean spooled, Map<String, Object> response) {
+        return spooled ? ResponseEntity.accepted().body(response) : ResponseEntity.ok(response);
+    }
+
+    /**
+     * 409 for a retry of an event whose original send has not completed
+     */
+    private static ResponseEntity<Map<String, Object>> inFlight(EventInFlightException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    /**
+     * 429 with Retry-After in whole seconds
+     */
+    private static ResponseEntity<Map<String, Object>> tooManyRequests(AdmissionRejectedException e) {
+        long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+            .body(Map.of("success", false, "error", e.getMessage(), "reason", e.getReason()));
+    }
 }
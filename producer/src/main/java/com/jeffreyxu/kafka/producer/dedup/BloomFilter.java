@@ -0,0 +1,111 @@
+package com.jeffreyxu.kafka.producer.dedup;
+
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over byte keys.
+ *
+ * Sized for {@code expectedInsertions} at a target false-positive probability: m = -n ln p /
+ * (ln 2)^2 bits and k = m/n ln 2 probes. Probe positions come from two murmur2 hashes combined
+ * per probe (Kirsch and Mitzenmacher), as in the Count-Min sketch. Bits are set with a CAS
+ * per word, so concurrent puts are safe without locking.
+ */
+public class BloomFilter {
+
+    private final long bitSize;
+    private final int hashCount;
+    private final AtomicLongArray words;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1): " + falsePositiveProbability);
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.bitSize = (long) wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        this.words = new AtomicLongArray(wordCount);
+    }
+
+    /**
+     * Add a key
+     *
+     * @return true if any of its bits was unset, i.e. the key was definitely absent
+     */
+    public boolean put(byte[] key) {
+        int h1 = Utils.murmur2(key);
+        int h2 = mix(h1);
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1, h2, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+                current = words.get(word);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return false if the key was never added; true if it probably was
+     */
+    public boolean mightContain(byte[] key) {
+        int h1 = Utils.murmur2(key);
+        int h2 = mix(h1);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1, h2, i);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * False-positive probability at the current fill: (set bits / m)^k
+     */
+    public double expectedFalsePositiveProbability() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) set / bitSize, hashCount);
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public long sizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    private long index(int h1, int h2, int i) {
+        return ((h1 & 0xffffffffL) + i * (h2 & 0xffffffffL)) % bitSize;
+    }
+
+    private static int mix(int hash) {
+        // Murmur3 finalizer; odd so that probes differ
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash | 1;
+    }
+}
@@ -0,0 +1,216 @@
+package com.jeffreyxu.kafka.producer.dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-bounded duplicate detection of event ids.
+ *
+ * Two generations, current and previous, each a Bloom filter plus a bounded exact set of ids.
+ * Every {@code window} the current generation becomes the previous one and an empty one takes
+ * its place, so an id is remembered for one to two windows. An id both Bloom filters have
+ * never seen is new, which is the common case and needs no exact lookup. A Bloom positive is
+ * only reported as a duplicate if an exact set confirms it; unconfirmed positives (Bloom false
+ * positives, or ids the full exact set could not hold) are let through, so a new event is never
+ * dropped. The unconfirmed rate measured this way is reported as the observed false-positive
+ * rate.
+ *
+ * An exact entry starts out pending and is {@link #confirm confirmed} once its event is safely
+ * delivered or stored; {@link #isConfirmed} tells a retry of a delivered event from a retry
+ * that arrived while the original could still fail.
+ */
+public class DedupFilter {
+
+    /** Rough heap cost of one exact entry: a UUID String and a ConcurrentHashMap node */
+    static final int ESTIMATED_EXACT_ENTRY_BYTES = 160;
+
+    private final long windowNanos;
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final int exactCapacity;
+    private final LongSupplier nanoClock;
+    private final AtomicLong nextRotation;
+    /** Both generations, swapped together so a reader never sees one of them twice or a half rotation */
+    private volatile Generations generations;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder unconfirmed = new LongAdder();
+
+    /**
+     * @param window how long an id is remembered, at least; at most twice this
+     * @param expectedInsertions ids per window each Bloom filter is sized for
+     * @param falsePositiveProbability Bloom false-positive target at {@code expectedInsertions}
+     * @param exactCapacity ids per window kept for exact confirmation
+     */
+    public DedupFilter(Duration window, long expectedInsertions, double falsePositiveProbability, int exactCapacity) {
+        this(window, expectedInsertions, falsePositiveProbability, exactCapacity, System::nanoTime);
+    }
+
+    DedupFilter(Duration window, long expectedInsertions, double falsePositiveProbability, int exactCapacity,
+                LongSupplier nanoClock) {
+        this.windowNanos = Math.max(1, window.toNanos());
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.exactCapacity = exactCapacity;
+        this.nanoClock = nanoClock;
+        this.generations = new Generations(newGeneration(), newGeneration());
+        this.nextRotation = new AtomicLong(nanoClock.getAsLong() + windowNanos);
+    }
+
+    /**
+     * Record an id
+     *
+     * @return true if the id was already recorded within the window
+     */
+    public boolean checkAndRecord(String id) {
+        rotateIfDue();
+        checks.increment();
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        Generations snapshot = generations;
+        Generation generation = snapshot.current;
+        Generation older = snapshot.previous;
+        if (generation.bloom.mightContain(key) || older.bloom.mightContain(key)) {
+            if (older.exact.containsKey(id) || generation.exact.containsKey(id)) {
+                duplicates.increment();
+                return true;
+            }
+            unconfirmed.increment();
+        }
+        generation.bloom.put(key);
+        // A concurrent retry of the same id may have got here first
+        if (!generation.remember(id)) {
+            duplicates.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Mark a recorded id as delivered; no-op for ids no exact set holds
+     */
+    public void confirm(String id) {
+        Generations snapshot = generations;
+        snapshot.current.exact.replace(id, Boolean.TRUE);
+        snapshot.previous.exact.replace(id, Boolean.TRUE);
+    }
+
+    /**
+     * @return true if the id is recorded and was confirmed
+     */
+    public boolean isConfirmed(String id) {
+        Generations snapshot = generations;
+        return Boolean.TRUE.equals(snapshot.current.exact.get(id))
+            || Boolean.TRUE.equals(snapshot.previous.exact.get(id));
+    }
+
+    /**
+     * Forget an id whose send failed, so that a retry of it is let through. Its Bloom bits stay
+     * set; without an exact entry that only costs the retry an exact lookup.
+     */
+    public void forget(String id) {
+        Generations snapshot = generations;
+        snapshot.current.forget(id);
+        snapshot.previous.forget(id);
+    }
+
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Bloom positives the exact sets could not confirm, over ids that were not duplicates
+     */
+    public double getObservedFalsePositiveRate() {
+        long negatives = checks.sum() - duplicates.sum();
+        return negatives == 0 ? 0.0 : (double) unconfirmed.sum() / negatives;
+    }
+
+    /**
+     * Probability that a new id is a Bloom positive in either generation at their current fill
+     */
+    public double getExpectedFalsePositiveRate() {
+        Generations snapshot = generations;
+        double currentRate = snapshot.current.bloom.expectedFalsePositiveProbability();
+        double previousRate = snapshot.previous.bloom.expectedFalsePositiveProbability();
+        return 1 - (1 - currentRate) * (1 - previousRate);
+    }
+
+    public int getExactEntries() {
+        Generations snapshot = generations;
+        return snapshot.current.exactSize.get() + snapshot.previous.exactSize.get();
+    }
+
+    /**
+     * Bloom filter bits plus an estimate of the exact sets, in bytes
+     */
+    public long getMemoryBytes() {
+        return getBloomBytes() + (long) getExactEntries() * ESTIMATED_EXACT_ENTRY_BYTES;
+    }
+
+    public long getBloomBytes() {
+        Generations snapshot = generations;
+        return snapshot.current.bloom.sizeInBytes() + snapshot.previous.bloom.sizeInBytes();
+    }
+
+    private void rotateIfDue() {
+        long due = nextRotation.get();
+        long now = nanoClock.getAsLong();
+        if (now - due < 0 || !nextRotation.compareAndSet(due, now + windowNanos)) {
+            return;
+        }
+        // A fresh filter rather than clearing the dropped one: a concurrent check may still read it.
+        // Ids recorded into the old current during the swap land in the previous generation.
+        generations = new Generations(newGeneration(), generations.current);
+    }
+
+    private Generation newGeneration() {
+        return new Generation(new BloomFilter(expectedInsertions, falsePositiveProbability), exactCapacity);
+    }
+
+    private record Generations(Generation current, Generation previous) {
+    }
+
+    private static final class Generation {
+        final BloomFilter bloom;
+        /** Ids recorded in this generation, mapped to whether they were confirmed */
+        final Map<String, Boolean> exact = new ConcurrentHashMap<>();
+        final AtomicInteger exactSize = new AtomicInteger();
+        final int capacity;
+
+        Generation(BloomFilter bloom, int capacity) {
+            this.bloom = bloom;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return false if the id was already present
+         */
+        boolean remember(String id) {
+            if (exactSize.get() >= capacity) {
+                return true;
+            }
+            if (exact.putIfAbsent(id, Boolean.FALSE) != null) {
+                return false;
+            }
+            exactSize.incrementAndGet();
+            return true;
+        }
+
+        void forget(String id) {
+            if (exact.remove(id) != null) {
+                exactSize.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.jeffreyxu.kafka.producer.outbox;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides what the outbox relay does with each row of a batch it sent, keeping the rows of a
+ * key in id order across relay runs.
+ *
+ * Rows are sent in id order, but Kafka may acknowledge a later row of a key and not the one
+ * before it. The later row must then not be settled: it is sent again after the earlier one,
+ * so the last copy of each event on the topic is in id order. Once a row of a key is not
+ * acknowledged, every later row of that key in the batch is held back; a row that is possibly
+ * still in flight keeps its claim, so the claim query skips its key until the lease expires.
+ * Rows without an ordering key (a null Kafka key) are never held back.
+ */
+public final class OutboxSettlement {
+
+    /**
+     * What came of sending a row
+     */
+    public enum Outcome {
+        /** Acknowledged by Kafka */
+        ACKNOWLEDGED,
+        /** Rejected by Kafka; sending it again cannot help */
+        REJECTED,
+        /** Not sent; it can be sent again */
+        RETRIABLE,
+        /** Not acknowledged in time; possibly still in flight */
+        UNACKNOWLEDGED
+    }
+
+    /**
+     * What the relay does with a row
+     */
+    public enum Action {
+        /** Delete the row and log its outcome */
+        SETTLE,
+        /** Release the claim so the next run sends it again */
+        UNCLAIM,
+        /** Keep the claim so it is only sent again once the lease expires */
+        KEEP_CLAIM
+    }
+
+    private OutboxSettlement() {
+    }
+
+    /**
+     * @param orderingKeys ordering key of each row, in id order; null for a row with no order to keep
+     * @param outcomes outcome of each row
+     * @return action for each row
+     */
+    public static List<Action> plan(List<?> orderingKeys, List<Outcome> outcomes) {
+        if (orderingKeys.size() != outcomes.size()) {
+            throw new IllegalArgumentException("Expected " + orderingKeys.size() + " outcomes, got " + outcomes.size());
+        }
+        Set<Object> heldBack = new HashSet<>();
+        List<Action> actions = new ArrayList<>(outcomes.size());
+        for (int i = 0; i < outcomes.size(); i++) {
+            Object key = orderingKeys.get(i);
+            Outcome outcome = outcomes.get(i);
+            boolean acknowledged = outcome == Outcome.ACKNOWLEDGED || outcome == Outcome.REJECTED;
+            if (acknowledged && (key == null || !heldBack.contains(key))) {
+                actions.add(Action.SETTLE);
+                continue;
+            }
+            if (key != null) {
+                heldBack.add(key);
+            }
+            actions.add(outcome == Outcome.UNACKNOWLEDGED ? Action.KEEP_CLAIM : Action.UNCLAIM);
+        }
+        return actions;
+    }
+}
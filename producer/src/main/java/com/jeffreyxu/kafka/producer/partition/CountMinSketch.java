@@ -0,0 +1,81 @@
+package com.jeffreyxu.kafka.producer.partition;
+
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch (Cormode and Muthukrishnan) of key frequencies.
+ *
+ * {@code depth} rows of {@code width} counters; a key increments one counter per row and its
+ * estimate is the smallest of them. Estimates never undercount, and overcount by at most
+ * e/width of the total with probability 1 - e^-depth. Row indexes come from two murmur2
+ * hashes combined per row (Kirsch and Mitzenmacher). Counters are atomic, so concurrent
+ * adds are safe without locking.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray counters;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1) {
+            throw new IllegalArgumentException("Depth and width must be positive: " + depth + "x" + width);
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicLongArray(depth * width);
+    }
+
+    /**
+     * Count one occurrence of a key
+     *
+     * @return the key's estimated count including this occurrence
+     */
+    public long add(byte[] key) {
+        int h1 = Utils.murmur2(key);
+        int h2 = mix(h1);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, h1, h2)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimated count of a key
+     */
+    public long estimate(byte[] key) {
+        int h1 = Utils.murmur2(key);
+        int h2 = mix(h1);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, h1, h2)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Zero every counter
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int row, int h1, int h2) {
+        return row * width + Utils.toPositive(h1 + row * h2) % width;
+    }
+
+    private static int mix(int hash) {
+        // Murmur3 finalizer; odd so that row offsets differ
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash | 1;
+    }
+}
@@ -0,0 +1,97 @@
+package com.jeffreyxu.kafka.producer.partition;
+
+import com.jeffreyxu.kafka.common.model.SystemEvent;
+import com.jeffreyxu.kafka.common.model.UserEvent;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Partitioner that spreads hot keys over several partitions.
+ *
+ * Records are placed by murmur2 of the key, like the default partitioner, so a key normally
+ * stays on its home partition. On tracked topics, keys are counted in a sliding-window sketch
+ * ({@link HotKeyTracker}); while a key is hot its records go to one of the {@code spread}
+ * partitions starting at its home partition. With sub-key ordering, the choice is a hash of
+ * the event's sub-key, so records sharing a sub-key keep their order:
+ * <ul>
+ *   <li>user events (keyed by user): the session id</li>
+ *   <li>system events (keyed by service): the component</li>
+ *   <li>business events (keyed by order): none; every event of an order must stay in order,
+ *       so a hot order stays on its home partition</li>
+ * </ul>
+ * Records without a sub-key stay home. Without sub-key ordering, and on the topics configured
+ * as unordered, hot records are sent round robin and per-key order is given up; that is the
+ * only way to spread a hot order of business-events. Order is also not guaranteed across the moment a key
+ * turns hot or cools down.
+ *
+ * The tracker is passed in the producer configs under {@link #TRACKER_CONFIG}; without one the
+ * partitioner behaves like key-hash partitioning.
+ */
+public class HotKeyAwarePartitioner implements Partitioner {
+
+    public static final String TRACKER_CONFIG = "hotkey.tracker";
+
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private HotKeyTracker tracker;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object configured = configs.get(TRACKER_CONFIG);
+        tracker = configured instanceof HotKeyTracker hotKeyTracker
+            ? hotKeyTracker
+            : new HotKeyTracker(Duration.ofSeconds(60), 1.0, Long.MAX_VALUE, 0, true, Set.of(), Set.of(), null);
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int numPartitions = cluster.partitionsForTopic(topic).size();
+        if (keyBytes == null) {
+            return Utils.toPositive(roundRobin.getAndIncrement()) % numPartitions;
+        }
+        int home = Utils.toPositive(Utils.murmur2(keyBytes)) % numPartitions;
+        if (!tracker.isTracked(topic)) {
+            return home;
+        }
+
+        int partition = home;
+        if (tracker.recordKey(topic, keyBytes) && numPartitions > 1) {
+            int spread = tracker.spreadPartitions(numPartitions);
+            int offset;
+            if (tracker.isSubKeyOrdering(topic)) {
+                String subKey = subKey(value);
+                offset = subKey == null ? 0
+                    : Utils.toPositive(Utils.murmur2(subKey.getBytes(StandardCharsets.UTF_8))) % spread;
+            } else {
+                offset = Utils.toPositive(roundRobin.getAndIncrement()) % spread;
+            }
+            partition = (home + offset) % numPartitions;
+        }
+        tracker.recordPartition(topic, partition, numPartitions);
+        return partition;
+    }
+
+    /**
+     * The finer-grained key within a hot key whose order must be kept, or null if there is none
+     */
+    private static String subKey(Object value) {
+        if (value instanceof UserEvent userEvent) {
+            return userEvent.getSessionId();
+        }
+        if (value instanceof SystemEvent systemEvent) {
+            return systemEvent.getComponent();
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+}
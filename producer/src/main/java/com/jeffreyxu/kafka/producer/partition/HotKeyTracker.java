@@ -0,0 +1,247 @@
+package com.jeffreyxu.kafka.producer.partition;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding-window hot key detection and partition skew accounting for {@link HotKeyAwarePartitioner}.
+ *
+ * Each tracked topic keeps two Count-Min sketches: the current half-window and the previous
+ * one. Every half-window the current sketch becomes the previous and a cleared one takes its
+ * place, so a key's estimate covers the last half to full window without per-key state. A key
+ * is hot when that estimate reaches {@code hotShare} of the topic's records in the same span
+ * (and at least {@code minCount}). Records per partition are counted over the same halves,
+ * which gives the skew metrics: each partition's share and max/mean across partitions.
+ */
+public class HotKeyTracker {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048;
+
+    private final long halfWindowNanos;
+    private final double hotShare;
+    private final long minCount;
+    private final int spreadPartitions;
+    private final boolean subKeyOrdering;
+    private final Set<String> unorderedTopics;
+    private final Set<String> topics;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TopicWindow> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @param window span over which key frequencies are measured
+     * @param hotShare fraction of a topic's records above which a key is hot
+     * @param minCount records a key needs in the window before it can be hot
+     * @param spreadPartitions partitions a hot key is spread over; 0 for all of them
+     * @param subKeyOrdering spread by sub-key, keeping order per sub-key, instead of round robin
+     * @param unorderedTopics topics spread round robin even with sub-key ordering
+     * @param topics topics whose keys are tracked; others are partitioned by key hash only
+     * @param meterRegistry registry for skew metrics, or null for none
+     */
+    public HotKeyTracker(Duration window, double hotShare, long minCount, int spreadPartitions,
+                         boolean subKeyOrdering, Set<String> unorderedTopics, Set<String> topics,
+                         MeterRegistry meterRegistry) {
+        this.halfWindowNanos = Math.max(1, window.toNanos() / 2);
+        this.hotShare = hotShare;
+        this.minCount = minCount;
+        this.spreadPartitions = spreadPartitions;
+        this.subKeyOrdering = subKeyOrdering;
+        this.unorderedTopics = Set.copyOf(unorderedTopics);
+        this.topics = Set.copyOf(topics);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isTracked(String topic) {
+        return topics.contains(topic);
+    }
+
+    /**
+     * @return true if hot keys of the topic are spread by sub-key rather than round robin
+     */
+    public boolean isSubKeyOrdering(String topic) {
+        return subKeyOrdering && !unorderedTopics.contains(topic);
+    }
+
+    /**
+     * Partitions to spread a hot key over, out of {@code numPartitions}
+     */
+    public int spreadPartitions(int numPartitions) {
+        return spreadPartitions <= 0 ? numPartitions : Math.min(spreadPartitions, numPartitions);
+    }
+
+    /**
+     * Count a record's key
+     *
+     * @return true if the key is currently hot
+     */
+    public boolean recordKey(String topic, byte[] key) {
+        TopicWindow window = window(topic);
+        window.rotateIfDue();
+        long estimate = window.current.add(key) + window.previous.estimate(key);
+        long total = window.currentTotal.incrementAndGet() + window.previousTotal.get();
+        boolean hot = estimate >= minCount && estimate >= hotShare * total;
+        if (hot) {
+            window.hotRecords.increment();
+            if (window.hotRecordsCounter != null) {
+                window.hotRecordsCounter.increment();
+            }
+        }
+        return hot;
+    }
+
+    /**
+     * Count a record sent to {@code partition}
+     */
+    public void recordPartition(String topic, int partition, int numPartitions) {
+        TopicWindow window = window(topic);
+        window.rotateIfDue();
+        window.partitionCounts(numPartitions).incrementAndGet(partition);
+    }
+
+    private TopicWindow window(String topic) {
+        return windows.computeIfAbsent(topic, TopicWindow::new);
+    }
+
+    /**
+     * Per-topic partition shares and skew over the current window
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        windows.forEach((topic, window) -> {
+            Map<String, Object> topicStatus = new LinkedHashMap<>();
+            topicStatus.put("skew", Math.round(window.skew() * 100.0) / 100.0);
+            topicStatus.put("hotRecords", window.hotRecords.sum());
+            Map<Integer, Double> shares = new LinkedHashMap<>();
+            for (int partition = 0; partition < window.partitions(); partition++) {
+                shares.put(partition, Math.round(window.share(partition) * 1000.0) / 1000.0);
+            }
+            topicStatus.put("partitionShare", shares);
+            status.put(topic, topicStatus);
+        });
+        return status;
+    }
+
+    /**
+     * Sketches and partition counts of one topic, in two half-window generations
+     */
+    private final class TopicWindow {
+        final String topic;
+        volatile CountMinSketch current = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        volatile CountMinSketch previous = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        final AtomicLong currentTotal = new AtomicLong();
+        final AtomicLong previousTotal = new AtomicLong();
+        final AtomicLong nextRotation = new AtomicLong(System.nanoTime() + halfWindowNanos);
+        volatile AtomicLongArray currentPartitions;
+        volatile AtomicLongArray previousPartitions;
+        final LongAdder hotRecords = new LongAdder();
+        final Counter hotRecordsCounter;
+
+        TopicWindow(String topic) {
+            this.topic = topic;
+            this.hotRecordsCounter = meterRegistry == null ? null
+                : Counter.builder("kafka.producer.hot.key.records")
+                    .description("Records with a hot key, spread over several partitions")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            if (meterRegistry != null) {
+                Gauge.builder("kafka.producer.partition.skew", this, TopicWindow::skew)
+                    .description("Records on the busiest partition over the mean, in the current window")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            }
+        }
+
+        void rotateIfDue() {
+            long due = nextRotation.get();
+            long now = System.nanoTime();
+            if (now - due < 0 || !nextRotation.compareAndSet(due, now + halfWindowNanos)) {
+                return;
+            }
+            // Writers still adding to the old current sketch only inflate the previous generation
+            CountMinSketch recycled = previous;
+            recycled.clear();
+            previous = current;
+            current = recycled;
+            previousTotal.set(currentTotal.getAndSet(0));
+            AtomicLongArray partitions = currentPartitions;
+            if (partitions != null) {
+                previousPartitions = partitions;
+                currentPartitions = new AtomicLongArray(partitions.length());
+            }
+        }
+
+        AtomicLongArray partitionCounts(int numPartitions) {
+            AtomicLongArray counts = currentPartitions;
+            if (counts == null || counts.length() != numPartitions) {
+                synchronized (this) {
+                    counts = currentPartitions;
+                    if (counts == null || counts.length() != numPartitions) {
+                        registerPartitionGauges(counts == null ? 0 : counts.length(), numPartitions);
+                        counts = new AtomicLongArray(numPartitions);
+                        currentPartitions = counts;
+                        previousPartitions = null;
+                    }
+                }
+            }
+            return counts;
+        }
+
+        private void registerPartitionGauges(int from, int to) {
+            if (meterRegistry == null) {
+                return;
+            }
+            for (int partition = from; partition < to; partition++) {
+                int p = partition;
+                Gauge.builder("kafka.producer.partition.share", this, window -> window.share(p))
+                    .description("Fraction of the topic's records sent to the partition in the current window")
+                    .tags("topic", topic, "partition", String.valueOf(p))
+                    .register(meterRegistry);
+            }
+        }
+
+        int partitions() {
+            AtomicLongArray counts = currentPartitions;
+            return counts == null ? 0 : counts.length();
+        }
+
+        long count(int partition) {
+            AtomicLongArray counts = currentPartitions;
+            AtomicLongArray older = previousPartitions;
+            long count = counts != null && partition < counts.length() ? counts.get(partition) : 0;
+            if (older != null && partition < older.length()) {
+                count += older.get(partition);
+            }
+            return count;
+        }
+
+        double share(int partition) {
+            long total = 0;
+            for (int p = 0; p < partitions(); p++) {
+                total += count(p);
+            }
+            return total == 0 ? 0.0 : (double) count(partition) / total;
+        }
+
+        double skew() {
+            int partitions = partitions();
+            long total = 0;
+            long max = 0;
+            for (int p = 0; p < partitions; p++) {
+                long count = count(p);
+                total += count;
+                max = Math.max(max, count);
+            }
+            return total == 0 ? 0.0 : max / ((double) total / partitions);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.jeffreyxu.kafka.producer.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket, implemented as the generic cell rate algorithm (GCRA).
+ *
+ * Instead of a token count refilled by a timer, the bucket keeps one number: the theoretical
+ * arrival time (TAT) of the next request if the bucket were drained at exactly {@code rate}.
+ * A request is admitted if pushing TAT one emission interval forward keeps it within
+ * {@code burst} intervals of now; that is equivalent to a bucket of {@code burst} tokens
+ * refilled at {@code rate} per second. Admission is one read and one CAS on a single
+ * {@link AtomicLong}; a rejection only reads.
+ */
+public class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param ratePerSecond sustained requests per second
+     * @param burst requests admitted at once from idle; at least 1
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this(ratePerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double ratePerSecond, int burst, LongSupplier nanoClock) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Burst must be at least 1: " + burst);
+        }
+        this.emissionIntervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.burstToleranceNanos = emissionIntervalNanos * burst;
+        this.nanoClock = nanoClock;
+        this.theoreticalArrival = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Take one token if available
+     *
+     * @return 0 if the token was taken, otherwise nanoseconds until one will be available
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long tat = theoreticalArrival.get();
+            long next = Math.max(tat, now) + emissionIntervalNanos;
+            long excess = next - now - burstToleranceNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Tokens that could be taken right now
+     */
+    public int availableTokens() {
+        long now = nanoClock.getAsLong();
+        long backlog = Math.max(0, theoreticalArrival.get() - now);
+        return (int) ((burstToleranceNanos - backlog) / emissionIntervalNanos);
+    }
+}
@@ -0,0 +1,55 @@
+package com.jeffreyxu.kafka.producer.repository;
+
+import com.jeffreyxu.kafka.producer.entity.MessageLog;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Batched writes of MessageLog rows through JDBC.
+ * MessageLog ids are IDENTITY-generated, which keeps Hibernate from batching inserts, so a whole
+ * send batch is written as one JDBC batch instead (a single multi-row INSERT with
+ * rewriteBatchedStatements on MySQL).
+ */
+@Repository
+@RequiredArgsConstructor
+public class MessageLogBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert rows, replacing the outcome of any message id already logged (a resent event)
+     */
+    public void saveAll(List<MessageLog> messageLogs) {
+        if (messageLogs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO message_log
+                (message_id, topic, partition_id, offset_value, message_key, message_size,
+                 sent_at, status, error_message, processing_time_ms)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                topic = VALUES(topic), partition_id = VALUES(partition_id), offset_value = VALUES(offset_value),
+                message_size = VALUES(message_size), sent_at = VALUES(sent_at), status = VALUES(status),
+                error_message = VALUES(error_message), processing_time_ms = VALUES(processing_time_ms)
+            """, messageLogs, messageLogs.size(), (statement, messageLog) -> {
+                statement.setString(1, messageLog.getMessageId());
+                statement.setString(2, messageLog.getTopic());
+                statement.setObject(3, messageLog.getPartitionId(), Types.INTEGER);
+                statement.setObject(4, messageLog.getOffsetValue(), Types.BIGINT);
+                statement.setString(5, messageLog.getMessageKey());
+                statement.setObject(6, messageLog.getMessageSize(), Types.INTEGER);
+                statement.setTimestamp(7, Timestamp.valueOf(messageLog.getSentAt()));
+                statement.setString(8, messageLog.getStatus());
+                statement.setString(9, messageLog.getErrorMessage());
+                statement.setObject(10, messageLog.getProcessingTimeMs(), Types.BIGINT);
+            });
+    }
+}
@@ -0,0 +1,185 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Admission control for sends, so a burst is refused early instead of blocking request threads.
+ *
+ * Each topic has a semaphore bounding sends that Kafka has not yet acknowledged; a permit is
+ * taken before the send and returned when its future completes. Independently, new sends are
+ * refused while the producer's free buffer-memory is below a threshold, since send() would
+ * otherwise block for up to max.block.ms. Buffer availability is sampled from the producer's
+ * metrics on a short interval rather than per request. The buffer check is skipped while the
+ * spool is active, because spooled events never reach the producer buffer.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdmissionControlService {
+
+    static final String REASON_IN_FLIGHT = "in-flight";
+    static final String REASON_BUFFER = "buffer";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final SpoolService spoolService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.producer.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.producer.admission.max-in-flight-per-topic:2000}")
+    private int maxInFlightPerTopic;
+
+    // Refuse sends while less than this fraction of buffer-memory is free
+    @Value("${app.producer.admission.min-buffer-available:0.2}")
+    private double minBufferAvailable;
+
+    @Value("${app.producer.admission.retry-after:1s}")
+    private Duration retryAfter;
+
+    @Value("${app.producer.admission.max-retry-after:30s}")
+    private Duration maxRetryAfter;
+
+    private final Map<String, Semaphore> inFlight = new ConcurrentHashMap<>();
+    private volatile double bufferAvailableRatio = 1.0;
+    private volatile double outgoingByteRate = 0.0;
+    private volatile double bufferTotalBytes = 0.0;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("kafka.producer.buffer.available.ratio", this, AdmissionControlService::getBufferAvailableRatio)
+            .description("Fraction of producer buffer-memory that is free")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Take an in-flight permit for a send to {@code topic}
+     *
+     * @throws AdmissionRejectedException if the topic has too many unacknowledged sends or the
+     *         producer buffer is nearly full
+     */
+    public void acquire(String topic) {
+        if (!enabled) {
+            return;
+        }
+        if (bufferAvailableRatio < minBufferAvailable && !spoolService.isSpooling()) {
+            reject(topic, REASON_BUFFER, bufferRetryAfter());
+        }
+        if (!semaphore(topic).tryAcquire()) {
+            reject(topic, REASON_IN_FLIGHT, retryAfter);
+        }
+    }
+
+    /**
+     * Return the permit taken by {@link #acquire} once the send has completed
+     */
+    public void release(String topic) {
+        if (enabled) {
+            semaphore(topic).release();
+        }
+    }
+
+    private void reject(String topic, String reason, Duration after) {
+        meterRegistry.counter("kafka.producer.admission.rejected", "topic", topic, "reason", reason).increment();
+        throw new AdmissionRejectedException("Producer saturated (" + reason + ") for topic " + topic, reason, after);
+    }
+
+    private Semaphore semaphore(String topic) {
+        return inFlight.computeIfAbsent(topic, t -> {
+            Semaphore semaphore = new Semaphore(maxInFlightPerTopic);
+            Gauge.builder("kafka.producer.admission.in.flight", semaphore, s -> maxInFlightPerTopic - s.availablePermits())
+                .description("Sends accepted and not yet acknowledged by Kafka")
+                .tag("topic", t)
+                .register(meterRegistry);
+            return semaphore;
+        });
+    }
+
+    /**
+     * Time for the producer to free enough buffer to admit again, at its current send rate
+     */
+    private Duration bufferRetryAfter() {
+        double deficitBytes = (minBufferAvailable - bufferAvailableRatio) * bufferTotalBytes;
+        if (outgoingByteRate <= 0 || deficitBytes <= 0) {
+            return retryAfter;
+        }
+        long millis = (long) Math.ceil(deficitBytes / outgoingByteRate * 1000);
+        return Duration.ofMillis(Math.max(retryAfter.toMillis(), Math.min(millis, maxRetryAfter.toMillis())));
+    }
+
+    /**
+     * Sample buffer availability and send rate from the producer's metrics
+     */
+    @Scheduled(fixedDelayString = "${app.producer.admission.sample-interval-ms:100}")
+    public void sampleBuffer() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            double available = -1;
+            double total = -1;
+            double byteRate = 0;
+            for (Map.Entry<MetricName, ? extends Metric> entry : kafkaTemplate.metrics().entrySet()) {
+                MetricName name = entry.getKey();
+                if (!"producer-metrics".equals(name.group())) {
+                    continue;
+                }
+                switch (name.name()) {
+                    case "buffer-available-bytes" -> available = value(entry.getValue());
+                    case "buffer-total-bytes" -> total = value(entry.getValue());
+                    case "outgoing-byte-rate" -> byteRate = value(entry.getValue());
+                    default -> { }
+                }
+            }
+            if (available >= 0 && total > 0) {
+                bufferAvailableRatio = available / total;
+                bufferTotalBytes = total;
+            }
+            outgoingByteRate = Double.isNaN(byteRate) ? 0 : byteRate;
+        } catch (Exception e) {
+            log.debug("Could not sample producer buffer metrics: {}", e.getMessage());
+        }
+    }
+
+    private static double value(Metric metric) {
+        Object value = metric.metricValue();
+        return value instanceof Number number ? number.doubleValue() : -1;
+    }
+
+    public double getBufferAvailableRatio() {
+        return bufferAvailableRatio;
+    }
+
+    /**
+     * Admission state for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("maxInFlightPerTopic", maxInFlightPerTopic);
+        Map<String, Integer> topics = new LinkedHashMap<>();
+        inFlight.forEach((topic, semaphore) -> topics.put(topic, maxInFlightPerTopic - semaphore.availablePermits()));
+        status.put("inFlight", topics);
+        status.put("bufferAvailableRatio", Math.round(bufferAvailableRatio * 1000.0) / 1000.0);
+        status.put("minBufferAvailable", minBufferAvailable);
+        status.put("outgoingByteRate", Math.round(outgoingByteRate));
+        return status;
+    }
+}
@@ -0,0 +1,27 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an event is refused before it is sent because the producer is saturated.
+ * The caller should retry after {@link #getRetryAfter()}.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String reason;
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(String message, String reason, Duration retryAfter) {
+        super(message);
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
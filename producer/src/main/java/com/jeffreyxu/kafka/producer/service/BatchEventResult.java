@@ -0,0 +1,35 @@
+package com.jeffreyxu.kafka.producer.service;
+
+/**
+ * Outcome of one event of a batch send.
+ *
+ * PENDING means the producer has the event but did not acknowledge it within the batch send
+ * timeout; it is delivered, spooled or logged as failed once the producer completes it.
+ * IN_FLIGHT means the event is a retry of one whose send has not completed; retry it later.
+ *
+ * @param status one of the STATUS_ constants
+ * @param partition and offset where Kafka stored the event, if SENT
+ * @param error why the event was not sent, if INVALID, REJECTED or FAILED
+ */
+public record BatchEventResult(String messageId, String topic, String status, Integer partition, Long offset,
+                               String error) {
+
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SPOOLED = "SPOOLED";
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_DUPLICATE = "DUPLICATE";
+    public static final String STATUS_IN_FLIGHT = "IN_FLIGHT";
+    public static final String STATUS_COALESCED = "COALESCED";
+    public static final String STATUS_INVALID = "INVALID";
+    public static final String STATUS_REJECTED = "REJECTED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    static BatchEventResult sent(String messageId, String topic, int partition, long offset) {
+        return new BatchEventResult(messageId, topic, STATUS_SENT, partition, offset, null);
+    }
+
+    static BatchEventResult notSent(String messageId, String topic, String status, String error) {
+        return new BatchEventResult(messageId, topic, status, null, null, error);
+    }
+}
@@ -0,0 +1,22 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import java.util.List;
+
+/**
+ * Thrown when a transactional batch is refused as a whole because some of its events are
+ * invalid; nothing of the batch was sent. The caller should fix the events listed in
+ * {@link #getRejected()} and send the batch again.
+ */
+public class BatchRejectedException extends RuntimeException {
+
+    private final List<BatchEventResult> rejected;
+
+    public BatchRejectedException(String message, List<BatchEventResult> rejected) {
+        super(message);
+        this.rejected = List.copyOf(rejected);
+    }
+
+    public List<BatchEventResult> getRejected() {
+        return rejected;
+    }
+}
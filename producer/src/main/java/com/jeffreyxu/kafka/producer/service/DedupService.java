@@ -0,0 +1,152 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import com.jeffreyxu.kafka.producer.dedup.DedupFilter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops client retries of events already accepted, by event id, before they are serialized.
+ *
+ * Clients retry /api/v1/messages/* on timeouts with the same {@code BaseEvent.id}; without this
+ * every retry becomes another Kafka record. Ids are remembered for {@code window} to twice that
+ * in a {@link DedupFilter}. An id is confirmed once its event is acknowledged by Kafka, spooled
+ * or queued in the outbox, and only retries of confirmed ids are dropped; a retry that arrives
+ * while the original is still in flight is refused with {@link EventInFlightException}, so that
+ * it is not lost if the original fails. A send that fails is forgotten so that its retry goes
+ * through.
+ *
+ * The filter is in memory and per instance: with several producer replicas behind one Service,
+ * a retry that lands on another replica than the original is not detected.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DedupService {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.producer.dedup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.producer.dedup.window:5m}")
+    private Duration window;
+
+    @Value("${app.producer.dedup.expected-ids:200000}")
+    private long expectedIds;
+
+    @Value("${app.producer.dedup.false-positive-probability:0.01}")
+    private double falsePositiveProbability;
+
+    @Value("${app.producer.dedup.exact-capacity:200000}")
+    private int exactCapacity;
+
+    private DedupFilter filter;
+    private final LongAdder inFlight = new LongAdder();
+
+    public enum Verdict {
+        /** Not seen before; now recorded as pending */
+        NEW,
+        /** A retry of an event already delivered; drop it */
+        DUPLICATE,
+        /** A retry of an event whose send has not completed; ask the client to retry */
+        IN_FLIGHT
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        filter = new DedupFilter(window, expectedIds, falsePositiveProbability, exactCapacity);
+
+        FunctionCounter.builder("kafka.producer.dedup.duplicates", this, DedupService::getDroppedDuplicates)
+            .description("Events dropped as retries of an event already accepted")
+            .register(meterRegistry);
+        FunctionCounter.builder("kafka.producer.dedup.in.flight", inFlight, LongAdder::sum)
+            .description("Retries refused because the original send had not completed")
+            .register(meterRegistry);
+        Gauge.builder("kafka.producer.dedup.false.positive.rate", filter, DedupFilter::getObservedFalsePositiveRate)
+            .description("Bloom positives not confirmed by the exact cache, over new events")
+            .register(meterRegistry);
+        Gauge.builder("kafka.producer.dedup.memory", filter, DedupFilter::getMemoryBytes)
+            .description("Bloom filters plus estimated exact cache size")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        log.info("Event id dedup enabled per instance: window {}, {} bytes of Bloom filters", window, filter.getBloomBytes());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record an event id as pending, unless it was recorded before
+     */
+    public Verdict check(String eventId) {
+        if (!enabled || eventId == null || !filter.checkAndRecord(eventId)) {
+            return Verdict.NEW;
+        }
+        if (filter.isConfirmed(eventId)) {
+            return Verdict.DUPLICATE;
+        }
+        inFlight.increment();
+        return Verdict.IN_FLIGHT;
+    }
+
+    /**
+     * Mark an event as delivered, spooled or queued, so that retries of it are dropped
+     */
+    public void confirm(String eventId) {
+        if (enabled && eventId != null) {
+            filter.confirm(eventId);
+        }
+    }
+
+    /**
+     * Let a retry of an event through after its send failed
+     */
+    public void forget(String eventId) {
+        if (enabled && eventId != null) {
+            filter.forget(eventId);
+        }
+    }
+
+    private long getDroppedDuplicates() {
+        return filter.getDuplicates() - inFlight.sum();
+    }
+
+    /**
+     * Dedup effectiveness and cost for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (enabled) {
+            // Each replica only sees the retries that reach it
+            status.put("scope", "instance");
+            status.put("window", window.toString());
+            status.put("checked", filter.getChecks());
+            status.put("duplicates", getDroppedDuplicates());
+            status.put("inFlightRetries", inFlight.sum());
+            status.put("observedFalsePositiveRate", filter.getObservedFalsePositiveRate());
+            status.put("expectedFalsePositiveRate", filter.getExpectedFalsePositiveRate());
+            status.put("exactEntries", filter.getExactEntries());
+            status.put("bloomBytes", filter.getBloomBytes());
+            status.put("memoryBytes", filter.getMemoryBytes());
+        }
+        return status;
+    }
+}
@@ -0,0 +1,13 @@
+package com.jeffreyxu.kafka.producer.service;
+
+/**
+ * Thrown for a retry of an event whose original send has not completed yet. Dropping the retry
+ * would lose the event if the original then failed, and sending it would duplicate it if the
+ * original succeeded, so the caller should retry once more later.
+ */
+public class EventInFlightException extends RuntimeException {
+
+    public EventInFlightException(String message) {
+        super(message);
+    }
+}
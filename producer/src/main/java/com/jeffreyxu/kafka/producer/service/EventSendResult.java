@@ -0,0 +1,43 @@
+package com.jeffreyxu.kafka.producer.service;
+
+/**
+ * Outcome of accepting an event for delivery.
+ *
+ * @param status one of the STATUS_ constants
+ */
+public record EventSendResult(String messageId, String topic, String status) {
+
+    /** Handed to the Kafka producer */
+    public static final String STATUS_SENT = "SENT";
+    /** Written to the local spool; will reach Kafka later */
+    public static final String STATUS_SPOOLED = "SPOOLED";
+    /** Written to the outbox; will be relayed to Kafka */
+    public static final String STATUS_QUEUED = "QUEUED";
+    /** A retry of an event already accepted; not sent again */
+    public static final String STATUS_DUPLICATE = "DUPLICATE";
+    /** Merged into a coalesced metric update that will be sent at the end of its window */
+    public static final String STATUS_COALESCED = "COALESCED";
+
+    public boolean spooled() {
+        return STATUS_SPOOLED.equals(status);
+    }
+
+    public boolean queued() {
+        return STATUS_QUEUED.equals(status);
+    }
+
+    public boolean duplicate() {
+        return STATUS_DUPLICATE.equals(status);
+    }
+
+    public boolean coalesced() {
+        return STATUS_COALESCED.equals(status);
+    }
+
+    /**
+     * True if the event was accepted but has not been handed to Kafka yet
+     */
+    public boolean deferred() {
+        return spooled() || queued() || coalesced();
+    }
+}
@@ -5,24 +5,37 @@ import com.jeffreyxu.kafka.common.model.UserEvent;
 import com.jeffreyxu.kafka.common.model.BusinessEvent;
 import com.jeffreyxu.kafka.common.model.SystemEvent;
 import com.jeffreyxu.kafka.producer.entity.MessageLog;
-import com.jeffreyxu.kafka.producer.repository.MessageLogRepository;
+import com.jeffreyxu.kafka.producer.repository.MessageLogBatchRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /**
  * Service for producing messages to Kafka topics.
  * Handles message sending, logging, and statistics tracking.
+ * When the spool is enabled, events Kafka cannot take are spooled to local disk and sent later.
+ * In outbox delivery mode events are only written to MySQL and OutboxService relays them.
  */
 @Service
 @RequiredArgsConstructor
@@ -30,19 +43,37 @@ import java.util.concurrent.CompletableFuture;
 public class MessageProducerService {
 
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final MessageLogRepository messageLogRepository;
+    private final MessageLogBatchRepository messageLogBatchRepository;
     private final StatsService statsService;
+    private final SpoolService spoolService;
+    private final AdmissionControlService admissionControlService;
+    private final RateLimitService rateLimitService;
+    private final TransactionalSendService transactionalSendService;
+    private final OutboxService outboxService;
+    private final DedupService dedupService;
+    private final MetricCoalescingService metricCoalescingService;
 
     // Topic names
     private static final String USER_EVENTS_TOPIC = "user-events";
     private static final String BUSINESS_EVENTS_TOPIC = "business-events";
     private static final String SYSTEM_EVENTS_TOPIC = "system-events";
+    private static final String SYSTEM_EVENTS_PRIORITY_TOPIC = "system-events-priority";
+    private static final String IN_FLIGHT_ERROR = "The original send of this event has not completed yet; retry later";
+
+    @Value("${app.producer.priority-routing.enabled:false}")
+    private boolean priorityRoutingEnabled;
+
+    @Value("${app.producer.spool.drain-timeout:30s}")
+    private Duration drainTimeout;
+
+    @Value("${app.producer.batch.send-timeout:30s}")
+    private Duration batchSendTimeout;
 
     /**
      * Send a user event to Kafka
      */
     @Transactional
-    public String sendUserEvent(UserEvent event) {
+    public EventSendResult sendUserEvent(UserEvent event) {
         return sendEvent(USER_EVENTS_TOPIC, event.getUserId(), event);
     }
 
@@ -50,55 +81,443 @@ public class MessageProducerService {
      * Send a business event to Kafka
      */
     @Transactional
-    public String sendBusinessEvent(BusinessEvent event) {
+    public EventSendResult sendBusinessEvent(BusinessEvent event) {
         return sendEvent(BUSINESS_EVENTS_TOPIC, event.getOrderId(), event);
     }
 
     /**
-     * Send a system event to Kafka
+     * Send a system event to Kafka.
+     * CRITICAL and HIGH severities go to the priority topic when priority routing is enabled.
+     * METRIC_UPDATE events are merged per service and component when coalescing is enabled.
      */
     @Transactional
-    public String sendSystemEvent(SystemEvent event) {
-        return sendEvent(SYSTEM_EVENTS_TOPIC, event.getServiceId(), event);
+    public EventSendResult sendSystemEvent(SystemEvent event) {
+        String topic = systemEventsTopic(event);
+        if (!event.isValid() || !metricCoalescingService.accepts(event)) {
+            return sendEvent(topic, event.getServiceId(), event);
+        }
+        // Before merging, so that a client retry is not counted into the window twice
+        DedupService.Verdict verdict = dedupService.check(event.getId());
+        if (verdict == DedupService.Verdict.DUPLICATE) {
+            log.info("Dropping duplicate of message {} for topic {}", event.getId(), topic);
+            return new EventSendResult(event.getId(), topic, EventSendResult.STATUS_DUPLICATE);
+        }
+        if (verdict == DedupService.Verdict.IN_FLIGHT) {
+            throw new EventInFlightException(IN_FLIGHT_ERROR);
+        }
+        if (metricCoalescingService.offer(event)) {
+            dedupService.confirm(event.getId());
+            return new EventSendResult(event.getId(), topic, EventSendResult.STATUS_COALESCED);
+        }
+        return sendEvent(topic, event.getServiceId(), event, false);
     }
 
     /**
-     * Send multiple events in batch
+     * Send the merged metric updates whose coalescing window has passed
      */
-    @Transactional
-    public List<String> sendBatch(List<BaseEvent> events) {
-        List<String> messageIds = new ArrayList<>();
-        
-        for (BaseEvent event : events) {
+    @Scheduled(fixedDelayString = "${app.producer.coalescing.flush-interval-ms:200}")
+    public void flushCoalesced() {
+        metricCoalescingService.flush(false, this::sendCoalesced);
+    }
+
+    /**
+     * Send the metric updates of every open window before the producer closes
+     */
+    @PreDestroy
+    public void flushCoalescedOnShutdown() {
+        metricCoalescingService.flush(true, this::sendCoalesced);
+        // Complete the sends while the producer is still open, so a lost window is logged
+        kafkaTemplate.flush();
+    }
+
+    /**
+     * A window of one update carries the client's own event id, already recorded by dedup
+     *
+     * @return completes once the merged event is delivered or spooled; fails if it was not
+     */
+    private CompletableFuture<Void> sendCoalesced(SystemEvent event) {
+        return dispatch(systemEventsTopic(event), event.getServiceId(), event, false).completion();
+    }
+
+    private String systemEventsTopic(SystemEvent event) {
+        return priorityRoutingEnabled && event.isCritical() ? SYSTEM_EVENTS_PRIORITY_TOPIC : SYSTEM_EVENTS_TOPIC;
+    }
+
+    /**
+     * Send multiple events in batch.
+     * Events are validated and admitted together, all handed to the producer, flushed once and
+     * then awaited, and their MessageLog rows written in one JDBC batch. An event still in flight
+     * when the wait gives up is reported PENDING and finished like a single send; only a send that
+     * failed retriably is spooled, and each admission permit is held until its send completes.
+     * In transactional mode
+     * the batch is committed atomically: all events or none. In outbox mode the events are
+     * written to the outbox in one local transaction instead.
+     *
+     * @throws AdmissionRejectedException if no event of the batch was admitted
+     */
+    public List<BatchEventResult> sendBatch(List<BaseEvent> events) {
+        long startTime = System.currentTimeMillis();
+        int size = events.size();
+        String[] topics = new String[size];
+        String[] keys = new String[size];
+        BatchEventResult[] results = new BatchEventResult[size];
+
+        // Validate and route
+        for (int i = 0; i < size; i++) {
+            BaseEvent event = events.get(i);
+            if (!route(event, i, topics, keys)) {
+                results[i] = BatchEventResult.notSent(event.getId(), null, BatchEventResult.STATUS_INVALID,
+                    "Unknown event type: " + event.getClass().getSimpleName());
+            } else if (!event.isValid()) {
+                results[i] = BatchEventResult.notSent(event.getId(), topics[i], BatchEventResult.STATUS_INVALID,
+                    "Invalid event: " + event.getDescription());
+            } else {
+                // Dedup before coalescing, so that a client retry is not counted into the window twice
+                DedupService.Verdict verdict = dedupService.check(event.getId());
+                if (verdict == DedupService.Verdict.DUPLICATE) {
+                    results[i] = BatchEventResult.notSent(event.getId(), topics[i], BatchEventResult.STATUS_DUPLICATE, null);
+                } else if (verdict == DedupService.Verdict.IN_FLIGHT) {
+                    results[i] = BatchEventResult.notSent(event.getId(), topics[i], BatchEventResult.STATUS_IN_FLIGHT,
+                        IN_FLIGHT_ERROR);
+                } else if (event instanceof SystemEvent systemEvent && !transactionalSendService.isEnabled()
+                        && metricCoalescingService.offer(systemEvent)) {
+                    dedupService.confirm(event.getId());
+                    results[i] = BatchEventResult.notSent(event.getId(), topics[i], BatchEventResult.STATUS_COALESCED, null);
+                }
+            }
+        }
+        if (outboxService.isEnabled()) {
+            return enqueueBatch(events, topics, keys, results, startTime);
+        }
+        if (transactionalSendService.isEnabled()) {
+            return sendBatchInTransaction(events, topics, keys, results, startTime);
+        }
+
+        List<CompletableFuture<SendResult<String, Object>>> futures = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            futures.add(null);
+        }
+        List<MessageLog> messageLogs = new ArrayList<>(size);
+
+        // Admit, then enqueue everything to the producer without waiting
+        AdmissionRejectedException firstRejection = null;
+        int admitted = 0;
+        for (int i = 0; i < size; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            BaseEvent event = events.get(i);
+            String topic = topics[i];
             try {
-                String messageId = null;
-                
-                if (event instanceof UserEvent) {
-                    messageId = sendUserEvent((UserEvent) event);
-                } else if (event instanceof BusinessEvent) {
-                    messageId = sendBusinessEvent((BusinessEvent) event);
-                } else if (event instanceof SystemEvent) {
-                    messageId = sendSystemEvent((SystemEvent) event);
-                } else {
-                    log.warn("Unknown event type: {}", event.getClass().getSimpleName());
+                rateLimitService.acquire(topic, event.getSource());
+                admissionControlService.acquire(topic);
+            } catch (AdmissionRejectedException e) {
+                firstRejection = firstRejection != null ? firstRejection : e;
+                results[i] = BatchEventResult.notSent(event.getId(), topic, BatchEventResult.STATUS_REJECTED, e.getMessage());
+                dedupService.forget(event.getId());
+                continue;
+            }
+            admitted++;
+
+            try {
+                if (spoolService.spoolIfActive(topic, keys[i], event)) {
+                    admissionControlService.release(topic);
+                    dedupService.confirm(event.getId());
+                    results[i] = BatchEventResult.notSent(event.getId(), topic, BatchEventResult.STATUS_SPOOLED, null);
                     continue;
                 }
-                
-                messageIds.add(messageId);
+            } catch (RuntimeException e) {
+                admissionControlService.release(topic);
+                failBatchEvent(event, topic, keys[i], startTime, e, results, i, messageLogs);
+                continue;
+            }
+            CompletableFuture<SendResult<String, Object>> future;
+            try {
+                future = kafkaTemplate.send(topic, keys[i], event);
             } catch (Exception e) {
-                log.error("Failed to send event in batch: {}", event.getId(), e);
-                statsService.incrementErrorCount();
+                future = CompletableFuture.failedFuture(e);
             }
+            // The permit covers the send until the producer completes it, not until the wait below gives up
+            future.whenComplete((result, ex) -> admissionControlService.release(topic));
+            futures.set(i, future);
+        }
+        if (firstRejection != null && admitted == 0) {
+            throw firstRejection;
+        }
+
+        // One flush for the whole batch, then collect the acknowledgements
+        kafkaTemplate.flush();
+        long deadline = System.nanoTime() + batchSendTimeout.toNanos();
+        for (int i = 0; i < size; i++) {
+            CompletableFuture<SendResult<String, Object>> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            BaseEvent event = events.get(i);
+            String topic = topics[i];
+            String key = keys[i];
+            long processingTime = System.currentTimeMillis() - startTime;
+            try {
+                SendResult<String, Object> sent = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                results[i] = BatchEventResult.sent(event.getId(), topic,
+                    sent.getRecordMetadata().partition(), sent.getRecordMetadata().offset());
+                dedupService.confirm(event.getId());
+                messageLogs.add(toMessageLog(event, topic, key, sent, processingTime, "SUCCESS", null));
+                statsService.incrementMessagesSent(topic);
+            } catch (TimeoutException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                // Still in flight: spooling it now would send it twice; finish it like a single send
+                results[i] = BatchEventResult.notSent(event.getId(), topic, BatchEventResult.STATUS_PENDING, null);
+                future.whenComplete((result, ex) -> completeSend(event, topic, key, startTime, result, ex));
+            } catch (Exception e) {
+                Throwable failure = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                if (spoolService.isEnabled() && SpoolService.isRetriable(failure)) {
+                    try {
+                        spoolService.spool(topic, key, event);
+                        dedupService.confirm(event.getId());
+                        results[i] = BatchEventResult.notSent(event.getId(), topic, BatchEventResult.STATUS_SPOOLED, null);
+                        continue;
+                    } catch (RuntimeException spoolFailure) {
+                        failure = spoolFailure;
+                    }
+                }
+                failBatchEvent(event, topic, key, startTime, failure, results, i, messageLogs);
+            }
+        }
+
+        long processingTime = System.currentTimeMillis() - startTime;
+        saveMessageLogs(messageLogs);
+        statsService.updateAverageLatency(processingTime);
+        log.info("Sent batch of {} events in {}ms", size, processingTime);
+        return List.of(results);
+    }
+
+    /**
+     * Log and count a send the producer has completed; a retriable failure is spooled
+     *
+     * @return completes once the event is delivered or spooled; fails if it was not
+     */
+    private CompletableFuture<Void> completeSend(BaseEvent event, String topic, String key, long startTime,
+                              SendResult<String, Object> result, Throwable ex) {
+        long processingTime = System.currentTimeMillis() - startTime;
+
+        if (ex == null) {
+            // Success
+            dedupService.confirm(event.getId());
+            logMessageSent(event, topic, key, result, processingTime, "SUCCESS", null);
+            statsService.incrementMessagesSent(topic);
+            statsService.updateAverageLatency(processingTime);
+
+            log.info("Message sent successfully: {} to topic {} (partition: {}, offset: {})",
+                event.getId(), topic, result.getRecordMetadata().partition(),
+                result.getRecordMetadata().offset());
+            return CompletableFuture.completedFuture(null);
+        } else if (spoolService.isEnabled() && SpoolService.isRetriable(ex)) {
+            // Delivery timed out after the caller was answered; keep the event, off the producer I/O thread
+            log.warn("Delivery of message {} to topic {} failed, spooling: {}", event.getId(), topic, ex.getMessage());
+            return spoolService.spoolLater(topic, key, event)
+                .thenRun(() -> dedupService.confirm(event.getId()))
+                .whenComplete((spooled, spoolFailure) -> {
+                    if (spoolFailure == null) {
+                        return;
+                    }
+                    dedupService.forget(event.getId());
+                    logMessageSent(event, topic, key, null, System.currentTimeMillis() - startTime, "FAILED",
+                        spoolFailure.getMessage());
+                    statsService.incrementErrorCount();
+                    log.error("Lost message {} for topic {}: Kafka and the spool both refused it", event.getId(), topic, spoolFailure);
+                });
+        } else {
+            // Failure
+            dedupService.forget(event.getId());
+            logMessageSent(event, topic, key, null, processingTime, "FAILED", ex.getMessage());
+            statsService.incrementErrorCount();
+
+            log.error("Failed to send message: {} to topic {}", event.getId(), topic, ex);
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    private void failBatchEvent(BaseEvent event, String topic, String key, long startTime, Throwable failure,
+                                BatchEventResult[] results, int index, List<MessageLog> messageLogs) {
+        dedupService.forget(event.getId());
+        results[index] = BatchEventResult.notSent(event.getId(), topic, BatchEventResult.STATUS_FAILED, failure.getMessage());
+        messageLogs.add(toMessageLog(event, topic, key, null, System.currentTimeMillis() - startTime, "FAILED",
+            failure.getMessage()));
+        statsService.incrementErrorCount();
+    }
+
+    /**
+     * Topic and key of an event, by type
+     *
+     * @return false for an unknown event type
+     */
+    private boolean route(BaseEvent event, int index, String[] topics, String[] keys) {
+        if (event instanceof UserEvent userEvent) {
+            topics[index] = USER_EVENTS_TOPIC;
+            keys[index] = userEvent.getUserId();
+        } else if (event instanceof BusinessEvent businessEvent) {
+            topics[index] = BUSINESS_EVENTS_TOPIC;
+            keys[index] = businessEvent.getOrderId();
+        } else if (event instanceof SystemEvent systemEvent) {
+            topics[index] = systemEventsTopic(systemEvent);
+            keys[index] = systemEvent.getServiceId();
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write the valid, rate-admitted events of a batch to the outbox in one local transaction.
+     * Admission control and the spool guard the Kafka producer, which the request never reaches.
+     */
+    private List<BatchEventResult> enqueueBatch(List<BaseEvent> events, String[] topics, String[] keys,
+                                                BatchEventResult[] results, long startTime) {
+        List<BaseEvent> queued = new ArrayList<>(events.size());
+        List<String> queuedTopics = new ArrayList<>(events.size());
+        List<String> queuedKeys = new ArrayList<>(events.size());
+        AdmissionRejectedException firstRejection = null;
+        for (int i = 0; i < events.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            BaseEvent event = events.get(i);
+            try {
+                rateLimitService.acquire(topics[i], event.getSource());
+            } catch (AdmissionRejectedException e) {
+                firstRejection = firstRejection != null ? firstRejection : e;
+                results[i] = BatchEventResult.notSent(event.getId(), topics[i], BatchEventResult.STATUS_REJECTED, e.getMessage());
+                dedupService.forget(event.getId());
+                continue;
+            }
+            queued.add(event);
+            queuedTopics.add(topics[i]);
+            queuedKeys.add(keys[i]);
+            results[i] = BatchEventResult.notSent(event.getId(), topics[i], BatchEventResult.STATUS_QUEUED, null);
+        }
+        if (firstRejection != null && queued.isEmpty()) {
+            throw firstRejection;
+        }
+
+        try {
+            outboxService.enqueue(queued, queuedTopics, queuedKeys);
+        } catch (RuntimeException e) {
+            queued.forEach(event -> dedupService.forget(event.getId()));
+            throw e;
+        }
+        queued.forEach(event -> dedupService.confirm(event.getId()));
+        long processingTime = System.currentTimeMillis() - startTime;
+        statsService.updateAverageLatency(processingTime);
+        log.info("Queued batch of {} events in the outbox in {}ms", queued.size(), processingTime);
+        return List.of(results);
+    }
+
+    /**
+     * Send a validated batch in one Kafka transaction. Nothing is sent if any event is invalid
+     * ({@link BatchRejectedException}) or not admitted ({@link AdmissionRejectedException}); all
+     * events are sent before the single commit, which flushes them together. Duplicates of events
+     * already committed are left out of the transaction.
+     */
+    private List<BatchEventResult> sendBatchInTransaction(List<BaseEvent> events, String[] topics, String[] keys,
+                                                          BatchEventResult[] results, long startTime) {
+        List<Integer> pending = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            if (results[i] == null) {
+                pending.add(i);
+            }
+        }
+        List<BatchEventResult> invalid = new ArrayList<>();
+        for (BatchEventResult result : results) {
+            if (result == null || BatchEventResult.STATUS_DUPLICATE.equals(result.status())) {
+                continue;
+            }
+            if (BatchEventResult.STATUS_IN_FLIGHT.equals(result.status())) {
+                pending.forEach(i -> dedupService.forget(events.get(i).getId()));
+                throw new EventInFlightException(result.error());
+            }
+            invalid.add(result);
+        }
+        if (!invalid.isEmpty()) {
+            pending.forEach(i -> dedupService.forget(events.get(i).getId()));
+            throw new BatchRejectedException(
+                invalid.size() + " invalid events; no events of the transactional batch were sent", invalid);
+        }
+        int size = pending.size();
+
+        List<String> admitted = new ArrayList<>(size);
+        try {
+            for (int i : pending) {
+                rateLimitService.acquire(topics[i], events.get(i).getSource());
+                admissionControlService.acquire(topics[i]);
+                admitted.add(topics[i]);
+            }
+
+            List<CompletableFuture<SendResult<String, Object>>> futures = size == 0 ? List.of()
+                : transactionalSendService.executeInTransaction(operations -> {
+                    List<CompletableFuture<SendResult<String, Object>>> sent = new ArrayList<>(size);
+                    for (int i : pending) {
+                        sent.add(operations.send(topics[i], keys[i], events.get(i)));
+                    }
+                    return sent;
+                });
+
+            // Committed, so every send has completed
+            long processingTime = System.currentTimeMillis() - startTime;
+            List<MessageLog> messageLogs = new ArrayList<>(size);
+            for (int n = 0; n < size; n++) {
+                int i = pending.get(n);
+                SendResult<String, Object> sent = futures.get(n).join();
+                results[i] = BatchEventResult.sent(events.get(i).getId(), topics[i],
+                    sent.getRecordMetadata().partition(), sent.getRecordMetadata().offset());
+                dedupService.confirm(events.get(i).getId());
+                messageLogs.add(toMessageLog(events.get(i), topics[i], keys[i], sent, processingTime, "SUCCESS", null));
+                statsService.incrementMessagesSent(topics[i]);
+            }
+            saveMessageLogs(messageLogs);
+            statsService.updateAverageLatency(processingTime);
+            log.info("Committed transactional batch of {} events in {}ms", size, processingTime);
+            return List.of(results);
+
+        } catch (AdmissionRejectedException e) {
+            pending.forEach(i -> dedupService.forget(events.get(i).getId()));
+            throw e;
+        } catch (Exception e) {
+            long processingTime = System.currentTimeMillis() - startTime;
+            List<MessageLog> messageLogs = new ArrayList<>(size);
+            for (int i : pending) {
+                dedupService.forget(events.get(i).getId());
+                messageLogs.add(toMessageLog(events.get(i), topics[i], keys[i], null, processingTime, "FAILED", e.getMessage()));
+            }
+            saveMessageLogs(messageLogs);
+            statsService.incrementErrorCount();
+            log.error("Transactional batch of {} events aborted", size, e);
+            throw new RuntimeException("Batch aborted, no events were committed", e);
+        } finally {
+            admitted.forEach(admissionControlService::release);
         }
-        
-        return messageIds;
     }
 
     /**
      * Generic method to send any event to a topic
      */
-    private String sendEvent(String topic, String key, BaseEvent event) {
+    private EventSendResult sendEvent(String topic, String key, BaseEvent event) {
+        return sendEvent(topic, key, event, true);
+    }
+
+    /**
+     * @param checkDuplicate false if the caller has already recorded the event id with dedup
+     */
+    private EventSendResult sendEvent(String topic, String key, BaseEvent event, boolean checkDuplicate) {
+        return dispatch(topic, key, event, checkDuplicate).result();
+    }
+
+    private Dispatched dispatch(String topic, String key, BaseEvent event, boolean checkDuplicate) {
         long startTime = System.currentTimeMillis();
+        boolean holdsPermit = false;
+        boolean recorded = !checkDuplicate;
         
         try {
             // Validate event
@@ -106,70 +525,211 @@ public class MessageProducerService {
                 throw new IllegalArgumentException("Invalid event: " + event.getDescription());
             }
 
+            // A client retry of an event already accepted; drop it before it is serialized
+            DedupService.Verdict verdict = checkDuplicate ? dedupService.check(event.getId()) : DedupService.Verdict.NEW;
+            if (verdict == DedupService.Verdict.DUPLICATE) {
+                log.info("Dropping duplicate of message {} for topic {}", event.getId(), topic);
+                return Dispatched.settled(new EventSendResult(event.getId(), topic, EventSendResult.STATUS_DUPLICATE));
+            }
+            if (verdict == DedupService.Verdict.IN_FLIGHT) {
+                throw new EventInFlightException(IN_FLIGHT_ERROR);
+            }
+            recorded = true;
+
+            // Shed load from sources and topics over their rate, then refuse early rather than block on a full producer
+            rateLimitService.acquire(topic, event.getSource());
+            if (outboxService.isEnabled()) {
+                outboxService.enqueue(List.of(event), List.of(topic), Collections.singletonList(key));
+                dedupService.confirm(event.getId());
+                return Dispatched.settled(new EventSendResult(event.getId(), topic, EventSendResult.STATUS_QUEUED));
+            }
+            admissionControlService.acquire(topic);
+            holdsPermit = true;
+
+            // Queue behind events already spooled
+            if (spoolService.spoolIfActive(topic, key, event)) {
+                dedupService.confirm(event.getId());
+                return Dispatched.settled(new EventSendResult(event.getId(), topic, EventSendResult.STATUS_SPOOLED));
+            }
+
             // Send to Kafka
             CompletableFuture<SendResult<String, Object>> future = 
                 kafkaTemplate.send(topic, key, event);
+
+            // Metadata and buffer-memory timeouts fail the send before it returns
+            Throwable immediateFailure = immediateFailure(future);
+            if (immediateFailure != null && spoolService.isEnabled() && SpoolService.isRetriable(immediateFailure)) {
+                log.warn("Kafka did not take message {} for topic {}, spooling: {}", event.getId(), topic,
+                    immediateFailure.getMessage());
+                spoolService.spool(topic, key, event);
+                dedupService.confirm(event.getId());
+                return Dispatched.settled(new EventSendResult(event.getId(), topic, EventSendResult.STATUS_SPOOLED));
+            }
             
             // Handle success/failure
-            future.whenComplete((result, ex) -> {
-                long processingTime = System.currentTimeMillis() - startTime;
-                
-                if (ex == null) {
-                    // Success
-                    logMessageSent(event, topic, key, result, processingTime, "SUCCESS", null);
-                    statsService.incrementMessagesSent(topic);
-                    statsService.updateAverageLatency(processingTime);
-                    
-                    log.info("Message sent successfully: {} to topic {} (partition: {}, offset: {})",
-                        event.getId(), topic, result.getRecordMetadata().partition(), 
-                        result.getRecordMetadata().offset());
-                } else {
-                    // Failure
-                    logMessageSent(event, topic, key, null, processingTime, "FAILED", ex.getMessage());
-                    statsService.incrementErrorCount();
-                    
-                    log.error("Failed to send message: {} to topic {}", event.getId(), topic, ex);
-                }
-            });
+            holdsPermit = false;
+            CompletableFuture<Void> completion = future.handle((result, ex) -> {
+                admissionControlService.release(topic);
+                return completeSend(event, topic, key, startTime, result, ex);
+            }).thenCompose(Function.identity());
 
-            return event.getId();
+            return new Dispatched(new EventSendResult(event.getId(), topic, EventSendResult.STATUS_SENT), completion);
             
+        } catch (AdmissionRejectedException | EventInFlightException e) {
+            if (recorded) {
+                dedupService.forget(event.getId());
+            }
+            throw e;
         } catch (Exception e) {
+            if (recorded) {
+                dedupService.forget(event.getId());
+            }
             long processingTime = System.currentTimeMillis() - startTime;
             logMessageSent(event, topic, key, null, processingTime, "FAILED", e.getMessage());
             statsService.incrementErrorCount();
             
             log.error("Exception sending message: {} to topic {}", event.getId(), topic, e);
             throw new RuntimeException("Failed to send message", e);
+        } finally {
+            if (holdsPermit) {
+                admissionControlService.release(topic);
+            }
+        }
+    }
+
+    private static Throwable immediateFailure(CompletableFuture<?> future) {
+        if (!future.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            future.getNow(null);
+            return null;
+        } catch (CompletionException | CancellationException e) {
+            return e.getCause() != null ? e.getCause() : e;
         }
     }
 
     /**
-     * Log message sending attempt to database
+     * Send spooled events to Kafka in spool order
+     */
+    @Scheduled(fixedDelayString = "${app.producer.spool.drain-interval-ms:5000}")
+    public void drainSpool() {
+        spoolService.drain(this::sendSpooled);
+    }
+
+    /**
+     * Send a batch of spooled events, flush once and wait for every acknowledgement
+     *
+     * @return false if Kafka is still unavailable and the batch must be sent again
+     */
+    private boolean sendSpooled(List<SpoolService.SpooledEvent> batch) {
+        List<CompletableFuture<SendResult<String, Object>>> futures = new ArrayList<>(batch.size());
+        try {
+            for (SpoolService.SpooledEvent spooled : batch) {
+                futures.add(kafkaTemplate.send(spooled.topic(), spooled.key(), spooled.event()));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to send spooled batch: {}", e.getMessage());
+            return false;
+        }
+        kafkaTemplate.flush();
+
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        List<SendResult<String, Object>> results = new ArrayList<>(batch.size());
+        List<Throwable> failures = new ArrayList<>(batch.size());
+        for (CompletableFuture<SendResult<String, Object>> future : futures) {
+            try {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                failures.add(null);
+            } catch (ExecutionException e) {
+                if (SpoolService.isRetriable(e.getCause())) {
+                    return false;
+                }
+                results.add(null);
+                failures.add(e.getCause());
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        List<MessageLog> messageLogs = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            SpoolService.SpooledEvent spooled = batch.get(i);
+            long processingTime = now - spooled.spooledAt();
+            if (failures.get(i) == null) {
+                messageLogs.add(toMessageLog(spooled.event(), spooled.topic(), spooled.key(), results.get(i), processingTime, "SUCCESS", null));
+                statsService.incrementMessagesSent(spooled.topic());
+            } else {
+                // Kafka rejected the event itself; retrying cannot help
+                messageLogs.add(toMessageLog(spooled.event(), spooled.topic(), spooled.key(), null, processingTime, "FAILED",
+                    failures.get(i).getMessage()));
+                statsService.incrementErrorCount();
+                log.error("Dropping spooled message {} rejected by Kafka", spooled.event().getId(), failures.get(i));
+            }
+        }
+        saveMessageLogs(messageLogs);
+        return true;
+    }
+
+    /**
+     * Log message sending attempt to database, replacing the outcome of an earlier attempt for the
+     * same message id
      */
     private void logMessageSent(BaseEvent event, String topic, String key, 
                                SendResult<String, Object> result, long processingTime,
                                String status, String errorMessage) {
         try {
-            MessageLog messageLog = new MessageLog();
-            messageLog.setMessageId(event.getId());
-            messageLog.setTopic(topic);
-            messageLog.setMessageKey(key);
-            messageLog.setSentAt(LocalDateTime.now());
-            messageLog.setStatus(status);
-            messageLog.setErrorMessage(errorMessage);
-            messageLog.setProcessingTimeMs(processingTime);
-            
-            if (result != null) {
-                messageLog.setPartitionId(result.getRecordMetadata().partition());
-                messageLog.setOffsetValue(result.getRecordMetadata().offset());
-                messageLog.setMessageSize((int) result.getRecordMetadata().serializedValueSize());
-            }
-            
-            messageLogRepository.save(messageLog);
-            
+            messageLogBatchRepository.saveAll(
+                List.of(toMessageLog(event, topic, key, result, processingTime, status, errorMessage)));
         } catch (Exception e) {
             log.error("Failed to log message sending attempt", e);
         }
     }
+
+    /**
+     * Log the sending attempts of a batch to the database in one JDBC batch
+     */
+    private void saveMessageLogs(List<MessageLog> messageLogs) {
+        try {
+            messageLogBatchRepository.saveAll(messageLogs);
+        } catch (Exception e) {
+            log.error("Failed to log {} message sending attempts", messageLogs.size(), e);
+        }
+    }
+
+    private static MessageLog toMessageLog(BaseEvent event, String topic, String key,
+                                           SendResult<String, Object> result, long processingTime,
+                                           String status, String errorMessage) {
+        MessageLog messageLog = new MessageLog();
+        messageLog.setMessageId(event.getId());
+        messageLog.setTopic(topic);
+        messageLog.setMessageKey(key);
+        messageLog.setSentAt(LocalDateTime.now());
+        messageLog.setStatus(status);
+        messageLog.setErrorMessage(errorMessage);
+        messageLog.setProcessingTimeMs(processingTime);
+        
+        if (result != null) {
+            messageLog.setPartitionId(result.getRecordMetadata().partition());
+            messageLog.setOffsetValue(result.getRecordMetadata().offset());
+            messageLog.setMessageSize(result.getRecordMetadata().serializedValueSize());
+        }
+        return messageLog;
+    }
+
+    /**
+     * An accepted event and the completion of its delivery
+     *
+     * @param completion completes once the event is delivered, spooled or queued; fails if it was not
+     */
+    private record Dispatched(EventSendResult result, CompletableFuture<Void> completion) {
+
+        static Dispatched settled(EventSendResult result) {
+            return new Dispatched(result, CompletableFuture.completedFuture(null));
+        }
+    }
 }
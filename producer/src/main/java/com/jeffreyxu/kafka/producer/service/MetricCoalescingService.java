@@ -0,0 +1,176 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import com.jeffreyxu.kafka.common.model.SystemEvent;
+import com.jeffreyxu.kafka.producer.coalesce.MetricAggregate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalescing of METRIC_UPDATE system events before they are sent.
+ *
+ * Services report metrics many times per second, and each report would otherwise become a
+ * Kafka record and two consumer rows. Updates are merged per service id and component into a
+ * {@link MetricAggregate}; the first update of a key opens its window and the merged event is
+ * sent once the window has passed. Critical updates are never held back, and neither are
+ * updates for new keys once {@code max-keys} windows are open. A merged event that cannot be
+ * sent, whether the send fails at once or later in the producer, is kept, folded into its key's
+ * next window, and sent again on the next flush.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MetricCoalescingService {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.producer.coalescing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.producer.coalescing.window:1s}")
+    private Duration window;
+
+    @Value("${app.producer.coalescing.max-keys:10000}")
+    private int maxKeys;
+
+    private final Map<Key, MetricAggregate> aggregates = new ConcurrentHashMap<>();
+    private Counter absorbed;
+    private Counter emitted;
+    private Counter failed;
+
+    @PostConstruct
+    public void init() {
+        absorbed = meterRegistry.counter("kafka.producer.coalescing.events", "result", "absorbed");
+        emitted = meterRegistry.counter("kafka.producer.coalescing.events", "result", "emitted");
+        failed = meterRegistry.counter("kafka.producer.coalescing.events", "result", "failed");
+        Gauge.builder("kafka.producer.coalescing.windows", aggregates, Map::size)
+            .description("Open METRIC_UPDATE coalescing windows")
+            .register(meterRegistry);
+        if (enabled) {
+            log.info("METRIC_UPDATE coalescing enabled with a {} window", window);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if the event is of a kind {@link #offer} may take
+     */
+    public boolean accepts(SystemEvent event) {
+        return enabled && event.isMetricUpdate() && !event.isCritical();
+    }
+
+    /**
+     * Merge a metric update into its window
+     *
+     * @return true if the event was taken and will be sent as part of a merged event; false if
+     *         it must be sent as is
+     */
+    public boolean offer(SystemEvent event) {
+        if (!accepts(event)) {
+            return false;
+        }
+        Key key = new Key(event.getServiceId(), event.getComponent());
+        if (aggregates.size() >= maxKeys && !aggregates.containsKey(key)) {
+            return false;
+        }
+        aggregates.compute(key, (k, aggregate) -> {
+            if (aggregate == null) {
+                return new MetricAggregate(event, System.nanoTime());
+            }
+            aggregate.add(event);
+            return aggregate;
+        });
+        absorbed.increment();
+        return true;
+    }
+
+    /**
+     * Close the windows that have passed and hand their merged events to {@code sender}. A
+     * window whose event fails to send, when handed over or when the send completes, is folded
+     * back into its key's next window; on shutdown there is no next window and it is logged lost.
+     *
+     * @param closing close every window and keep none that fail; on shutdown
+     * @param sender sends an event; its future completes once the event is delivered or stored
+     */
+    public void flush(boolean closing, Function<SystemEvent, CompletableFuture<?>> sender) {
+        long now = System.nanoTime();
+        Map<Key, MetricAggregate> due = new LinkedHashMap<>();
+        for (Key key : aggregates.keySet()) {
+            aggregates.computeIfPresent(key, (k, aggregate) -> {
+                if (closing || now - aggregate.getStartedAtNanos() >= window.toNanos()) {
+                    due.put(k, aggregate);
+                    return null;
+                }
+                return aggregate;
+            });
+        }
+        due.forEach((key, aggregate) -> {
+            SystemEvent event = aggregate.toEvent();
+            CompletableFuture<?> sent;
+            try {
+                sent = sender.apply(event);
+            } catch (Exception e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.whenComplete((result, ex) -> {
+                if (ex == null) {
+                    emitted.increment();
+                } else {
+                    unsent(key, aggregate, closing, ex);
+                }
+            });
+        });
+    }
+
+    private void unsent(Key key, MetricAggregate aggregate, boolean closing, Throwable failure) {
+        failed.increment();
+        if (closing) {
+            log.error("Lost coalesced metric update of {} updates from {} on shutdown: {}",
+                aggregate.getCount(), key.serviceId(), failure.getMessage());
+            return;
+        }
+        // Keep the window's updates; the next flush sends them with any that arrived since
+        aggregates.merge(key, aggregate, (later, unsent) -> {
+            unsent.merge(later);
+            return unsent;
+        });
+        log.warn("Failed to send coalesced metric update from {}, keeping it for the next flush: {}",
+            key.serviceId(), failure.getMessage());
+    }
+
+    /**
+     * Coalescing state for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (enabled) {
+            status.put("window", window.toString());
+            status.put("openWindows", aggregates.size());
+            status.put("absorbed", (long) absorbed.count());
+            status.put("emitted", (long) emitted.count());
+            status.put("failed", (long) failed.count());
+        }
+        return status;
+    }
+
+    private record Key(String serviceId, String component) {
+    }
+}
@@ -0,0 +1,363 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import com.jeffreyxu.kafka.common.model.BaseEvent;
+import com.jeffreyxu.kafka.producer.entity.MessageLog;
+import com.jeffreyxu.kafka.producer.outbox.OutboxSettlement;
+import com.jeffreyxu.kafka.producer.repository.MessageLogBatchRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transactional outbox: the API writes events to MySQL and a relay publishes them to Kafka.
+ *
+ * In outbox delivery mode a request inserts its events into {@code event_outbox}, with their
+ * MessageLog rows marked PENDING, in the caller's local transaction, and returns without
+ * touching Kafka. The relay claims the oldest unclaimed rows in id order in a short
+ * transaction (FOR UPDATE SKIP LOCKED, then a {@code claimed_at} lease), sends them with no
+ * transaction open, flushes once and waits for the acknowledgements, then deletes the
+ * acknowledged rows and marks their MessageLog rows SUCCESS in a second short transaction.
+ * No lock is held across the Kafka round trip, so enqueues never wait on the relay. Under load
+ * the batches grow, up to {@code relay-batch-size}, which is what amortizes the round trip.
+ *
+ * Delivery is at-least-once: rows whose send failed retriably are unclaimed and sent again on
+ * the next run, and rows still unacknowledged at the send timeout (or claimed by an instance
+ * that died) are sent again once their {@code claim-lease} expires, which must exceed the
+ * producer's delivery.timeout.ms. A key's rows are not settled past its first unacknowledged
+ * row and are not claimed while an older row of the key is under a claim (see
+ * {@link OutboxSettlement}), so the last copy of each event is published in id order per key.
+ * That holds for a single relaying instance only: SKIP LOCKED hides rows another instance is
+ * claiming at the same moment, so with several instances a key's events may still be
+ * published out of id order.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+
+    public static final String DELIVERY_MODE_OUTBOX = "outbox";
+    static final String STATUS_PENDING = "PENDING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MessageLogBatchRepository messageLogBatchRepository;
+    private final StatsService statsService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.producer.delivery-mode:direct}")
+    private String deliveryMode;
+
+    @Value("${app.producer.outbox.relay-batch-size:1000}")
+    private int relayBatchSize;
+
+    @Value("${app.producer.outbox.send-timeout:30s}")
+    private Duration sendTimeout;
+
+    @Value("${app.producer.outbox.claim-lease:5m}")
+    private Duration claimLease;
+
+    @Value("${app.producer.outbox.max-passes-per-run:10}")
+    private int maxPassesPerRun;
+
+    private boolean enabled;
+    private TransactionTemplate relayTransaction;
+    private Counter relayed;
+    private Counter failed;
+    private final AtomicLong oldestPendingMillis = new AtomicLong(0);
+    private volatile LocalDateTime lastRelayAt;
+
+    @PostConstruct
+    public void init() {
+        enabled = DELIVERY_MODE_OUTBOX.equalsIgnoreCase(deliveryMode);
+        if (!enabled) {
+            return;
+        }
+        // Not a JPA entity: ddl-auto is validate, and the table is only needed in outbox mode
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS event_outbox (
+                id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                message_id VARCHAR(255) NOT NULL,
+                topic VARCHAR(255) NOT NULL,
+                message_key VARCHAR(255),
+                payload LONGTEXT NOT NULL,
+                created_at DATETIME(3) NOT NULL,
+                claimed_at DATETIME(3) NULL,
+                KEY idx_event_outbox_key (message_key, topic, id)
+            )
+            """);
+        Integer claimColumn = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() "
+                + "AND table_name = 'event_outbox' AND column_name = 'claimed_at'", Integer.class);
+        if (claimColumn == null || claimColumn == 0) {
+            jdbcTemplate.execute("ALTER TABLE event_outbox ADD COLUMN claimed_at DATETIME(3) NULL");
+        }
+        // The claim looks up older rows of each key
+        Integer keyIndex = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() "
+                + "AND table_name = 'event_outbox' AND index_name = 'idx_event_outbox_key'", Integer.class);
+        if (keyIndex == null || keyIndex == 0) {
+            jdbcTemplate.execute("CREATE INDEX idx_event_outbox_key ON event_outbox (message_key, topic, id)");
+        }
+        if (claimLease.compareTo(sendTimeout) <= 0) {
+            log.warn("Outbox claim lease {} does not exceed the send timeout {}; unacknowledged events may be sent twice",
+                claimLease, sendTimeout);
+        }
+        // Short transactions only; READ COMMITTED takes no gap locks that would block enqueues
+        relayTransaction = new TransactionTemplate(transactionManager);
+        relayTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+        relayed = meterRegistry.counter("kafka.producer.outbox.events", "result", "relayed");
+        failed = meterRegistry.counter("kafka.producer.outbox.events", "result", "failed");
+        Gauge.builder("kafka.producer.outbox.lag", this, OutboxService::getLagSeconds)
+            .description("Age of the oldest outbox event in the last relay pass")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        log.info("Outbox delivery mode: events are relayed to Kafka from event_outbox");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue events for the relay, with their MessageLog rows, in one local transaction;
+     * joins the caller's transaction if there is one
+     *
+     * @param topics topic of each event
+     * @param keys key of each event
+     */
+    @Transactional
+    public void enqueue(List<BaseEvent> events, List<String> topics, List<String> keys) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(events.size());
+        List<MessageLog> messageLogs = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            BaseEvent event = events.get(i);
+            try {
+                rows.add(new Object[] {event.getId(), topics.get(i), keys.get(i),
+                    objectMapper.writeValueAsString(event), Timestamp.valueOf(now)});
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Failed to serialize event " + event.getId(), e);
+            }
+            MessageLog messageLog = new MessageLog();
+            messageLog.setMessageId(event.getId());
+            messageLog.setTopic(topics.get(i));
+            messageLog.setMessageKey(keys.get(i));
+            messageLog.setSentAt(now);
+            messageLog.setStatus(STATUS_PENDING);
+            messageLogs.add(messageLog);
+        }
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO event_outbox (message_id, topic, message_key, payload, created_at) VALUES (?, ?, ?, ?, ?)", rows);
+        messageLogBatchRepository.saveAll(messageLogs);
+    }
+
+    /**
+     * Publish queued events until the outbox is empty, Kafka stops acknowledging, or
+     * {@code max-passes-per-run} full batches have gone out and the next run takes over
+     */
+    @Scheduled(fixedDelayString = "${app.producer.outbox.relay-interval-ms:200}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int passes = 0;
+            int claimed;
+            do {
+                claimed = relayBatch();
+            } while (claimed == relayBatchSize && ++passes < maxPassesPerRun);
+        } catch (Exception e) {
+            log.warn("Outbox relay stopped, retrying next cycle: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claim, send and settle one batch
+     *
+     * @return rows claimed
+     * @throws IllegalStateException if Kafka did not acknowledge part of the batch
+     */
+    private int relayBatch() {
+        List<OutboxRow> rows = relayTransaction.execute(status -> claimBatch());
+        lastRelayAt = LocalDateTime.now();
+        if (rows == null || rows.isEmpty()) {
+            oldestPendingMillis.set(0);
+            return 0;
+        }
+        oldestPendingMillis.set(Duration.between(rows.get(0).createdAt(), LocalDateTime.now()).toMillis());
+
+        List<CompletableFuture<SendResult<String, Object>>> futures = new ArrayList<>(rows.size());
+        for (OutboxRow row : rows) {
+            try {
+                BaseEvent event = objectMapper.readValue(row.payload(), BaseEvent.class);
+                futures.add(kafkaTemplate.send(row.topic(), row.messageKey(), event));
+            } catch (Exception e) {
+                futures.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        kafkaTemplate.flush();
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<MessageLog> sentLogs = new ArrayList<>(rows.size());
+        List<OutboxSettlement.Outcome> outcomes = new ArrayList<>(rows.size());
+        List<List<String>> orderingKeys = new ArrayList<>(rows.size());
+        String failure = null;
+        for (int i = 0; i < rows.size(); i++) {
+            OutboxRow row = rows.get(i);
+            orderingKeys.add(row.messageKey() != null ? List.of(row.topic(), row.messageKey()) : null);
+            MessageLog messageLog = new MessageLog();
+            messageLog.setMessageId(row.messageId());
+            messageLog.setTopic(row.topic());
+            messageLog.setMessageKey(row.messageKey());
+            messageLog.setSentAt(LocalDateTime.now());
+            messageLog.setProcessingTimeMs(Duration.between(row.createdAt(), LocalDateTime.now()).toMillis());
+            sentLogs.add(messageLog);
+            try {
+                SendResult<String, Object> result = futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                messageLog.setStatus("SUCCESS");
+                messageLog.setPartitionId(result.getRecordMetadata().partition());
+                messageLog.setOffsetValue(result.getRecordMetadata().offset());
+                messageLog.setMessageSize(result.getRecordMetadata().serializedValueSize());
+                outcomes.add(OutboxSettlement.Outcome.ACKNOWLEDGED);
+            } catch (ExecutionException e) {
+                if (SpoolService.isRetriable(e.getCause())) {
+                    // Not sent; the next run takes it again
+                    outcomes.add(OutboxSettlement.Outcome.RETRIABLE);
+                    failure = failure != null ? failure : e.getCause().getMessage();
+                    continue;
+                }
+                // Kafka rejected the event itself; retrying cannot help
+                messageLog.setStatus("FAILED");
+                messageLog.setErrorMessage(e.getCause().getMessage());
+                outcomes.add(OutboxSettlement.Outcome.REJECTED);
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                // Possibly still in flight; keep the claim so it is only sent again once the lease expires
+                outcomes.add(OutboxSettlement.Outcome.UNACKNOWLEDGED);
+                failure = failure != null ? failure : "no acknowledgement within " + sendTimeout;
+            }
+        }
+
+        List<OutboxSettlement.Action> actions = OutboxSettlement.plan(orderingKeys, outcomes);
+        List<MessageLog> messageLogs = new ArrayList<>(rows.size());
+        List<Object[]> done = new ArrayList<>(rows.size());
+        List<Object[]> unclaimed = new ArrayList<>();
+        int heldBack = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            OutboxRow row = rows.get(i);
+            switch (actions.get(i)) {
+                case SETTLE -> {
+                    if (outcomes.get(i) == OutboxSettlement.Outcome.REJECTED) {
+                        statsService.incrementErrorCount();
+                        failed.increment();
+                        log.error("Dropping outbox event {} rejected by Kafka: {}", row.messageId(),
+                            sentLogs.get(i).getErrorMessage());
+                    } else {
+                        statsService.incrementMessagesSent(row.topic());
+                        relayed.increment();
+                    }
+                    messageLogs.add(sentLogs.get(i));
+                    done.add(new Object[] {row.id()});
+                }
+                case UNCLAIM -> unclaimed.add(new Object[] {row.id()});
+                case KEEP_CLAIM -> heldBack++;
+            }
+        }
+
+        relayTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("DELETE FROM event_outbox WHERE id = ?", done);
+            jdbcTemplate.batchUpdate("UPDATE event_outbox SET claimed_at = NULL WHERE id = ?", unclaimed);
+            messageLogBatchRepository.saveAll(messageLogs);
+        });
+        log.debug("Relayed {} of {} outbox events", done.size(), rows.size());
+        if (failure != null) {
+            throw new IllegalStateException(String.format(
+                "Kafka did not acknowledge %d outbox events or the events before them of the same key "
+                    + "(%d unclaimed, %d left to their lease): %s",
+                unclaimed.size() + heldBack, unclaimed.size(), heldBack, failure));
+        }
+        return rows.size();
+    }
+
+    /**
+     * Lock the oldest unclaimed or expired rows, skipping rows other relays hold and rows whose
+     * key has an older row still under a claim, and claim them; runs in a relay transaction
+     */
+    private List<OutboxRow> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp leaseCutoff = Timestamp.valueOf(now.minus(claimLease));
+        List<OutboxRow> rows = jdbcTemplate.query("""
+            SELECT e.id, e.message_id, e.topic, e.message_key, e.payload, e.created_at FROM event_outbox e
+            WHERE (e.claimed_at IS NULL OR e.claimed_at < ?)
+              AND NOT EXISTS (SELECT 1 FROM event_outbox o
+                              WHERE o.message_key = e.message_key AND o.topic = e.topic
+                                AND o.id < e.id AND o.claimed_at >= ?)
+            ORDER BY e.id LIMIT ? FOR UPDATE SKIP LOCKED
+            """,
+            (rs, rowNum) -> new OutboxRow(rs.getLong("id"), rs.getString("message_id"), rs.getString("topic"),
+                rs.getString("message_key"), rs.getString("payload"), rs.getTimestamp("created_at").toLocalDateTime()),
+            leaseCutoff, leaseCutoff, relayBatchSize);
+        jdbcTemplate.batchUpdate("UPDATE event_outbox SET claimed_at = ? WHERE id = ?",
+            rows.stream().map(row -> new Object[] {Timestamp.valueOf(now), row.id()}).toList());
+        return rows;
+    }
+
+    public double getLagSeconds() {
+        return oldestPendingMillis.get() / 1000.0;
+    }
+
+    /**
+     * Outbox state for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("deliveryMode", enabled ? DELIVERY_MODE_OUTBOX : "direct");
+        if (enabled) {
+            status.put("relayBatchSize", relayBatchSize);
+            status.put("maxPassesPerRun", maxPassesPerRun);
+            status.put("claimLease", claimLease.toString());
+            status.put("lagSeconds", getLagSeconds());
+            status.put("lastRelayAt", lastRelayAt);
+            status.put("relayed", (long) relayed.count());
+            status.put("failed", (long) failed.count());
+        }
+        return status;
+    }
+
+    private record OutboxRow(long id, String messageId, String topic, String messageKey, String payload,
+                             LocalDateTime createdAt) {
+    }
+}
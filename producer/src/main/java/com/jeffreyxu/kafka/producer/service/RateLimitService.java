@@ -0,0 +1,138 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import com.jeffreyxu.kafka.producer.config.RateLimitProperties;
+import com.jeffreyxu.kafka.producer.ratelimit.TokenBucket;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Service;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-source and per-topic rate limiting of sends, so one noisy upstream cannot starve the others.
+ *
+ * Every event source gets its own token bucket (default {@code per-source}, or an entry under
+ * {@code sources}); topics listed under {@code topics} also get one. A send must take a token
+ * from both, source first. Buckets are lock-free, so the admitted path costs a map lookup and
+ * a CAS per limiter. Sources beyond {@code max-sources} share a single overflow bucket.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitService {
+
+    static final String REASON_SOURCE = "rate-limit-source";
+    static final String REASON_TOPIC = "rate-limit-topic";
+    private static final String OVERFLOW_SOURCE = "(other)";
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Limiter> sourceLimiters = new ConcurrentHashMap<>();
+    private final Map<String, Limiter> topicLimiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        properties.getTopics().forEach((topic, limit) -> {
+            if (limit.getRate() > 0) {
+                topicLimiters.put(topic, new Limiter(limit));
+            }
+        });
+    }
+
+    /**
+     * Take a token for an event from {@code source} to {@code topic}
+     *
+     * @throws AdmissionRejectedException if either limit is exhausted
+     */
+    public void acquire(String topic, String source) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Limiter sourceLimiter = sourceLimiter(source != null ? source : OVERFLOW_SOURCE);
+        if (sourceLimiter != null) {
+            sourceLimiter.acquire(topic, REASON_SOURCE, "source " + source);
+        }
+        Limiter topicLimiter = topicLimiters.get(topic);
+        if (topicLimiter != null) {
+            topicLimiter.acquire(topic, REASON_TOPIC, "topic " + topic);
+        }
+    }
+
+    private Limiter sourceLimiter(String source) {
+        Limiter limiter = sourceLimiters.get(source);
+        if (limiter != null) {
+            return limiter.bucket != null ? limiter : null;
+        }
+        RateLimitProperties.Limit limit = properties.getSources().getOrDefault(source, properties.getPerSource());
+        if (sourceLimiters.size() >= properties.getMaxSources() && !properties.getSources().containsKey(source)) {
+            source = OVERFLOW_SOURCE;
+        }
+        limiter = sourceLimiters.computeIfAbsent(source, s -> new Limiter(limit));
+        return limiter.bucket != null ? limiter : null;
+    }
+
+    /**
+     * Rate limit state for monitoring: configured topic limits and the most limited sources
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", properties.isEnabled());
+        status.put("trackedSources", sourceLimiters.size());
+
+        Map<String, Object> topics = new LinkedHashMap<>();
+        topicLimiters.forEach((topic, limiter) -> topics.put(topic, limiter.describe()));
+        status.put("topics", topics);
+
+        Map<String, Object> sources = new LinkedHashMap<>();
+        sourceLimiters.entrySet().stream()
+            .filter(entry -> entry.getValue().rejected.sum() > 0)
+            .sorted(Comparator.comparingLong((Map.Entry<String, Limiter> entry) -> entry.getValue().rejected.sum()).reversed())
+            .limit(20)
+            .forEach(entry -> sources.put(entry.getKey(), entry.getValue().describe()));
+        status.put("limitedSources", sources);
+        return status;
+    }
+
+    /**
+     * A token bucket with its rejection count; no bucket means unlimited
+     */
+    private final class Limiter {
+        final RateLimitProperties.Limit limit;
+        final TokenBucket bucket;
+        final LongAdder rejected = new LongAdder();
+
+        Limiter(RateLimitProperties.Limit limit) {
+            this.limit = limit;
+            this.bucket = limit.getRate() > 0 ? new TokenBucket(limit.getRate(), Math.max(1, limit.getBurst())) : null;
+        }
+
+        void acquire(String topic, String reason, String subject) {
+            long waitNanos = bucket.tryAcquire();
+            if (waitNanos == 0) {
+                return;
+            }
+            rejected.increment();
+            meterRegistry.counter("kafka.producer.rate.limited", "topic", topic, "reason", reason).increment();
+            throw new AdmissionRejectedException("Rate limit exceeded for " + subject, reason, Duration.ofNanos(waitNanos));
+        }
+
+        Map<String, Object> describe() {
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("rate", limit.getRate());
+            description.put("burst", limit.getBurst());
+            description.put("availableTokens", bucket != null ? bucket.availableTokens() : null);
+            description.put("rejected", rejected.sum());
+            return description;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import com.jeffreyxu.kafka.common.model.BaseEvent;
+import com.jeffreyxu.kafka.common.storage.MappedSegmentLog;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Local disk spool for events while Kafka cannot take them.
+ *
+ * When a send fails with a retriable error (broker unreachable, metadata or buffer-memory
+ * timeout), the event is appended to a memory-mapped segment log and forced to disk, and the
+ * caller is told it was accepted. Once spooling, every new event goes to the spool as well,
+ * until the drain has sent the whole spool in append order; that keeps per-key order. Draining
+ * is at-least-once: a batch that fails part way is sent again in full. Failures reported by a
+ * producer callback are spooled on a writer thread of their own, so the append and its fsync
+ * never stall the Kafka I/O thread, and in the order the callbacks handed them over.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SpoolService {
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.producer.spool.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.producer.spool.directory:${user.dir}/spool}")
+    private Path directory;
+
+    @Value("${app.producer.spool.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${app.producer.spool.max-segments:16}")
+    private int maxSegments;
+
+    @Value("${app.producer.spool.drain-batch-size:500}")
+    private int drainBatchSize;
+
+    private MappedSegmentLog spoolLog;
+    private ExecutorService writer;
+    private volatile boolean spooling = false;
+    private volatile LocalDateTime spoolingSince;
+    private Counter spooled;
+    private Counter drained;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        spoolLog = new MappedSegmentLog(directory, (int) segmentSize.toBytes(), maxSegments);
+        writer = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "spool-writer"));
+        if (!spoolLog.isEmpty()) {
+            // Left over from a previous run; keep new events behind it
+            spooling = true;
+            spoolingSince = LocalDateTime.now();
+            log.warn("Found {} spooled events in {}, draining before direct sends resume",
+                spoolLog.getPendingRecords(), directory);
+        }
+
+        Gauge.builder("kafka.producer.spool.depth", spoolLog, MappedSegmentLog::getPendingRecords)
+            .description("Events spooled to local disk and not yet sent to Kafka")
+            .register(meterRegistry);
+        Gauge.builder("kafka.producer.spool.bytes", spoolLog, MappedSegmentLog::getPendingBytes)
+            .description("Bytes of spooled events not yet sent")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        spooled = meterRegistry.counter("kafka.producer.spool.events", "result", "spooled");
+        drained = meterRegistry.counter("kafka.producer.spool.events", "result", "drained");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSpooling() {
+        return spooling;
+    }
+
+    /**
+     * Whether a send failure means Kafka cannot take events right now, as opposed to a bad event
+     */
+    public static boolean isRetriable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetriableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Spool the event if spooling is in progress
+     *
+     * @return true if the event was spooled and must not be sent directly
+     */
+    public boolean spoolIfActive(String topic, String key, BaseEvent event) {
+        if (!spooling) {
+            return false;
+        }
+        synchronized (this) {
+            if (!spooling) {
+                return false;
+            }
+            append(topic, key, event);
+            return true;
+        }
+    }
+
+    /**
+     * Start spooling with an event Kafka did not take
+     */
+    public synchronized void spool(String topic, String key, BaseEvent event) {
+        if (!spooling) {
+            spooling = true;
+            spoolingSince = LocalDateTime.now();
+            log.warn("Kafka unavailable, spooling events to {}", directory);
+        }
+        append(topic, key, event);
+    }
+
+    /**
+     * Spool an event Kafka did not take, from a producer callback
+     *
+     * @return completes once the event is on disk, or exceptionally if it could not be spooled
+     */
+    public CompletableFuture<Void> spoolLater(String topic, String key, BaseEvent event) {
+        try {
+            return CompletableFuture.runAsync(() -> spool(topic, key, event), writer);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void append(String topic, String key, BaseEvent event) {
+        try {
+            spoolLog.append(objectMapper.writeValueAsBytes(
+                new SpooledEvent(topic, key, event, System.currentTimeMillis())));
+            spoolLog.force();
+            spooled.increment();
+        } catch (IOException e) {
+            throw new IllegalStateException("Kafka unavailable and spooling failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Hand spooled events to {@code sender} in append order, batch by batch, until the spool is
+     * empty or a batch is not delivered
+     *
+     * @param sender sends a batch and returns true once all of it is acknowledged by Kafka
+     */
+    public void drain(Predicate<List<SpooledEvent>> sender) {
+        if (!spooling) {
+            return;
+        }
+
+        while (true) {
+            MappedSegmentLog.Batch batch;
+            synchronized (this) {
+                batch = spoolLog.read(drainBatchSize);
+                if (batch.records().isEmpty()) {
+                    spooling = false;
+                    log.info("Spool drained, sending directly to Kafka again (spooling since {})", spoolingSince);
+                    spoolingSince = null;
+                    return;
+                }
+            }
+
+            try {
+                List<SpooledEvent> events = new ArrayList<>(batch.records().size());
+                for (byte[] record : batch.records()) {
+                    events.add(objectMapper.readValue(record, SpooledEvent.class));
+                }
+                if (!sender.test(events)) {
+                    log.info("Kafka still unavailable, {} events remain spooled", spoolLog.getPendingRecords());
+                    return;
+                }
+                spoolLog.commit(batch.next());
+                drained.increment(events.size());
+            } catch (IOException e) {
+                log.error("Spool drain stopped", e);
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (spoolLog == null) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Spool writer did not finish, events handed to it may be lost");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        spoolLog.close();
+    }
+
+    /**
+     * Spool state for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("spooling", spooling);
+        status.put("spoolingSince", spoolingSince);
+        if (spoolLog != null) {
+            status.put("directory", directory.toString());
+            status.put("depth", spoolLog.getPendingRecords());
+            status.put("pendingBytes", spoolLog.getPendingBytes());
+            status.put("segments", spoolLog.getSegmentCount());
+            status.put("maxSegments", maxSegments);
+        }
+        return status;
+    }
+
+    /**
+     * One spooled event with its destination
+     *
+     * @param spooledAt epoch millis when the event was spooled
+     */
+    public record SpooledEvent(String topic, String key, BaseEvent event, long spooledAt) {
+    }
+}
@@ -124,6 +124,7 @@ public class StatsService {
             topicStats.put("user-events", messageLogRepository.countByTopic("user-events"));
             topicStats.put("business-events", messageLogRepository.countByTopic("business-events"));
             topicStats.put("system-events", messageLogRepository.countByTopic("system-events"));
+            topicStats.put("system-events-priority", messageLogRepository.countByTopic("system-events-priority"));
             
             // Recent activity (last hour)
             LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
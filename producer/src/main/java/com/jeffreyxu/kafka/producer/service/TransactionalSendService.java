@@ -0,0 +1,93 @@
+package com.jeffreyxu.kafka.producer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Kafka transactions for batches that must be committed atomically.
+ *
+ * Holds a second producer factory, copied from the application's one with a per-instance
+ * {@code transactional.id} prefix, and a template on it. It is not exposed as a KafkaTemplate
+ * bean, so single sends keep using the auto-configured non-transactional template. The prefix
+ * must be unique per instance. It is only stable across restarts where the host name is (not
+ * for Deployment pods), so a crashed instance's open transaction is usually not fenced by its
+ * successor: it stays open until {@code transaction.timeout.ms} aborts it, and read_committed
+ * consumers of its partitions stall at the last stable offset until then. The timeout is
+ * therefore kept short ({@code app.producer.transactions.timeout}); a batch whose transaction
+ * takes longer is aborted by the broker and reported as failed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionalSendService {
+
+    private final ProducerFactory<String, Object> producerFactory;
+
+    @Value("${app.producer.transactions.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.producer.transactions.transaction-id-prefix:${HOSTNAME:producer}-tx-}")
+    private String transactionIdPrefix;
+
+    @Value("${app.producer.transactions.timeout:10s}")
+    private Duration transactionTimeout;
+
+    private KafkaTemplate<String, Object> transactionalTemplate;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        ProducerFactory<String, Object> transactionalFactory = producerFactory.copyWithConfigurationOverride(Map.of(
+            ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionIdPrefix,
+            ProducerConfig.TRANSACTION_TIMEOUT_CONFIG, (int) transactionTimeout.toMillis()));
+        if (transactionalFactory instanceof DefaultKafkaProducerFactory<String, Object> factory) {
+            factory.setTransactionIdPrefix(transactionIdPrefix);
+        }
+        transactionalTemplate = new KafkaTemplate<>(transactionalFactory);
+        log.info("Transactional batches enabled with transactional.id prefix {} and timeout {}",
+            transactionIdPrefix, transactionTimeout);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Run sends in one Kafka transaction; it commits when the callback returns, which flushes
+     * and waits for every send, and aborts if the callback or any send fails
+     */
+    public <T> T executeInTransaction(KafkaOperations.OperationsCallback<String, Object, T> callback) {
+        if (transactionalTemplate == null) {
+            throw new IllegalStateException("Transactional mode is disabled");
+        }
+        return transactionalTemplate.executeInTransaction(callback);
+    }
+
+    /**
+     * Transactional mode settings for monitoring
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (enabled) {
+            status.put("transactionIdPrefix", transactionIdPrefix);
+            status.put("transactionTimeout", transactionTimeout.toString());
+        }
+        return status;
+    }
+}
@@ -0,0 +1,76 @@
+package com.jeffreyxu.kafka.producer.coalesce;
+
+import com.jeffreyxu.kafka.common.model.SystemEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for merging METRIC_UPDATE events.
+ */
+class MetricAggregateTests {
+
+    @Test
+    void testSingleEventIsSentUnchanged() {
+        SystemEvent event = metricUpdate(Map.of("cpu", 0.5));
+        MetricAggregate aggregate = new MetricAggregate(event, 0);
+        assertThat(aggregate.toEvent()).isSameAs(event);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMergedEventKeepsCountMinMaxAndLastMetadata() {
+        MetricAggregate aggregate = new MetricAggregate(metricUpdate(Map.of("cpu", 0.5, "heapMb", 512)), 0);
+        aggregate.add(metricUpdate(Map.of("cpu", 0.9, "heapMb", 256)));
+        SystemEvent last = metricUpdate(Map.of("cpu", 0.7, "heapMb", 300, "state", "busy"));
+        aggregate.add(last);
+
+        SystemEvent merged = aggregate.toEvent();
+        assertThat(merged.isMetricUpdate()).isTrue();
+        assertThat(merged.getServiceId()).isEqualTo("billing");
+        assertThat(merged.getComponent()).isEqualTo("jvm");
+        assertThat(merged.getTimestamp()).isEqualTo(last.getTimestamp());
+        assertThat(merged.getId()).isNotEqualTo(last.getId());
+        assertThat(merged.getMetadata()).containsEntry("cpu", 0.7).containsEntry("state", "busy");
+
+        Map<String, Object> coalesced = (Map<String, Object>) merged.getMetadata().get(MetricAggregate.COALESCED_METADATA_KEY);
+        assertThat(coalesced).containsEntry("count", 3L);
+        assertThat((Map<String, Double>) coalesced.get("min")).containsEntry("cpu", 0.5).containsEntry("heapMb", 256.0);
+        assertThat((Map<String, Double>) coalesced.get("max")).containsEntry("cpu", 0.9).containsEntry("heapMb", 512.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUnsentWindowMergesWithLaterOne() {
+        MetricAggregate unsent = new MetricAggregate(metricUpdate(Map.of("cpu", 0.5)), 0);
+        unsent.add(metricUpdate(Map.of("cpu", 0.9)));
+        MetricAggregate later = new MetricAggregate(metricUpdate(Map.of("cpu", 0.2)), 100);
+        SystemEvent last = metricUpdate(Map.of("cpu", 0.6));
+        later.add(last);
+
+        unsent.merge(later);
+
+        assertThat(unsent.getCount()).isEqualTo(4);
+        assertThat(unsent.getStartedAtNanos()).isZero();
+        SystemEvent merged = unsent.toEvent();
+        assertThat(merged.getMetadata()).containsEntry("cpu", 0.6);
+        Map<String, Object> coalesced = (Map<String, Object>) merged.getMetadata().get(MetricAggregate.COALESCED_METADATA_KEY);
+        assertThat(coalesced).containsEntry("count", 4L);
+        assertThat((Map<String, Double>) coalesced.get("min")).containsEntry("cpu", 0.2);
+        assertThat((Map<String, Double>) coalesced.get("max")).containsEntry("cpu", 0.9);
+    }
+
+    private static SystemEvent metricUpdate(Map<String, Object> metadata) {
+        return SystemEvent.builder()
+            .serviceId("billing")
+            .eventType("METRIC_UPDATE")
+            .severity("INFO")
+            .message("metrics")
+            .component("jvm")
+            .metadata(metadata)
+            .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.jeffreyxu.kafka.producer.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the Bloom filter and the rotating dedup filter.
+ */
+class DedupFilterTests {
+
+    @Test
+    void testBloomFilterFalsePositiveRateNearTarget() {
+        BloomFilter bloom = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloom.put(bytes("added-" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(bloom.mightContain(bytes("added-" + i))).isTrue();
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (bloom.mightContain(bytes("absent-" + i))) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / probes).isLessThan(0.02);
+        assertThat(bloom.expectedFalsePositiveProbability()).isBetween(0.005, 0.02);
+    }
+
+    @Test
+    void testDuplicatesWithinWindowAreDetectedAndExpire() {
+        AtomicLong clock = new AtomicLong();
+        long window = Duration.ofMinutes(5).toNanos();
+        DedupFilter filter = new DedupFilter(Duration.ofMinutes(5), 1_000, 0.01, 1_000, clock::get);
+
+        assertThat(filter.checkAndRecord("event-1")).isFalse();
+        assertThat(filter.checkAndRecord("event-1")).isTrue();
+
+        // Still remembered one rotation later, from the previous generation
+        clock.addAndGet(window);
+        assertThat(filter.checkAndRecord("event-1")).isTrue();
+        assertThat(filter.checkAndRecord("event-2")).isFalse();
+
+        // Gone after the second rotation
+        clock.addAndGet(window);
+        clock.addAndGet(window);
+        assertThat(filter.checkAndRecord("event-1")).isFalse();
+        assertThat(filter.getDuplicates()).isEqualTo(2);
+    }
+
+    @Test
+    void testRecordedIdsArePendingUntilConfirmed() {
+        AtomicLong clock = new AtomicLong();
+        DedupFilter filter = new DedupFilter(Duration.ofMinutes(5), 1_000, 0.01, 1_000, clock::get);
+
+        assertThat(filter.checkAndRecord("event-1")).isFalse();
+        assertThat(filter.checkAndRecord("event-1")).isTrue();
+        assertThat(filter.isConfirmed("event-1")).isFalse();
+
+        filter.confirm("event-1");
+        assertThat(filter.isConfirmed("event-1")).isTrue();
+
+        // Confirmation survives a rotation; unknown ids are never confirmed
+        clock.addAndGet(Duration.ofMinutes(5).toNanos());
+        assertThat(filter.isConfirmed("event-1")).isTrue();
+        filter.confirm("event-2");
+        assertThat(filter.isConfirmed("event-2")).isFalse();
+    }
+
+    @Test
+    void testForgottenIdsAndBloomPositivesAreLetThrough() {
+        DedupFilter filter = new DedupFilter(Duration.ofMinutes(5), 100, 0.01, 50, () -> 0L);
+        assertThat(filter.checkAndRecord("failed")).isFalse();
+        filter.forget("failed");
+        assertThat(filter.checkAndRecord("failed")).isFalse();
+
+        // Past the exact capacity, and with the Bloom filters overfilled, no new id is dropped
+        for (int i = 0; i < 5_000; i++) {
+            assertThat(filter.checkAndRecord(UUID.randomUUID().toString())).isFalse();
+        }
+        assertThat(filter.getObservedFalsePositiveRate()).isGreaterThan(0.0);
+        assertThat(filter.getExactEntries()).isEqualTo(50);
+        assertThat(filter.getMemoryBytes()).isGreaterThan(filter.getBloomBytes());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,65 @@
+package com.jeffreyxu.kafka.producer.outbox;
+
+import com.jeffreyxu.kafka.producer.outbox.OutboxSettlement.Action;
+import com.jeffreyxu.kafka.producer.outbox.OutboxSettlement.Outcome;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the per-key settlement of an outbox relay batch.
+ */
+class OutboxSettlementTests {
+
+    @Test
+    void testSettlesAcknowledgedAndRejectedRows() {
+        List<Action> actions = OutboxSettlement.plan(List.of("a", "a", "b"),
+            List.of(Outcome.ACKNOWLEDGED, Outcome.REJECTED, Outcome.ACKNOWLEDGED));
+
+        assertThat(actions).containsExactly(Action.SETTLE, Action.SETTLE, Action.SETTLE);
+    }
+
+    @Test
+    void testFailedFirstSendHoldsBackLaterRowsOfItsKey() {
+        List<Action> actions = OutboxSettlement.plan(List.of("a", "a"),
+            List.of(Outcome.RETRIABLE, Outcome.ACKNOWLEDGED));
+
+        // The second row reached Kafka first; it is sent again after the first
+        assertThat(actions).containsExactly(Action.UNCLAIM, Action.UNCLAIM);
+    }
+
+    @Test
+    void testUnacknowledgedRowKeepsItsClaimAndHoldsBackItsKey() {
+        List<Action> actions = OutboxSettlement.plan(List.of("a", "a", "a"),
+            List.of(Outcome.UNACKNOWLEDGED, Outcome.ACKNOWLEDGED, Outcome.UNACKNOWLEDGED));
+
+        assertThat(actions).containsExactly(Action.KEEP_CLAIM, Action.UNCLAIM, Action.KEEP_CLAIM);
+    }
+
+    @Test
+    void testOtherKeysAreNotHeldBack() {
+        List<Action> actions = OutboxSettlement.plan(List.of("a", "b", "a", "b"),
+            List.of(Outcome.RETRIABLE, Outcome.ACKNOWLEDGED, Outcome.ACKNOWLEDGED, Outcome.REJECTED));
+
+        assertThat(actions).containsExactly(Action.UNCLAIM, Action.SETTLE, Action.UNCLAIM, Action.SETTLE);
+    }
+
+    @Test
+    void testRowsWithoutKeyAreNeverHeldBack() {
+        List<Action> actions = OutboxSettlement.plan(Arrays.asList(null, null),
+            List.of(Outcome.RETRIABLE, Outcome.ACKNOWLEDGED));
+
+        assertThat(actions).containsExactly(Action.UNCLAIM, Action.SETTLE);
+    }
+
+    @Test
+    void testRejectsMismatchedOutcomes() {
+        assertThatThrownBy(() -> OutboxSettlement.plan(List.of("a"), List.of()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,60 @@
+package com.jeffreyxu.kafka.producer.partition;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the Count-Min sketch.
+ */
+class CountMinSketchTests {
+
+    @Test
+    void testNeverUndercountsAndBoundsOvercount() {
+        CountMinSketch sketch = new CountMinSketch(4, 2048);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        int total = 200_000;
+        for (int i = 0; i < total; i++) {
+            // A few hot orders over a long tail
+            String key = random.nextInt(10) < 3 ? "hot-" + random.nextInt(5) : "order-" + random.nextInt(50_000);
+            sketch.add(bytes(key));
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        // e / width of the total, with high probability per key
+        double bound = Math.E / 2048 * total;
+        long withinBound = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(bytes(entry.getKey()));
+            assertThat(estimate).isGreaterThanOrEqualTo(entry.getValue());
+            if (estimate - entry.getValue() <= bound) {
+                withinBound++;
+            }
+        }
+        assertThat((double) withinBound / exact.size()).isGreaterThan(0.95);
+
+        for (int i = 0; i < 5; i++) {
+            long count = exact.get("hot-" + i);
+            assertThat(sketch.estimate(bytes("hot-" + i))).isBetween(count, (long) (count + bound));
+        }
+    }
+
+    @Test
+    void testClearForgetsCounts() {
+        CountMinSketch sketch = new CountMinSketch(3, 64);
+        assertThat(sketch.add(bytes("a"))).isEqualTo(1);
+        assertThat(sketch.add(bytes("a"))).isEqualTo(2);
+        sketch.clear();
+        assertThat(sketch.estimate(bytes("a"))).isZero();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
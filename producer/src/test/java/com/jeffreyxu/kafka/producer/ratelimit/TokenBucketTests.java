@@ -0,0 +1,74 @@
+package com.jeffreyxu.kafka.producer.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the GCRA token bucket.
+ */
+class TokenBucketTests {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void testAdmitsBurstThenSustainedRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, clock::get);
+        assertThat(bucket.availableTokens()).isEqualTo(5);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire()).isZero();
+        }
+        long wait = bucket.tryAcquire();
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(bucket.availableTokens()).isZero();
+
+        // One token per 100ms
+        clock.addAndGet(wait);
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(bucket.tryAcquire()).isZero();
+    }
+
+    @Test
+    void testRefillsToBurstAndNoFurther() {
+        TokenBucket bucket = new TokenBucket(100, 3, clock::get);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire();
+        }
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertThat(bucket.availableTokens()).isEqualTo(3);
+        int admitted = 0;
+        while (bucket.tryAcquire() == 0) {
+            admitted++;
+        }
+        assertThat(admitted).isEqualTo(3);
+    }
+
+    @Test
+    void testConcurrentCallersNeverExceedBurst() throws InterruptedException {
+        // A rate slow enough that no token refills during the test
+        TokenBucket bucket = new TokenBucket(0.001, 1000);
+        AtomicLong admitted = new AtomicLong();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (bucket.tryAcquire() == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(admitted.get()).isEqualTo(1000);
+    }
+}